@@ -0,0 +1,97 @@
+package com.assessment.speernotes.bean;
+
+import com.assessment.speernotes.model.User;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.support.NullValue;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@EnableCaching
+public class CacheConfig {
+    public static final String USERS_BY_EMAIL = "users-by-email";
+    public static final String USERS_BY_ID = "users-by-id";
+
+    @Value("${users.cache.max-size:10000}")
+    private long usersCacheMaxSize;
+
+    @Value("${users.cache.ttl:5m}")
+    private Duration usersCacheTtl;
+
+    @Value("${users.cache.negative-ttl:30s}")
+    private Duration usersCacheNegativeTtl;
+
+    @Bean
+    public CacheManager cacheManager() {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager() {
+            @Override
+            protected Cache adaptCaffeineCache(String name, com.github.benmanes.caffeine.cache.Cache<Object, Object> cache) {
+                return new UserCopyingCache(name, cache);
+            }
+        };
+        cacheManager.registerCustomCache(USERS_BY_EMAIL, userCache());
+        cacheManager.registerCustomCache(USERS_BY_ID, userCache());
+        return cacheManager;
+    }
+
+    /**
+     * This method is used to build a bounded user cache.
+     * Missing users are cached as null values with a shorter lifetime than the found ones.
+     *
+     * @return com.github.benmanes.caffeine.cache.Cache<Object, Object>
+     */
+    private com.github.benmanes.caffeine.cache.Cache<Object, Object> userCache() {
+        return Caffeine.newBuilder()
+                .maximumSize(usersCacheMaxSize)
+                .expireAfter(new UserLookupExpiry(usersCacheTtl.toNanos(), usersCacheNegativeTtl.toNanos()))
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Cache of the users which stores a copy of the user and hands out a copy on every hit,
+     * so a caller changing the user it was given changes neither the cached user nor the user of another caller
+     */
+    private static class UserCopyingCache extends CaffeineCache {
+        UserCopyingCache(String name, com.github.benmanes.caffeine.cache.Cache<Object, Object> cache) {
+            super(name, cache, true);
+        }
+
+        @Override
+        protected Object toStoreValue(Object userValue) {
+            return super.toStoreValue(userValue instanceof User user ? user.copy() : userValue);
+        }
+
+        @Override
+        protected Object fromStoreValue(Object storeValue) {
+            Object value = super.fromStoreValue(storeValue);
+            return value instanceof User user ? user.copy() : value;
+        }
+    }
+
+    private record UserLookupExpiry(long ttlNanos, long negativeTtlNanos) implements Expiry<Object, Object> {
+        @Override
+        public long expireAfterCreate(Object key, Object value, long currentTime) {
+            return value == NullValue.INSTANCE ? negativeTtlNanos : ttlNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(Object key, Object value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(Object key, Object value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
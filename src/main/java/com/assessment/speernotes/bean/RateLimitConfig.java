@@ -0,0 +1,55 @@
+package com.assessment.speernotes.bean;
+
+import com.assessment.speernotes.requests.ratelimit.GcraRateLimiter;
+import com.assessment.speernotes.requests.ratelimit.LeasedRateLimiter;
+import com.assessment.speernotes.requests.ratelimit.MongoRateLimitCounterStore;
+import com.assessment.speernotes.requests.ratelimit.RateLimitCounterStore;
+import com.assessment.speernotes.requests.ratelimit.RateLimiterFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+@Slf4j
+@Configuration
+public class RateLimitConfig {
+    // Clients tracked at most per policy, the least recently seen are evicted beyond it
+    @Value("${rate-limiting.max-tracked-clients:100000}")
+    private long maxTrackedClients;
+
+    // Share the limits of all the instances through MongoDB instead of limiting each one on its own
+    @Value("${rate-limiting.cluster.enabled:false}")
+    private boolean clusterEnabled;
+
+    @Value("${rate-limiting.cluster.lease-size:2}")
+    private int leaseSize;
+
+    @Value("${rate-limiting.cluster.lease-idle-ms:1000}")
+    private long leaseIdleMs;
+
+    @Value("${rate-limiting.cluster.store-retry-ms:5000}")
+    private long storeRetryMs;
+
+    /**
+     * This method is used to build the factory of the limiters enforcing the rate limit policies.
+     * A policy throttles above its free requests and rejects above its max requests per window.
+     *
+     * @param mongoTemplate
+     * @return RateLimiterFactory
+     */
+    @Bean
+    public RateLimiterFactory rateLimiterFactory(MongoTemplate mongoTemplate) {
+        if (clusterEnabled) {
+            log.info("Rate limiting across the cluster with leases of {} requests", leaseSize);
+            RateLimitCounterStore counterStore = new MongoRateLimitCounterStore(mongoTemplate);
+            return (name, policy) -> {
+                RateLimitCounterStore policyCounters = (key, windowStart, windowMs, delta) ->
+                        counterStore.add(name + ":" + key, windowStart, windowMs, delta);
+                return new LeasedRateLimiter(policyCounters, policy.windowMs(), policy.freeRequests(), policy.maxRequests(),
+                        leaseSize, leaseIdleMs, storeRetryMs, maxTrackedClients);
+            };
+        }
+        return (name, policy) -> new GcraRateLimiter(policy.windowMs(), policy.freeRequests(), policy.maxRequests(), maxTrackedClients);
+    }
+}
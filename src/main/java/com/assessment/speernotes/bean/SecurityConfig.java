@@ -1,12 +1,16 @@
 package com.assessment.speernotes.bean;
 
+import com.assessment.speernotes.model.UserPrincipal;
 import com.assessment.speernotes.requests.JwtAuthentication;
+import com.assessment.speernotes.utils.BCryptStrengthCalibrator;
 import io.swagger.v3.oas.models.Components;
 import io.swagger.v3.oas.models.OpenAPI;
 import io.swagger.v3.oas.models.security.SecurityRequirement;
 import io.swagger.v3.oas.models.security.SecurityScheme;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.ProviderManager;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
@@ -16,13 +20,21 @@ import org.springframework.security.config.annotation.web.configurers.AbstractHt
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
+import java.util.HashMap;
+import java.util.Map;
+
 @Configuration
 @EnableWebSecurity
 public class SecurityConfig {
+    private static final String BCRYPT = "bcrypt";
+    private static final String PBKDF2 = "pbkdf2";
+
     private final JwtAuthentication authentication;
     private final UserDetailsService userDetailsService;
 
@@ -37,10 +49,15 @@ public class SecurityConfig {
                 .csrf(AbstractHttpConfigurer::disable)
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .authorizeHttpRequests(auth -> auth
-                        // Allow Swagger UI and Actuator endpoints
-                        .requestMatchers("/swagger-ui/**", "/v3/api-docs/**", "/actuator/**").permitAll()
+                        // Allow Swagger UI and reading the Actuator endpoints
+                        .requestMatchers("/swagger-ui/**", "/v3/api-docs/**").permitAll()
+                        .requestMatchers(HttpMethod.GET, "/actuator/**").permitAll()
+                        // Allow the Actuator operations, such as rebuilding the search index, only to the administrators
+                        .requestMatchers("/actuator/**").hasAuthority(UserPrincipal.ADMIN_AUTHORITY)
                         // Allow authentication endpoints
                         .requestMatchers("/api/auth/signup", "/api/auth/login").permitAll()
+                        // Allow administration endpoints only to the administrators
+                        .requestMatchers("/api/admin/**").hasAuthority(UserPrincipal.ADMIN_AUTHORITY)
                         // All other requests require authentication
                         .anyRequest().authenticated()
                 )
@@ -62,15 +79,40 @@ public class SecurityConfig {
     }
 
     @Bean
-    public AuthenticationManager authenticationManager() {
+    public AuthenticationManager authenticationManager(PasswordEncoder passwordEncoder) {
         DaoAuthenticationProvider provider = new DaoAuthenticationProvider();
         provider.setUserDetailsService(userDetailsService);
-        provider.setPasswordEncoder(passwordEncoder());
+        provider.setPasswordEncoder(passwordEncoder);
         return new ProviderManager(provider);
     }
 
+    /**
+     * This method is used to create the password encoder.
+     * New hashes are BCrypt with the strength calibrated for the target latency and carry the {bcrypt} prefix.
+     * Other algorithms are matched by their id prefix, and hashes without a prefix are treated as BCrypt.
+     *
+     * @param targetLatencyMs
+     * @param strength fixed strength, calibrated at startup when not set
+     * @param minStrength
+     * @param maxStrength
+     * @return PasswordEncoder
+     */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(@Value("${password-hashing.target-latency-ms:250}") long targetLatencyMs,
+                                           @Value("${password-hashing.bcrypt.strength:0}") int strength,
+                                           @Value("${password-hashing.bcrypt.min-strength:10}") int minStrength,
+                                           @Value("${password-hashing.bcrypt.max-strength:15}") int maxStrength) {
+        int bcryptStrength = strength > 0
+                ? strength
+                : BCryptStrengthCalibrator.calibrate(targetLatencyMs, minStrength, maxStrength);
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(bcryptStrength);
+
+        Map<String, PasswordEncoder> encoders = new HashMap<>();
+        encoders.put(BCRYPT, bcrypt);
+        encoders.put(PBKDF2, Pbkdf2PasswordEncoder.defaultsForSpringSecurity_v5_8());
+
+        DelegatingPasswordEncoder passwordEncoder = new DelegatingPasswordEncoder(BCRYPT, encoders);
+        passwordEncoder.setDefaultPasswordEncoderForMatches(bcrypt);
+        return passwordEncoder;
     }
 }
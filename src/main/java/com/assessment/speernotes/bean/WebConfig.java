@@ -1,5 +1,6 @@
 package com.assessment.speernotes.bean;
 
+import com.assessment.speernotes.requests.AuthRateLimitInterceptor;
 import com.assessment.speernotes.requests.RateLimitInterceptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
@@ -9,15 +10,19 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
     private final RateLimitInterceptor rateLimitInterceptor;
+    private final AuthRateLimitInterceptor authRateLimitInterceptor;
 
     @Autowired
-    public WebConfig(RateLimitInterceptor rateLimitInterceptor) {
+    public WebConfig(RateLimitInterceptor rateLimitInterceptor, AuthRateLimitInterceptor authRateLimitInterceptor) {
         this.rateLimitInterceptor = rateLimitInterceptor;
+        this.authRateLimitInterceptor = authRateLimitInterceptor;
     }
 
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
         registry.addInterceptor(rateLimitInterceptor)
                 .addPathPatterns("/api/notes/**"); // Apply to specific endpoints
+        registry.addInterceptor(authRateLimitInterceptor)
+                .addPathPatterns("/api/auth/login", "/api/auth/signup");
     }
 }
@@ -1,7 +1,11 @@
 package com.assessment.speernotes.controller;
 
 import com.assessment.speernotes.model.dto.UserAuthDto;
+import com.assessment.speernotes.requests.AuthAttemptLimiter;
+import com.assessment.speernotes.requests.JwtAuthentication;
+import com.assessment.speernotes.service.TokenRevocationService;
 import com.assessment.speernotes.service.UsersService;
+import io.jsonwebtoken.Claims;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
@@ -16,9 +20,13 @@ import org.springframework.web.bind.annotation.*;
 @Tag(name = "Authentication End Points", description = "Endpoints used for user authentication")
 public class AuthenticationController {
     private final UsersService usersService;
+    private final AuthAttemptLimiter authAttemptLimiter;
+    private final TokenRevocationService tokenRevocationService;
 
-    public AuthenticationController(UsersService usersService) {
+    public AuthenticationController(UsersService usersService, AuthAttemptLimiter authAttemptLimiter, TokenRevocationService tokenRevocationService) {
         this.usersService = usersService;
+        this.authAttemptLimiter = authAttemptLimiter;
+        this.tokenRevocationService = tokenRevocationService;
     }
 
     /**
@@ -32,11 +40,10 @@ public class AuthenticationController {
     @Operation(summary = "Create the required user")
     public ResponseEntity<String> signup(@RequestBody @Valid UserAuthDto user) {
         log.info("POST /api/auth/signup {}", user.getEmail());
-        if (usersService.isUserPresent(user.getEmail())) {
+        authAttemptLimiter.acquireForEmail(user.getEmail());
+        if (!usersService.createUser(user)) {
             return ResponseEntity.ok("User already exists!");
         }
-
-        usersService.createUser(user);
         return ResponseEntity.ok("User registered successfully!");
     }
 
@@ -51,6 +58,7 @@ public class AuthenticationController {
     @Operation(summary = "Successfully login the valid user")
     public ResponseEntity<String> login(@RequestBody @Valid UserAuthDto user) {
         log.info("POST /api/auth/login {}", user.getEmail());
+        authAttemptLimiter.acquireForEmail(user.getEmail());
         String userJWT = usersService.getUserJWT(user);
 
         if (userJWT.isEmpty()) {
@@ -59,4 +67,35 @@ public class AuthenticationController {
 
         return ResponseEntity.ok(userJWT);
     }
+
+    /**
+     * This controller is used to revoke the token of the current request
+     *
+     * @param claims
+     * @return ResponseEntity<String>
+     */
+    @PostMapping("/logout")
+    @ResponseStatus(HttpStatus.OK)
+    @Operation(summary = "Revoke the token of the current request")
+    public ResponseEntity<String> logout(@RequestAttribute(JwtAuthentication.CLAIMS_ATTRIBUTE) Claims claims) {
+        log.info("POST /api/auth/logout");
+        if (!tokenRevocationService.revoke(claims)) {
+            return ResponseEntity.badRequest().body("The token cannot be revoked alone. Please use the logout from all sessions!");
+        }
+        return ResponseEntity.ok("Logged out successfully!");
+    }
+
+    /**
+     * This controller is used to revoke every token issued to the authenticated user
+     *
+     * @return ResponseEntity<String>
+     */
+    @PostMapping("/logout-all")
+    @ResponseStatus(HttpStatus.OK)
+    @Operation(summary = "Revoke every token issued to the authenticated user")
+    public ResponseEntity<String> logoutAll() {
+        log.info("POST /api/auth/logout-all");
+        usersService.revokeAllTokens();
+        return ResponseEntity.ok("All sessions are logged out successfully!");
+    }
 }
@@ -1,9 +1,14 @@
 package com.assessment.speernotes.controller;
 
 import com.assessment.speernotes.exceptions.AuthenticationException;
+import com.assessment.speernotes.exceptions.NoteConflictException;
 import com.assessment.speernotes.exceptions.NotesException;
+import com.assessment.speernotes.exceptions.PreconditionFailedException;
+import com.assessment.speernotes.exceptions.TooManyRequestsException;
 import com.assessment.speernotes.exceptions.UserException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ProblemDetail;
 import org.springframework.http.ResponseEntity;
@@ -58,6 +63,34 @@ public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
         return createResponseEntity(pd, null, HttpStatus.BAD_REQUEST, request);
     }
 
+    /**
+     * This method is used to handle the conflicting note updates, the note was changed since the client read it
+     *
+     * @param ex
+     * @param request
+     * @return ResponseEntity<Object>
+     */
+    @ExceptionHandler({NoteConflictException.class, OptimisticLockingFailureException.class})
+    public ResponseEntity<Object> handleNoteConflictException(RuntimeException ex, WebRequest request) {
+        log.warn("Caught Note Conflict Exception: {}", ex.getMessage());
+        ProblemDetail pd = ProblemDetail.forStatusAndDetail(HttpStatus.CONFLICT, ex.getMessage());
+        return createResponseEntity(pd, null, HttpStatus.CONFLICT, request);
+    }
+
+    /**
+     * This method is used to handle the failed If-Match preconditions of the conditional writes
+     *
+     * @param ex
+     * @param request
+     * @return ResponseEntity<Object>
+     */
+    @ExceptionHandler(PreconditionFailedException.class)
+    public ResponseEntity<Object> handlePreconditionFailedException(PreconditionFailedException ex, WebRequest request) {
+        log.warn("Caught Precondition Failed Exception: {}", ex.getMessage());
+        ProblemDetail pd = ProblemDetail.forStatusAndDetail(HttpStatus.PRECONDITION_FAILED, ex.getMessage());
+        return createResponseEntity(pd, null, HttpStatus.PRECONDITION_FAILED, request);
+    }
+
     /**
      * This method is used to handle the authentication exception thrown from the application
      *
@@ -71,4 +104,20 @@ public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
         ProblemDetail pd = ProblemDetail.forStatusAndDetail(HttpStatus.NOT_FOUND, ex.getMessage());
         return createResponseEntity(pd, null, HttpStatus.NOT_FOUND, request);
     }
+
+    /**
+     * This method is used to handle the too many requests exception thrown from the application
+     *
+     * @param ex
+     * @param request
+     * @return ResponseEntity<Object>
+     */
+    @ExceptionHandler(TooManyRequestsException.class)
+    public ResponseEntity<Object> handleTooManyRequestsException(TooManyRequestsException ex, WebRequest request) {
+        log.warn("Caught Too Many Requests Exception: {}", ex.getMessage());
+        ProblemDetail pd = ProblemDetail.forStatusAndDetail(HttpStatus.TOO_MANY_REQUESTS, ex.getMessage());
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()));
+        return createResponseEntity(pd, headers, HttpStatus.TOO_MANY_REQUESTS, request);
+    }
 }
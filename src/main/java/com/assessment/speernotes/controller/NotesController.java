@@ -1,55 +1,126 @@
 package com.assessment.speernotes.controller;
 
+import com.assessment.speernotes.exceptions.NoteConflictException;
+import com.assessment.speernotes.exceptions.PreconditionFailedException;
 import com.assessment.speernotes.model.Note;
+import com.assessment.speernotes.model.NoteFields;
 import com.assessment.speernotes.model.dto.NoteDto;
+import com.assessment.speernotes.model.dto.NotePageDto;
 import com.assessment.speernotes.service.NotesService;
+import com.assessment.speernotes.utils.NoteETags;
+import com.assessment.speernotes.utils.NoteStreamWriter;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @RestController
 @Slf4j
 @RequestMapping("api/notes")
 @Tag(name = "Notes End Points", description = "The end points to do the CRUD operations on Notes")
 public class NotesController {
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    // The notes may be stored by the client but have to be revalidated with their entity tag
+    private static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+
     private final NotesService notesService;
+    private final NoteStreamWriter noteStreamWriter;
 
-    public NotesController(NotesService notesService) {
+    public NotesController(NotesService notesService, NoteStreamWriter noteStreamWriter) {
         this.notesService = notesService;
+        this.noteStreamWriter = noteStreamWriter;
     }
 
     /**
-     * This end point is used to get all the notes associated with the user
+     * This end point is used to get a page of the notes associated with the user.
+     * The token of the next page is returned in the X-Next-Cursor header, which is absent on the last page.
+     * The page is not read if it is unchanged since the entity tag of the If-None-Match header.
      *
+     * @param cursor
+     * @param size
+     * @param fields comma separated fields of the notes, the summary without the content by default
+     * @param request
      * @return ResponseEntity<List<Note>>
      */
     @GetMapping
     @ResponseStatus(HttpStatus.OK)
-    @Operation(summary = "This end point gets all the notes associated with the user")
-    public ResponseEntity<List<Note>> getAllNotes() {
-        log.info("GET /api/notes");
-        return ResponseEntity.ok(notesService.getAllNotes());
+    @Operation(summary = "This end point gets a page of the notes associated with the user, the most recently updated first")
+    public ResponseEntity<List<Note>> getAllNotes(@RequestParam(required = false) String cursor,
+                                                  @RequestParam(required = false) Integer size,
+                                                  @RequestParam(required = false) String fields,
+                                                  WebRequest request) {
+        log.info("GET /api/notes {}, {}, {}", cursor, size, fields);
+        NoteFields noteFields = NoteFields.parse(fields, NoteFields.SUMMARY);
+        // Read before the notes, so the notes are never older than their tag
+        String eTag = notesService.getNotesETag(cursor, size, noteFields);
+        if (request.checkNotModified(eTag)) {
+            return notModified(eTag);
+        }
+        NotePageDto page = notesService.getNotes(cursor, size, noteFields);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(eTag).cacheControl(REVALIDATE);
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getNotes());
+    }
+
+    /**
+     * This end point is used to stream all the notes associated with the user, without pages.
+     * The notes are written as they are read from the database, as newline delimited JSON
+     * if the client accepts application/x-ndjson and as a JSON array otherwise.
+     *
+     * @param fields comma separated fields of the notes, the summary without the content by default
+     * @param accept
+     * @return ResponseEntity<StreamingResponseBody>
+     */
+    @GetMapping(params = "stream=true")
+    @ResponseStatus(HttpStatus.OK)
+    @Operation(summary = "This end point streams all the notes associated with the user, the most recently updated first")
+    public ResponseEntity<StreamingResponseBody> streamAllNotes(@RequestParam(required = false) String fields,
+                                                                @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        log.info("GET /api/notes?stream=true {}", fields);
+        boolean ndjson = NoteStreamWriter.acceptsNdjson(accept);
+        return ResponseEntity.ok()
+                .contentType(ndjson ? MediaType.APPLICATION_NDJSON : MediaType.APPLICATION_JSON)
+                .body(noteStreamWriter.write(notesService.streamNotes(NoteFields.parse(fields, NoteFields.SUMMARY)), ndjson));
     }
 
     /**
-     * This end point is used to get the note based on the note id for the user
+     * This end point is used to get the note based on the note id for the user.
+     * The entity tag is read from the index first, and the note is not read if it matches the If-None-Match header.
      *
      * @param id
+     * @param fields comma separated fields of the note, all of them by default
+     * @param request
      * @return ResponseEntity<Optional<Note>>
      */
     @GetMapping("/{id}")
     @ResponseStatus(HttpStatus.OK)
     @Operation(summary = "This end point is used to get the note by id")
-    public ResponseEntity<Optional<Note>> getNote(@PathVariable String id) {
-        log.info("GET /api/notes/id {}", id);
-        return ResponseEntity.ok(notesService.getNoteById(id));
+    public ResponseEntity<Optional<Note>> getNote(@PathVariable String id, @RequestParam(required = false) String fields,
+                                                  WebRequest request) {
+        log.info("GET /api/notes/id {}, {}", id, fields);
+        NoteFields noteFields = NoteFields.parse(fields, NoteFields.ALL);
+        Optional<String> eTag = notesService.getNoteETag(id, noteFields);
+        if (eTag.isPresent() && request.checkNotModified(eTag.get())) {
+            return notModified(eTag.get());
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        eTag.ifPresent(tag -> response.eTag(tag).cacheControl(REVALIDATE));
+        return response.body(notesService.getNoteById(id, noteFields));
     }
 
     /**
@@ -63,36 +134,73 @@ public class NotesController {
     @Operation(summary = "This end point is used to create the note")
     public ResponseEntity<Note> createNote(@RequestBody @Valid NoteDto noteDto) {
         log.info("POST /api/notes {}, {}", noteDto.getTitle(), noteDto.getContent());
-        return ResponseEntity.status(HttpStatus.CREATED).body(notesService.createNote(noteDto));
+        Note note = notesService.createNote(noteDto);
+        return ResponseEntity.status(HttpStatus.CREATED).eTag(NoteETags.of(note, NoteFields.ALL)).body(note);
     }
 
     /**
-     * This end point is used to update the note for the user
+     * This end point is used to update the note for the user.
+     * With an If-Match header, the version of its entity tag is matched by the update itself,
+     * and the update fails with 412 if the note has changed since.
      *
      * @param id
      * @param noteDto
+     * @param ifMatch
      * @return ResponseEntity<Optional<Note>>
      */
     @PutMapping("/{id}")
     @ResponseStatus(HttpStatus.OK)
     @Operation(summary = "This end point is used to update the existing note by id")
-    public ResponseEntity<Optional<Note>> updateNote(@PathVariable String id, @RequestBody NoteDto noteDto) {
+    public ResponseEntity<Optional<Note>> updateNote(@PathVariable String id, @RequestBody NoteDto noteDto,
+                                                     @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         log.info("PUT /api/notes/{}, {}, {}", id, noteDto.getTitle(), noteDto.getContent());
-        return ResponseEntity.ok(notesService.updateNote(id, noteDto));
+        Optional<Note> note;
+        if (ifMatch == null) {
+            note = notesService.updateNote(id, noteDto);
+        } else {
+            noteDto.setVersion(expectedVersion(id, ifMatch));
+            try {
+                note = notesService.updateNote(id, noteDto);
+            } catch (NoteConflictException e) {
+                throw new PreconditionFailedException("The note " + id + " has changed!");
+            }
+            if (note.isEmpty()) {
+                throw new PreconditionFailedException("The note " + id + " is not found!");
+            }
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        note.ifPresent(updated -> response.eTag(NoteETags.of(updated, NoteFields.ALL)));
+        return response.body(note);
     }
 
     /**
-     * This end point is used to delete the note for the user
+     * This end point is used to delete the note for the user.
+     * With an If-Match header, the delete fails with 412 if the note has changed since its entity tag.
      *
      * @param id
+     * @param ifMatch
      * @return ResponseEntity<String>
      */
     @DeleteMapping("/{id}")
     @ResponseStatus(HttpStatus.OK)
     @Operation(summary = "This end point is used to delete the existing note by id")
-    public ResponseEntity<String> deleteNote(@PathVariable String id) {
+    public ResponseEntity<String> deleteNote(@PathVariable String id,
+                                             @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         log.info("DELETE /api/notes/{}", id);
-        notesService.deleteNote(id);
+        if (ifMatch == null) {
+            notesService.deleteNote(id);
+        } else {
+            Long version = expectedVersion(id, ifMatch);
+            boolean found;
+            try {
+                found = notesService.deleteNote(id, version);
+            } catch (NoteConflictException | OptimisticLockingFailureException e) {
+                throw new PreconditionFailedException("The note " + id + " has changed!");
+            }
+            if (!found) {
+                throw new PreconditionFailedException("The note " + id + " is not found!");
+            }
+        }
         return ResponseEntity.ok("Note " + id + " is deleted successfully.");
     }
 
@@ -115,16 +223,93 @@ public class NotesController {
     }
 
     /**
-     * This end point is used to query the notes based on the query string
+     * This end point is used to query a page of the notes based on the query string, the most relevant first.
+     * The token of the next page is returned in the X-Next-Cursor header, which is absent on the last page.
      *
      * @param query
+     * @param cursor
+     * @param size
+     * @param fields comma separated fields of the notes, the summary without the content by default
      * @return ResponseEntity<List<Note>>
      */
     @GetMapping("/search")
     @ResponseStatus(HttpStatus.OK)
     @Operation(summary = "This end point is used to query the notes based on the keywords")
-    public ResponseEntity<List<Note>> searchNotes(@RequestParam String query) {
-        log.info("GET /api/notes/search {}", query);
-        return ResponseEntity.ok(notesService.searchNoteForQuery(query));
+    public ResponseEntity<List<Note>> searchNotes(@RequestParam String query,
+                                                  @RequestParam(required = false) String cursor,
+                                                  @RequestParam(required = false) Integer size,
+                                                  @RequestParam(required = false) String fields) {
+        log.info("GET /api/notes/search {}, {}, {}, {}", query, cursor, size, fields);
+        NotePageDto page = notesService.searchNoteForQuery(query, cursor, size, NoteFields.parse(fields, NoteFields.SUMMARY));
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getNotes());
+    }
+
+    /**
+     * This end point is used to suggest the terms of the titles of the notes of the user starting with the prefix, for typeahead
+     *
+     * @param prefix
+     * @param limit
+     * @return ResponseEntity<List<String>>
+     */
+    @GetMapping("/suggest")
+    @ResponseStatus(HttpStatus.OK)
+    @Operation(summary = "This end point is used to suggest the title terms starting with the prefix")
+    public ResponseEntity<List<String>> suggest(@RequestParam String prefix, @RequestParam(required = false) Integer limit) {
+        log.info("GET /api/notes/suggest {}, {}", prefix, limit);
+        return ResponseEntity.ok(notesService.suggest(prefix, limit));
+    }
+
+    /**
+     * This end point is used to stream the notes matching the query string as they are read from the database,
+     * as newline delimited JSON if the client accepts application/x-ndjson and as a JSON array otherwise
+     *
+     * @param query
+     * @param fields comma separated fields of the notes, the summary without the content by default
+     * @param accept
+     * @return ResponseEntity<StreamingResponseBody>
+     */
+    @GetMapping(value = "/search", params = "stream=true")
+    @ResponseStatus(HttpStatus.OK)
+    @Operation(summary = "This end point is used to stream the notes matching the keywords")
+    public ResponseEntity<StreamingResponseBody> streamSearchNotes(@RequestParam String query,
+                                                                   @RequestParam(required = false) String fields,
+                                                                   @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        log.info("GET /api/notes/search?stream=true {}, {}", query, fields);
+        boolean ndjson = NoteStreamWriter.acceptsNdjson(accept);
+        return ResponseEntity.ok()
+                .contentType(ndjson ? MediaType.APPLICATION_NDJSON : MediaType.APPLICATION_JSON)
+                .body(noteStreamWriter.write(notesService.streamSearchNotes(query, NoteFields.parse(fields, NoteFields.SUMMARY)), ndjson));
+    }
+
+    /**
+     * This method is used to find the version of the note the write has to match, from the tags of the If-Match header.
+     * A write matches a single version, so when the tags are at several versions the current one is read
+     * from the index, and it is the one matched if it is listed.
+     *
+     * @param id
+     * @param ifMatch
+     * @return Long, null if any version matches
+     */
+    private Long expectedVersion(String id, String ifMatch) {
+        Set<Long> versions = NoteETags.parseVersions(ifMatch);
+        if (versions == null || versions.size() == 1) {
+            return versions == null ? null : versions.iterator().next();
+        }
+        return notesService.getNoteVersion(id).filter(versions::contains)
+                .orElseThrow(() -> new PreconditionFailedException("The note " + id + " has changed!"));
+    }
+
+    /**
+     * This method is used to answer that the resource is unchanged since the entity tag held by the client
+     *
+     * @param eTag
+     * @return ResponseEntity<T>
+     */
+    private static <T> ResponseEntity<T> notModified(String eTag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).cacheControl(REVALIDATE).build();
     }
 }
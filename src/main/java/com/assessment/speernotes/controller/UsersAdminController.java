@@ -0,0 +1,38 @@
+package com.assessment.speernotes.controller;
+
+import com.assessment.speernotes.model.dto.UserProvisioningDto;
+import com.assessment.speernotes.model.dto.UserProvisioningResultDto;
+import com.assessment.speernotes.service.UsersService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@Slf4j
+@RequestMapping("/api/admin/users")
+@Tag(name = "User Administration End Points", description = "Endpoints used by the administrators to manage the users")
+public class UsersAdminController {
+    private final UsersService usersService;
+
+    public UsersAdminController(UsersService usersService) {
+        this.usersService = usersService;
+    }
+
+    /**
+     * This controller is used to provision many users at once
+     *
+     * @param provisioning
+     * @return ResponseEntity<UserProvisioningResultDto>
+     */
+    @PostMapping("/bulk")
+    @ResponseStatus(HttpStatus.OK)
+    @Operation(summary = "Create the users in bulk")
+    public ResponseEntity<UserProvisioningResultDto> provisionUsers(@RequestBody @Valid UserProvisioningDto provisioning) {
+        log.info("POST /api/admin/users/bulk {} users", provisioning.getUsers().size());
+        return ResponseEntity.ok(usersService.provisionUsers(provisioning.getUsers()));
+    }
+}
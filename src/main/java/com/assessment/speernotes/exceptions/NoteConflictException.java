@@ -0,0 +1,7 @@
+package com.assessment.speernotes.exceptions;
+
+public class NoteConflictException extends RuntimeException {
+    public NoteConflictException(String message) {
+        super("Conflicting note update. Please reload the note and try again! Reason: " + message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.assessment.speernotes.exceptions;
+
+public class PreconditionFailedException extends RuntimeException {
+    public PreconditionFailedException(String message) {
+        super("Precondition failed. Please reload the note and try again! Reason: " + message);
+    }
+}
@@ -0,0 +1,13 @@
+package com.assessment.speernotes.exceptions;
+
+import lombok.Getter;
+
+@Getter
+public class TooManyRequestsException extends RuntimeException {
+    private final long retryAfterSeconds;
+
+    public TooManyRequestsException(String message, long retryAfterSeconds) {
+        super("Too many requests. Try again later. Reason: " + message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
@@ -1,22 +1,32 @@
 package com.assessment.speernotes.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 import org.springframework.data.annotation.Id;
-import org.springframework.data.mongodb.core.index.TextIndexed;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.TextScore;
 
 import java.time.Instant;
 
 @Document(collection = "notes")
+// The fields left out by a projection are not serialized
+@JsonInclude(JsonInclude.Include.NON_NULL)
 @Data
 public class Note {
     @Id
     private String id;
     private String userId;
-    @TextIndexed
     private String title;
-    @TextIndexed
     private String content;
     private Instant createdAt;
     private Instant updatedAt;
+    // Incremented on every update, a write based on an older version is rejected
+    @Version
+    private Long version;
+    // Relevance of the note to a search, read only and kept for the search cursor
+    @TextScore
+    @JsonIgnore
+    private Double score;
 }
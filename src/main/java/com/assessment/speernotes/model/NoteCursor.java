@@ -0,0 +1,52 @@
+package com.assessment.speernotes.model;
+
+import com.assessment.speernotes.exceptions.NotesException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Position of the last note of a page in the (updatedAt, _id) order, handed to the clients as an opaque token
+ */
+public record NoteCursor(Instant updatedAt, String id) {
+
+    /**
+     * This method is used to build the cursor positioned on the note
+     *
+     * @param note
+     * @return NoteCursor
+     */
+    public static NoteCursor of(Note note) {
+        return new NoteCursor(note.getUpdatedAt(), note.getId());
+    }
+
+    /**
+     * This method is used to encode the cursor as an URL safe token
+     *
+     * @return String
+     */
+    public String encode() {
+        String position = updatedAt.toEpochMilli() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * This method is used to decode the token back to the cursor
+     *
+     * @param token
+     * @return NoteCursor
+     */
+    public static NoteCursor decode(String token) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = position.indexOf(':');
+            if (separator <= 0 || separator == position.length() - 1) {
+                throw new IllegalArgumentException("Missing separator");
+            }
+            return new NoteCursor(Instant.ofEpochMilli(Long.parseLong(position.substring(0, separator))), position.substring(separator + 1));
+        } catch (IllegalArgumentException e) {
+            throw new NotesException("The cursor " + token + " is invalid!");
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.assessment.speernotes.model;
+
+import com.assessment.speernotes.exceptions.NotesException;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The fields of the notes requested by a client. They are read from MongoDB through a projection,
+ * and the fields read only for internal use are cleared before the notes are serialized.
+ */
+public final class NoteFields {
+    public static final List<String> NAMES = List.of("id", "userId", "title", "content", "createdAt", "updatedAt", "version");
+
+    public static final NoteFields ALL = new NoteFields(Set.copyOf(NAMES));
+
+    // Default of the listings, leaving out the content
+    public static final NoteFields SUMMARY = new NoteFields(Set.of("id", "title", "createdAt", "updatedAt"));
+
+    private final Set<String> names;
+
+    private NoteFields(Set<String> names) {
+        this.names = names;
+    }
+
+    /**
+     * This method is used to parse the comma separated fields requested by the client
+     *
+     * @param fields the fields parameter, the defaults are used if null or blank
+     * @param defaults
+     * @return NoteFields
+     */
+    public static NoteFields parse(String fields, NoteFields defaults) {
+        if (fields == null || fields.isBlank()) {
+            return defaults;
+        }
+        Set<String> names = new LinkedHashSet<>();
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (!NAMES.contains(name)) {
+                throw new NotesException("The field " + name + " is invalid, the valid fields are " + NAMES + "!");
+            }
+            names.add(name);
+        }
+        return new NoteFields(Set.copyOf(names));
+    }
+
+    /**
+     * This method is used to check whether the field is requested
+     *
+     * @param name
+     * @return boolean
+     */
+    public boolean contains(String name) {
+        return names.contains(name);
+    }
+
+    /**
+     * This method is used to build a short key of the requested fields, the same for the same fields in any order
+     *
+     * @return String
+     */
+    public String key() {
+        int mask = 0;
+        for (int i = 0; i < NAMES.size(); i++) {
+            if (names.contains(NAMES.get(i))) {
+                mask |= 1 << i;
+            }
+        }
+        return Integer.toHexString(mask);
+    }
+
+    /**
+     * This method is used to build the fields to read, the requested ones along with those needed internally
+     *
+     * @param required
+     * @return String[]
+     */
+    public String[] projection(String... required) {
+        Set<String> projection = new LinkedHashSet<>();
+        NAMES.stream().filter(names::contains).forEach(projection::add);
+        projection.addAll(Arrays.asList(required));
+        return projection.toArray(String[]::new);
+    }
+
+    /**
+     * This method is used to clear the fields which are not requested, so that they are not serialized
+     *
+     * @param note
+     * @return Note
+     */
+    public Note apply(Note note) {
+        if (names.size() == NAMES.size()) {
+            return note;
+        }
+        if (!contains("id")) note.setId(null);
+        if (!contains("userId")) note.setUserId(null);
+        if (!contains("title")) note.setTitle(null);
+        if (!contains("content")) note.setContent(null);
+        if (!contains("createdAt")) note.setCreatedAt(null);
+        if (!contains("updatedAt")) note.setUpdatedAt(null);
+        if (!contains("version")) note.setVersion(null);
+        return note;
+    }
+}
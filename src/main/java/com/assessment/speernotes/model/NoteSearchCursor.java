@@ -0,0 +1,52 @@
+package com.assessment.speernotes.model;
+
+import com.assessment.speernotes.exceptions.NotesException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position of the last note of a page of search results in the (score, _id) order, handed to the clients as an opaque token
+ */
+public record NoteSearchCursor(double score, String id) {
+
+    /**
+     * This method is used to build the cursor positioned on the scored note
+     *
+     * @param note
+     * @return NoteSearchCursor
+     */
+    public static NoteSearchCursor of(Note note) {
+        return new NoteSearchCursor(note.getScore(), note.getId());
+    }
+
+    /**
+     * This method is used to encode the cursor as an URL safe token. The score is kept exact,
+     * as the next page starts with the notes ranked strictly after it.
+     *
+     * @return String
+     */
+    public String encode() {
+        String position = Double.toString(score) + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * This method is used to decode the token back to the cursor
+     *
+     * @param token
+     * @return NoteSearchCursor
+     */
+    public static NoteSearchCursor decode(String token) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = position.indexOf(':');
+            if (separator <= 0 || separator == position.length() - 1) {
+                throw new IllegalArgumentException("Missing separator");
+            }
+            return new NoteSearchCursor(Double.parseDouble(position.substring(0, separator)), position.substring(separator + 1));
+        } catch (IllegalArgumentException e) {
+            throw new NotesException("The cursor " + token + " is invalid!");
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.assessment.speernotes.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+@Document(collection = "rate_limit_counters")
+@Data
+public class RateLimitCounter {
+    // The rate limited key and the start of its window
+    @Id
+    private String id;
+    private long count;
+    // MongoDB removes the counter once its window has passed, through the TTL index of IndexRegistry
+    private Date expiresAt;
+}
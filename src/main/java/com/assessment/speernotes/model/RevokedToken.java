@@ -0,0 +1,26 @@
+package com.assessment.speernotes.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+@Document(collection = "revoked_tokens")
+@Data
+public class RevokedToken {
+    // The jti claim of the revoked token
+    @Id
+    private String id;
+    private String userId;
+    // MongoDB removes the entry once the token would have expired anyway, through the TTL index of IndexRegistry
+    private Date expiresAt;
+
+    public RevokedToken() {}
+
+    public RevokedToken(String id, String userId, Date expiresAt) {
+        this.id = id;
+        this.userId = userId;
+        this.expiresAt = expiresAt;
+    }
+}
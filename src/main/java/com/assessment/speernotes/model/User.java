@@ -2,7 +2,6 @@ package com.assessment.speernotes.model;
 
 import lombok.Data;
 import org.springframework.data.annotation.Id;
-import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.util.HashSet;
@@ -14,10 +13,16 @@ public class User {
     @Id
     private String id;
     private String username;
-    @Indexed(unique = true)
+    // Unique through the email index of IndexRegistry
     private String email;
     private String password;
     private Set<String> sharedNotes = new HashSet<>();
+    // Granted authorities, users without any get the default USER authority
+    private Set<String> roles = new HashSet<>();
+    // Bumped to revoke every token issued to the user
+    private long tokenVersion;
+    // Bumped when the notes of the user or the notes shared with the user change, the cached searches are keyed by it
+    private long notesGeneration;
 
     public User() {}
 
@@ -26,4 +31,19 @@ public class User {
         this.email = email;
         this.password = password;
     }
+
+    /**
+     * This method is used to copy the user, the sets are copied too so that the copy can be changed on its own
+     *
+     * @return User
+     */
+    public User copy() {
+        User copy = new User(username, email, password);
+        copy.setId(id);
+        copy.setSharedNotes(sharedNotes == null ? null : new HashSet<>(sharedNotes));
+        copy.setRoles(roles == null ? null : new HashSet<>(roles));
+        copy.setTokenVersion(tokenVersion);
+        copy.setNotesGeneration(notesGeneration);
+        return copy;
+    }
 }
@@ -0,0 +1,54 @@
+package com.assessment.speernotes.model;
+
+import lombok.Getter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Security principal resolved once by the authentication filter.
+ * It carries the user id so that the notes flow does not query the users collection again.
+ */
+@Getter
+public class UserPrincipal implements UserDetails {
+    public static final String DEFAULT_AUTHORITY = "USER";
+    public static final String ADMIN_AUTHORITY = "ADMIN";
+
+    private final String id;
+    private final String email;
+    private final String password;
+    private final Collection<? extends GrantedAuthority> authorities;
+
+    public UserPrincipal(String id, String email, String password, Collection<? extends GrantedAuthority> authorities) {
+        this.id = id;
+        this.email = email;
+        this.password = password;
+        this.authorities = authorities;
+    }
+
+    /**
+     * This method is used to build the principal from the stored user
+     *
+     * @param user
+     * @return UserPrincipal
+     */
+    public static UserPrincipal from(User user) {
+        Collection<SimpleGrantedAuthority> authorities = user.getRoles() == null || user.getRoles().isEmpty()
+                ? Collections.singletonList(new SimpleGrantedAuthority(DEFAULT_AUTHORITY))
+                : user.getRoles().stream().map(SimpleGrantedAuthority::new).toList();
+        return new UserPrincipal(
+                user.getId(),
+                user.getEmail(),
+                user.getPassword(),
+                authorities
+        );
+    }
+
+    @Override
+    public String getUsername() {
+        return email;
+    }
+}
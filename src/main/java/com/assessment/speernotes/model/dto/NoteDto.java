@@ -9,6 +9,8 @@ public class NoteDto {
     private String title;
     @NotNull
     private String content;
+    // The version the update is based on, optional
+    private Long version;
 
     public NoteDto(String title, String content) {
         this.title = title;
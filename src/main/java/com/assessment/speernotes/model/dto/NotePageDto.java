@@ -0,0 +1,18 @@
+package com.assessment.speernotes.model.dto;
+
+import com.assessment.speernotes.model.Note;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class NotePageDto {
+    private List<Note> notes;
+    // Token of the next page, null on the last page
+    private String nextCursor;
+
+    public NotePageDto(List<Note> notes, String nextCursor) {
+        this.notes = notes;
+        this.nextCursor = nextCursor;
+    }
+}
@@ -0,0 +1,19 @@
+package com.assessment.speernotes.model.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class UserProvisioningDto {
+    @NotEmpty
+    private List<@Valid UserAuthDto> users;
+
+    public UserProvisioningDto() {}
+
+    public UserProvisioningDto(List<UserAuthDto> users) {
+        this.users = users;
+    }
+}
@@ -0,0 +1,16 @@
+package com.assessment.speernotes.model.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class UserProvisioningResultDto {
+    private int created;
+    private List<String> existingEmails;
+
+    public UserProvisioningResultDto(int created, List<String> existingEmails) {
+        this.created = created;
+        this.existingEmails = existingEmails;
+    }
+}
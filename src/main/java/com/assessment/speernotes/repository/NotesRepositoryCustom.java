@@ -0,0 +1,40 @@
+package com.assessment.speernotes.repository;
+
+import com.assessment.speernotes.model.Note;
+import com.assessment.speernotes.model.NoteCursor;
+import com.assessment.speernotes.model.NoteSearchCursor;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+// The fields are read through a projection, the other fields of the notes are left null
+public interface NotesRepositoryCustom {
+    // Seeks past the cursor on the (userId, updatedAt, _id) index, the most recently updated notes first
+    List<Note> findPageByUserId(String userId, NoteCursor after, int limit, String... fields);
+
+    Optional<Note> findProjectedById(String id, String... fields);
+
+    List<Note> findProjectedByIds(Collection<String> ids, String... fields);
+
+    // Reads only the version and the update time of the note of the user, from the index
+    Optional<Note> findVersionById(String id, String userId);
+
+    // Sets the changed fields with findAndModify, returns the note before the update, empty if nothing matched
+    Optional<Note> updateFields(String id, String userId, Long expectedVersion, String title, String content, Instant updatedAt);
+
+    // Full-text search of the notes owned by or shared with the user, one query per owner, the most relevant first, seeking past the cursor
+    List<Note> searchPage(String keyword, String userId, Collection<String> sharedNoteIds,
+                          NoteSearchCursor after, int limit, String... fields);
+
+    // Iterates a cursor over all the notes of the user, the stream has to be closed
+    Stream<Note> streamByUserId(String userId, String... fields);
+
+    // Iterates a cursor over all the notes, the stream has to be closed
+    Stream<Note> streamAll(String... fields);
+
+    // Iterates a cursor over the notes of the user matching the keyword, the stream has to be closed
+    Stream<Note> streamSearchNotes(String keyword, String userId, Collection<String> sharedNoteIds, String... fields);
+}
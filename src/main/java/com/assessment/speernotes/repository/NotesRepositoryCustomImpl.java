@@ -0,0 +1,349 @@
+package com.assessment.speernotes.repository;
+
+import com.assessment.speernotes.model.Note;
+import com.assessment.speernotes.model.NoteCursor;
+import com.assessment.speernotes.model.NoteSearchCursor;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.TextCriteria;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+public class NotesRepositoryCustomImpl implements NotesRepositoryCustom {
+    // The order of the search results, the most relevant first, then the most recent id as the cursor does
+    private static final Comparator<Note> BY_RELEVANCE = Comparator.comparing(Note::getScore)
+            .thenComparing(Note::getId).reversed();
+
+    private final MongoTemplate mongoTemplate;
+
+    public NotesRepositoryCustomImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * This method is used to retrieve the page of the notes of the user following the cursor.
+     * The range condition on the index keys lets every page start with an index seek instead of skipping,
+     * so deep pages cost the same as the first one.
+     *
+     * @param userId
+     * @param after the last note of the previous page, null for the first page
+     * @param limit
+     * @param fields
+     * @return List<Note>
+     */
+    @Override
+    public List<Note> findPageByUserId(String userId, NoteCursor after, int limit, String... fields) {
+        Criteria criteria = where("userId").is(userId);
+        if (after != null) {
+            criteria = criteria.orOperator(
+                    where("updatedAt").lt(after.updatedAt()),
+                    where("updatedAt").is(after.updatedAt()).and("_id").lt(after.id())
+            );
+        }
+        Query query = new Query(criteria)
+                .with(Sort.by(Sort.Direction.DESC, "updatedAt", "_id"))
+                .limit(limit);
+        query.fields().include(fields);
+        return mongoTemplate.find(query, Note.class);
+    }
+
+    /**
+     * This method is used to retrieve the fields of the note by the note id
+     *
+     * @param id
+     * @param fields
+     * @return Optional<Note>
+     */
+    @Override
+    public Optional<Note> findProjectedById(String id, String... fields) {
+        Query query = new Query(where("_id").is(id));
+        query.fields().include(fields);
+        return Optional.ofNullable(mongoTemplate.findOne(query, Note.class));
+    }
+
+    /**
+     * This method is used to retrieve the fields of the notes by the note ids, in no particular order
+     *
+     * @param ids
+     * @param fields
+     * @return List<Note>
+     */
+    @Override
+    public List<Note> findProjectedByIds(Collection<String> ids, String... fields) {
+        Query query = new Query(where("_id").in(ids));
+        query.fields().include(fields);
+        return mongoTemplate.find(query, Note.class);
+    }
+
+    /**
+     * This method is used to retrieve the version and the update time of the note of the user.
+     * The query is covered by the (_id, userId, updatedAt, version) index, so the note itself is not read.
+     *
+     * @param id
+     * @param userId
+     * @return Optional<Note>
+     */
+    @Override
+    public Optional<Note> findVersionById(String id, String userId) {
+        Query query = new Query(where("_id").is(id).and("userId").is(userId));
+        query.fields().include("updatedAt", "version");
+        return Optional.ofNullable(mongoTemplate.findOne(query, Note.class));
+    }
+
+    /**
+     * This method is used to update the changed fields of the note of the user in a single round trip.
+     * The note is matched along with its owner and the expected version, and the version is incremented,
+     * so a write based on an older version matches nothing instead of overwriting a concurrent one.
+     *
+     * @param id
+     * @param userId
+     * @param expectedVersion null to update whatever the version, 0 also matches the notes without a version
+     * @param title null to keep the title
+     * @param content null to keep the content
+     * @param updatedAt
+     * @return Optional<Note> the note before the update, empty if nothing matched
+     */
+    @Override
+    public Optional<Note> updateFields(String id, String userId, Long expectedVersion,
+                                       String title, String content, Instant updatedAt) {
+        Criteria criteria = where("_id").is(id).and("userId").is(userId);
+        if (expectedVersion != null && expectedVersion == 0) {
+            // The notes created before the versioning have no version yet
+            criteria = criteria.and("version").in(0L, null);
+        } else if (expectedVersion != null) {
+            criteria = criteria.and("version").is(expectedVersion);
+        }
+        Update update = new Update().set("updatedAt", updatedAt).inc("version", 1);
+        if (title != null) {
+            update.set("title", title);
+        }
+        if (content != null) {
+            update.set("content", content);
+        }
+        return Optional.ofNullable(mongoTemplate.findAndModify(new Query(criteria), update,
+                FindAndModifyOptions.options().returnNew(false), Note.class));
+    }
+
+    /**
+     * This method is used to retrieve the page of the notes of the user matching the keyword following the cursor,
+     * the most relevant first. Every text search is bounded by the owner of the notes, which prefixes the text index:
+     * one for the notes of the user, and one per owner of the shared notes restricted to their ids.
+     * Each query ranks and cuts its page in the database, and the pages are merged here.
+     *
+     * @param keyword
+     * @param userId
+     * @param sharedNoteIds
+     * @param after the last note of the previous page, null for the first page
+     * @param limit
+     * @param fields
+     * @return List<Note>
+     */
+    @Override
+    public List<Note> searchPage(String keyword, String userId, Collection<String> sharedNoteIds,
+                                 NoteSearchCursor after, int limit, String... fields) {
+        List<Note> notes = new ArrayList<>();
+        for (TypedAggregation<Note> aggregation : searchAggregations(keyword, userId, sharedNoteIds, after, limit, fields)) {
+            notes.addAll(mongoTemplate.aggregate(aggregation, Note.class).getMappedResults());
+        }
+        notes.sort(BY_RELEVANCE);
+        return notes.size() > limit ? new ArrayList<>(notes.subList(0, limit)) : notes;
+    }
+
+    /**
+     * This method is used to iterate all the notes of the user in the order of the listing,
+     * fetching them from a cursor batch by batch as they are consumed
+     *
+     * @param userId
+     * @param fields
+     * @return Stream<Note>
+     */
+    @Override
+    public Stream<Note> streamByUserId(String userId, String... fields) {
+        Query query = new Query(where("userId").is(userId))
+                .with(Sort.by(Sort.Direction.DESC, "updatedAt", "_id"));
+        query.fields().include(fields);
+        return mongoTemplate.stream(query, Note.class);
+    }
+
+    /**
+     * This method is used to iterate all the notes, fetching them from a cursor batch by batch as they are consumed
+     *
+     * @param fields
+     * @return Stream<Note>
+     */
+    @Override
+    public Stream<Note> streamAll(String... fields) {
+        Query query = new Query();
+        query.fields().include(fields);
+        return mongoTemplate.stream(query, Note.class);
+    }
+
+    /**
+     * This method is used to iterate the notes of the user matching the keyword, the most relevant first,
+     * fetching them from a cursor batch by batch as they are consumed.
+     * The cursors of the notes of the user and of each owner of the shared notes are merged by relevance.
+     *
+     * @param keyword
+     * @param userId
+     * @param sharedNoteIds
+     * @param fields
+     * @return Stream<Note>
+     */
+    @Override
+    public Stream<Note> streamSearchNotes(String keyword, String userId, Collection<String> sharedNoteIds, String... fields) {
+        List<Stream<Note>> streams = new ArrayList<>();
+        try {
+            for (TypedAggregation<Note> aggregation : searchAggregations(keyword, userId, sharedNoteIds, null, 0, fields)) {
+                streams.add(mongoTemplate.aggregateStream(aggregation, Note.class));
+            }
+        } catch (RuntimeException e) {
+            streams.forEach(Stream::close);
+            throw e;
+        }
+        return streams.size() == 1 ? streams.get(0) : mergeByRelevance(streams);
+    }
+
+    /**
+     * This method is used to build the search pipelines, one for the notes of the user and one per owner of the shared notes.
+     * The owners are read from the (_id, userId) index without reading the shared notes.
+     *
+     * @param keyword
+     * @param userId
+     * @param sharedNoteIds
+     * @param after
+     * @param limit
+     * @param fields
+     * @return List<TypedAggregation<Note>>
+     */
+    private List<TypedAggregation<Note>> searchAggregations(String keyword, String userId, Collection<String> sharedNoteIds,
+                                                            NoteSearchCursor after, int limit, String... fields) {
+        List<TypedAggregation<Note>> aggregations = new ArrayList<>();
+        aggregations.add(searchAggregation(keyword, userId, null, after, limit, fields));
+        if (sharedNoteIds.isEmpty()) {
+            return aggregations;
+        }
+
+        Query owners = new Query(where("_id").in(sharedNoteIds));
+        owners.fields().include("_id", "userId");
+        Map<String, List<String>> sharedNoteIdsByOwner = new LinkedHashMap<>();
+        for (Note note : mongoTemplate.find(owners, Note.class)) {
+            // The notes of the user are already searched
+            if (!userId.equals(note.getUserId())) {
+                sharedNoteIdsByOwner.computeIfAbsent(note.getUserId(), owner -> new ArrayList<>()).add(note.getId());
+            }
+        }
+        sharedNoteIdsByOwner.forEach((ownerId, noteIds) ->
+                aggregations.add(searchAggregation(keyword, ownerId, noteIds, after, limit, fields)));
+        return aggregations;
+    }
+
+    /**
+     * This method is used to build the search pipeline: the text match on the text index within the notes of the owner,
+     * the relevance score, the seek past the cursor, the sort by (score, _id) and the projection
+     *
+     * @param keyword
+     * @param ownerId
+     * @param noteIds the notes of the owner to search, null for all of them
+     * @param after the last note of the previous page, null to start from the most relevant note
+     * @param limit the number of notes, 0 for all
+     * @param fields
+     * @return TypedAggregation<Note>
+     */
+    private static TypedAggregation<Note> searchAggregation(String keyword, String ownerId, Collection<String> noteIds,
+                                                            NoteSearchCursor after, int limit, String... fields) {
+        List<AggregationOperation> operations = new ArrayList<>();
+        // $text has to be in the first stage, along with the equality on userId which prefixes the text index
+        Criteria criteria = where("userId").is(ownerId);
+        if (noteIds != null) {
+            criteria = criteria.and("_id").in(noteIds);
+        }
+        Document match = new Document(criteria.getCriteriaObject())
+                .append("$text", TextCriteria.forDefaultLanguage().matching(keyword).getCriteriaObject().get("$text"));
+        operations.add(context -> new Document("$match", context.getMappedObject(match)));
+        operations.add(context -> new Document("$addFields", new Document("score", new Document("$meta", "textScore"))));
+        if (after != null) {
+            operations.add(Aggregation.match(new Criteria().orOperator(
+                    where("score").lt(after.score()),
+                    where("score").is(after.score()).and("_id").lt(after.id())
+            )));
+        }
+        operations.add(Aggregation.sort(Sort.by(Sort.Direction.DESC, "score", "_id")));
+        if (limit > 0) {
+            operations.add(Aggregation.limit(limit));
+        }
+        if (fields.length > 0) {
+            Document projection = new Document("score", 1);
+            for (String field : fields) {
+                projection.append("id".equals(field) ? "_id" : field, 1);
+            }
+            operations.add(context -> new Document("$project", projection));
+        }
+        return Aggregation.newAggregation(Note.class, operations);
+    }
+
+    /**
+     * This method is used to merge the streams sorted by relevance into one, reading each of them as it is consumed
+     *
+     * @param streams
+     * @return Stream<Note>
+     */
+    private static Stream<Note> mergeByRelevance(List<Stream<Note>> streams) {
+        PriorityQueue<Map.Entry<Note, Iterator<Note>>> heads = new PriorityQueue<>(Map.Entry.comparingByKey(BY_RELEVANCE));
+        Iterator<Note> merged = new Iterator<>() {
+            private boolean started;
+
+            @Override
+            public boolean hasNext() {
+                // The cursors are only read once the merged stream is consumed
+                if (!started) {
+                    started = true;
+                    streams.forEach(stream -> advance(stream.iterator()));
+                }
+                return !heads.isEmpty();
+            }
+
+            @Override
+            public Note next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Map.Entry<Note, Iterator<Note>> head = heads.poll();
+                advance(head.getValue());
+                return head.getKey();
+            }
+
+            private void advance(Iterator<Note> notes) {
+                if (notes.hasNext()) {
+                    heads.add(new AbstractMap.SimpleImmutableEntry<>(notes.next(), notes));
+                }
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(merged, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> streams.forEach(Stream::close));
+    }
+}
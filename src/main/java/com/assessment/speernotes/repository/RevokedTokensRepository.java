@@ -0,0 +1,16 @@
+package com.assessment.speernotes.repository;
+
+import com.assessment.speernotes.model.RevokedToken;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.Date;
+import java.util.stream.Stream;
+
+@Repository
+public interface RevokedTokensRepository extends MongoRepository<RevokedToken, String> {
+    // Only the ids are read to rebuild the Bloom filter
+    @Query(value = "{ 'expiresAt': { $gt: ?0 } }", fields = "{ '_id': 1 }")
+    Stream<RevokedToken> streamActiveTokenIds(Date now);
+}
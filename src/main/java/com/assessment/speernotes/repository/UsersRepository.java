@@ -1,6 +1,10 @@
 package com.assessment.speernotes.repository;
 
+import com.assessment.speernotes.bean.CacheConfig;
 import com.assessment.speernotes.model.User;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
@@ -8,7 +12,47 @@ import org.springframework.stereotype.Repository;
 import java.util.Optional;
 
 @Repository
-public interface UsersRepository extends MongoRepository<User, String> {
-    @Query("{ 'email': ?0 }")
+public interface UsersRepository extends MongoRepository<User, String>, UsersRepositoryCustom {
+    // Cached by email, missing users are cached for a shorter time.
+    // The lookups of the authentication path leave out the shared notes, so the returned user must not be saved.
+    @Cacheable(cacheNames = CacheConfig.USERS_BY_EMAIL)
+    @Query(value = "{ 'email': ?0 }", fields = "{ 'sharedNotes': 0 }")
     Optional<User> findByEmail(String email);
+
+    @Override
+    @Cacheable(cacheNames = CacheConfig.USERS_BY_ID)
+    @Query(value = "{ '_id': ?0 }", fields = "{ 'sharedNotes': 0 }")
+    Optional<User> findById(String id);
+
+    // Reads only the shared notes and the notes generation, for the code paths which need them
+    @Query(value = "{ '_id': ?0 }", fields = "{ 'sharedNotes': 1, 'notesGeneration': 1 }")
+    Optional<User> findSharedNotesById(String id);
+
+    // Reads only the token version, uncached so that a revocation made on another node is seen on the next request
+    @Query(value = "{ '_id': ?0 }", fields = "{ 'tokenVersion': 1 }")
+    Optional<User> findTokenVersionById(String id);
+
+    // Reads only the notes generation, for the entity tags of the listings
+    @Query(value = "{ '_id': ?0 }", fields = "{ 'notesGeneration': 1 }")
+    Optional<User> findNotesGenerationById(String id);
+
+    // Evicts a cached miss for the email of the new user
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.USERS_BY_EMAIL, key = "#p0.email")
+    <S extends User> S insert(S user);
+
+    // Write-through invalidation of the cached lookups
+    @Override
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.USERS_BY_EMAIL, key = "#p0.email"),
+            @CacheEvict(cacheNames = CacheConfig.USERS_BY_ID, key = "#p0.id", condition = "#p0.id != null")
+    })
+    <S extends User> S save(S user);
+
+    @Override
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.USERS_BY_EMAIL, key = "#p0.email"),
+            @CacheEvict(cacheNames = CacheConfig.USERS_BY_ID, key = "#p0.id", condition = "#p0.id != null")
+    })
+    void delete(User user);
 }
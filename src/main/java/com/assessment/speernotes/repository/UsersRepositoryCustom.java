@@ -0,0 +1,39 @@
+package com.assessment.speernotes.repository;
+
+import com.assessment.speernotes.bean.CacheConfig;
+import com.assessment.speernotes.model.User;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Caching;
+
+import java.util.List;
+import java.util.Set;
+
+public interface UsersRepositoryCustom {
+    // Atomically adds the note to the user's shared notes without rewriting the cached user, bumping the notes generation
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.USERS_BY_EMAIL, key = "#p0.email"),
+            @CacheEvict(cacheNames = CacheConfig.USERS_BY_ID, key = "#p0.id")
+    })
+    boolean addSharedNote(User user, String noteId);
+
+    // Atomically bumps the notes generation of the owner of the note and of the users it is shared with.
+    // The cached lookups are left alone, the generation is only read along with the shared notes.
+    long incrementNotesGeneration(String ownerId, String noteId);
+
+    // Atomically bumps the token version so that every issued token is revoked
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.USERS_BY_EMAIL, key = "#p0.email"),
+            @CacheEvict(cacheNames = CacheConfig.USERS_BY_ID, key = "#p0.id")
+    })
+    boolean incrementTokenVersion(User user);
+
+    // Atomically replaces the password hash after it was upgraded on login
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.USERS_BY_EMAIL, key = "#p0.email"),
+            @CacheEvict(cacheNames = CacheConfig.USERS_BY_ID, key = "#p0.id")
+    })
+    boolean updatePassword(User user, String encodedPassword);
+
+    // Inserts the users with one unordered bulk write, the cached misses for the emails of the inserted users are dropped
+    Set<String> insertAll(List<User> users);
+}
@@ -0,0 +1,132 @@
+package com.assessment.speernotes.repository;
+
+import com.assessment.speernotes.bean.CacheConfig;
+import com.assessment.speernotes.model.User;
+import com.mongodb.bulk.BulkWriteError;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+public class UsersRepositoryCustomImpl implements UsersRepositoryCustom {
+    private static final int DUPLICATE_KEY_ERROR = 11000;
+
+    private final MongoTemplate mongoTemplate;
+    private final CacheManager cacheManager;
+
+    public UsersRepositoryCustomImpl(MongoTemplate mongoTemplate, CacheManager cacheManager) {
+        this.mongoTemplate = mongoTemplate;
+        this.cacheManager = cacheManager;
+    }
+
+    /**
+     * This method is used to add the note id to the shared notes of the user with a single $addToSet,
+     * along with the $inc of the notes generation of the user
+     *
+     * @param user
+     * @param noteId
+     * @return boolean
+     */
+    @Override
+    public boolean addSharedNote(User user, String noteId) {
+        return mongoTemplate.updateFirst(
+                query(where("_id").is(user.getId())),
+                new Update().addToSet("sharedNotes", noteId).inc("notesGeneration", 1),
+                User.class
+        ).getMatchedCount() > 0;
+    }
+
+    /**
+     * This method is used to increment the notes generation of the owner of the note and of the users
+     * the note is shared with, with a single $inc on the _id and sharedNotes indexes
+     *
+     * @param ownerId
+     * @param noteId
+     * @return long the number of users whose generation was incremented
+     */
+    @Override
+    public long incrementNotesGeneration(String ownerId, String noteId) {
+        return mongoTemplate.updateMulti(
+                query(new Criteria().orOperator(where("_id").is(ownerId), where("sharedNotes").is(noteId))),
+                new Update().inc("notesGeneration", 1),
+                User.class
+        ).getModifiedCount();
+    }
+
+    /**
+     * This method is used to increment the token version of the user with a single $inc
+     *
+     * @param user
+     * @return boolean
+     */
+    @Override
+    public boolean incrementTokenVersion(User user) {
+        return mongoTemplate.updateFirst(
+                query(where("_id").is(user.getId())),
+                new Update().inc("tokenVersion", 1),
+                User.class
+        ).getMatchedCount() > 0;
+    }
+
+    /**
+     * This method is used to replace the password hash of the user with a single $set,
+     * only if the stored hash was not changed in the meantime
+     *
+     * @param user
+     * @param encodedPassword
+     * @return boolean
+     */
+    @Override
+    public boolean updatePassword(User user, String encodedPassword) {
+        return mongoTemplate.updateFirst(
+                query(where("_id").is(user.getId()).and("password").is(user.getPassword())),
+                new Update().set("password", encodedPassword),
+                User.class
+        ).getMatchedCount() > 0;
+    }
+
+    /**
+     * This method is used to insert the users with a single unordered bulk write.
+     * The users whose email already exists are skipped by the unique email index and returned.
+     * The cached misses for the emails of the inserted users are evicted, the other cached lookups are kept.
+     *
+     * @param users
+     * @return Set<String> emails which already exist
+     */
+    @Override
+    public Set<String> insertAll(List<User> users) {
+        Set<String> existingEmails = new HashSet<>();
+        if (users.isEmpty()) {
+            return existingEmails;
+        }
+
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, User.class)
+                    .insert(users)
+                    .execute();
+        } catch (BulkOperationException e) {
+            for (BulkWriteError error : e.getErrors()) {
+                if (error.getCode() != DUPLICATE_KEY_ERROR) {
+                    throw e;
+                }
+                existingEmails.add(users.get(error.getIndex()).getEmail());
+            }
+        }
+
+        Cache usersByEmail = cacheManager.getCache(CacheConfig.USERS_BY_EMAIL);
+        if (usersByEmail != null) {
+            users.stream().map(User::getEmail).filter(email -> !existingEmails.contains(email)).forEach(usersByEmail::evict);
+        }
+        return existingEmails;
+    }
+}
@@ -0,0 +1,159 @@
+package com.assessment.speernotes.repository.index;
+
+import com.assessment.speernotes.model.Note;
+import com.assessment.speernotes.model.RateLimitCounter;
+import com.assessment.speernotes.model.RevokedToken;
+import com.assessment.speernotes.model.User;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.CompoundIndexDefinition;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Declares every index of the application in one place and builds the missing ones in the background,
+ * so that the startup does not wait for them. Failed builds are retried until they succeed.
+ * The names are the ones the mapping annotations used to generate, so existing indexes are recognized.
+ */
+@Slf4j
+@Component
+public class IndexRegistry {
+    public enum State { PENDING, READY, FAILED }
+
+    public static final List<ManagedIndex> INDEXES = List.of(
+            // Unique emails, the signup relies on the duplicate key error
+            new ManagedIndex(User.class, new Index().on("email", Sort.Direction.ASC).unique().named("email"), true),
+            // The users a note is shared with, whose notes generation is bumped on every write of the note
+            new ManagedIndex(User.class, new Index().on("sharedNotes", Sort.Direction.ASC).named("sharedNotes"), true),
+            // The note listing and every lookup of the notes of a user
+            new ManagedIndex(Note.class, new CompoundIndexDefinition(new Document("userId", 1).append("updatedAt", -1).append("_id", -1))
+                    .named("user_updated_id"), true),
+            // The entity tags of the notes, read without reading the notes
+            new ManagedIndex(Note.class, new CompoundIndexDefinition(new Document("_id", 1).append("userId", 1)
+                    .append("updatedAt", 1).append("version", 1)).named("id_user_updated_version"), true),
+            // Full text search within the notes of a user, the searches have to match the userId
+            new ManagedIndex(Note.class, new CompoundIndexDefinition(new Document("userId", 1).append("title", "text").append("content", "text"))
+                    .named("user_text"), true, "Note_TextIndex"),
+            // Expiry of the revoked tokens and the rate limit counters
+            new ManagedIndex(RevokedToken.class, new Index().on("expiresAt", Sort.Direction.ASC).expire(Duration.ZERO).named("expiresAt"), false),
+            new ManagedIndex(RateLimitCounter.class, new Index().on("expiresAt", Sort.Direction.ASC).expire(Duration.ZERO).named("expiresAt"), false)
+    );
+
+    private final MongoTemplate mongoTemplate;
+    private final List<ManagedIndex> indexes;
+    private final Map<ManagedIndex, State> states = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService builder = Executors.newSingleThreadScheduledExecutor(builderThreadFactory());
+
+    @Value("${mongodb.indexes.retry-interval-ms:60000}")
+    long retryIntervalMs;
+
+    public IndexRegistry(MongoTemplate mongoTemplate) {
+        this(mongoTemplate, INDEXES);
+    }
+
+    IndexRegistry(MongoTemplate mongoTemplate, List<ManagedIndex> indexes) {
+        this.mongoTemplate = mongoTemplate;
+        this.indexes = indexes;
+        indexes.forEach(index -> states.put(index, State.PENDING));
+    }
+
+    private static CustomizableThreadFactory builderThreadFactory() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("index-builder-");
+        threadFactory.setDaemon(true);
+        return threadFactory;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        builder.shutdownNow();
+    }
+
+    /**
+     * This method is used to start building the indexes once the application has started
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildInBackground() {
+        builder.execute(this::ensureIndexes);
+    }
+
+    /**
+     * This method is used to create the indexes which are not built yet, creating an existing index is a no-op.
+     * The indexes they replace are dropped first.
+     * The build is retried later if any of them fails.
+     *
+     * @return boolean whether all the indexes are built
+     */
+    public boolean ensureIndexes() {
+        boolean built = true;
+        for (ManagedIndex index : indexes) {
+            if (states.get(index) == State.READY) {
+                continue;
+            }
+            try {
+                long start = System.nanoTime();
+                IndexOperations indexOps = mongoTemplate.indexOps(index.entity());
+                // A collection has a single text index, the replaced one has to go first
+                if (index.replaces() != null && indexOps.getIndexInfo().stream().anyMatch(info -> info.getName().equals(index.replaces()))) {
+                    indexOps.dropIndex(index.replaces());
+                    log.info("Dropped the index {} of {}, replaced by {}", index.replaces(),
+                            mongoTemplate.getCollectionName(index.entity()), index.name());
+                }
+                indexOps.ensureIndex(index.definition());
+                states.put(index, State.READY);
+                log.info("Index {} of {} is ready after {}ms", index.name(), mongoTemplate.getCollectionName(index.entity()),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            } catch (RuntimeException e) {
+                states.put(index, State.FAILED);
+                built = false;
+                log.error("Could not build the index {} of {}, retrying in {}ms", index.name(),
+                        mongoTemplate.getCollectionName(index.entity()), retryIntervalMs, e);
+            }
+        }
+        if (!built) {
+            try {
+                builder.schedule(this::ensureIndexes, retryIntervalMs, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                log.debug("Shutting down, the indexes are not retried");
+            }
+        }
+        return built;
+    }
+
+    /**
+     * This method is used to check whether all the required indexes are built
+     *
+     * @return boolean
+     */
+    public boolean isReady() {
+        return indexes.stream().filter(ManagedIndex::required).allMatch(index -> states.get(index) == State.READY);
+    }
+
+    /**
+     * This method is used to retrieve the state of every index by collection and name
+     *
+     * @return Map<String, State>
+     */
+    public Map<String, State> getStates() {
+        Map<String, State> result = new LinkedHashMap<>();
+        indexes.forEach(index -> result.put(mongoTemplate.getCollectionName(index.entity()) + "." + index.name(), states.get(index)));
+        return result;
+    }
+}
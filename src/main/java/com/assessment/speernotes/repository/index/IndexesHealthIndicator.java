@@ -0,0 +1,24 @@
+package com.assessment.speernotes.repository.index;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports the application as out of service until the required indexes are built,
+ * part of the readiness probe so that no traffic is routed to collection scans
+ */
+@Component
+public class IndexesHealthIndicator implements HealthIndicator {
+    private final IndexRegistry indexRegistry;
+
+    public IndexesHealthIndicator(IndexRegistry indexRegistry) {
+        this.indexRegistry = indexRegistry;
+    }
+
+    @Override
+    public Health health() {
+        Health.Builder health = indexRegistry.isReady() ? Health.up() : Health.outOfService();
+        return health.withDetails(indexRegistry.getStates()).build();
+    }
+}
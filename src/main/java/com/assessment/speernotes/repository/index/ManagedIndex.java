@@ -0,0 +1,24 @@
+package com.assessment.speernotes.repository.index;
+
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+
+/**
+ * An index of the collection of the entity. The required indexes back the hot queries,
+ * and the application is not ready to serve traffic until they exist.
+ * The index it replaces, if any, is dropped before it is built.
+ */
+public record ManagedIndex(Class<?> entity, IndexDefinition definition, boolean required, String replaces) {
+
+    public ManagedIndex(Class<?> entity, IndexDefinition definition, boolean required) {
+        this(entity, definition, required, null);
+    }
+
+    /**
+     * This method is used to retrieve the name of the index
+     *
+     * @return String
+     */
+    public String name() {
+        return String.valueOf(definition.getIndexOptions().get("name"));
+    }
+}
@@ -0,0 +1,87 @@
+package com.assessment.speernotes.requests;
+
+import com.assessment.speernotes.exceptions.TooManyRequestsException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits the login and signup attempts per client IP and per email.
+ * Every key gets a fixed window starting at its first attempt, and the windows expire on their own.
+ */
+@Slf4j
+@Component
+public class AuthAttemptLimiter {
+    private static final Duration TIME_WINDOW = Duration.ofMinutes(1);
+
+    private final Cache<String, AtomicInteger> attempts;
+
+    @Value("${rate-limiting.enabled:true}")
+    boolean rateLimitingEnabled;
+
+    @Value("${auth-rate-limiting.max-attempts-per-ip:20}")
+    int maxAttemptsPerIp;
+
+    @Value("${auth-rate-limiting.max-attempts-per-email:5}")
+    int maxAttemptsPerEmail;
+
+    public AuthAttemptLimiter(@Value("${auth-rate-limiting.max-keys:100000}") long maxKeys) {
+        this.attempts = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterWrite(TIME_WINDOW)
+                .build();
+    }
+
+    /**
+     * This method is used to count an authentication attempt from the client IP
+     *
+     * @param ip
+     */
+    public void acquireForIp(String ip) {
+        acquire("ip:" + ip, maxAttemptsPerIp);
+    }
+
+    /**
+     * This method is used to count an authentication attempt for the email
+     *
+     * @param email
+     */
+    public void acquireForEmail(String email) {
+        acquire("email:" + email.toLowerCase(), maxAttemptsPerEmail);
+    }
+
+    /**
+     * This method is used to count the attempt and reject it once the limit of the window is exceeded
+     *
+     * @param key
+     * @param limit
+     */
+    private void acquire(String key, int limit) {
+        if (!rateLimitingEnabled) {
+            return;
+        }
+
+        if (attempts.get(key, k -> new AtomicInteger()).incrementAndGet() > limit) {
+            log.warn("Too many authentication attempts for {}", key);
+            throw new TooManyRequestsException("Too many authentication attempts", retryAfterSeconds(key));
+        }
+    }
+
+    /**
+     * This method is used to compute the seconds left in the window of the key
+     *
+     * @param key
+     * @return long
+     */
+    private long retryAfterSeconds(String key) {
+        return attempts.policy().expireAfterWrite()
+                .flatMap(expiration -> expiration.ageOf(key))
+                .map(age -> Math.max(1, TIME_WINDOW.minus(age).toSeconds()))
+                .orElse(TIME_WINDOW.toSeconds());
+    }
+}
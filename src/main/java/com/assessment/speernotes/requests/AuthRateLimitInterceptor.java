@@ -0,0 +1,30 @@
+package com.assessment.speernotes.requests;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+@Component
+public class AuthRateLimitInterceptor implements HandlerInterceptor {
+    private final AuthAttemptLimiter authAttemptLimiter;
+
+    public AuthRateLimitInterceptor(AuthAttemptLimiter authAttemptLimiter) {
+        this.authAttemptLimiter = authAttemptLimiter;
+    }
+
+    /**
+     * This method is used to limit the login and signup attempts per client IP.
+     * The attempts per email are limited by the controller once the body is read.
+     *
+     * @param request
+     * @param response
+     * @param handler
+     * @return boolean
+     */
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        authAttemptLimiter.acquireForIp(request.getRemoteAddr());
+        return true;
+    }
+}
@@ -1,6 +1,9 @@
 package com.assessment.speernotes.requests;
 
+import com.assessment.speernotes.model.UserPrincipal;
+import com.assessment.speernotes.service.TokenRevocationService;
 import com.assessment.speernotes.utils.JwtUtil;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -15,15 +18,21 @@ import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.Optional;
 
 @Component
 public class JwtAuthentication extends OncePerRequestFilter {
+    // Request attribute holding the claims of the authenticated token
+    public static final String CLAIMS_ATTRIBUTE = "speernotes.jwt.claims";
+
     private final JwtUtil jwtUtil;
     private final UserDetailsService userDetailsService;
+    private final TokenRevocationService tokenRevocationService;
 
-    public JwtAuthentication(JwtUtil jwtUtil, UserDetailsService userDetailsService) {
+    public JwtAuthentication(JwtUtil jwtUtil, UserDetailsService userDetailsService, TokenRevocationService tokenRevocationService) {
         this.jwtUtil = jwtUtil;
         this.userDetailsService = userDetailsService;
+        this.tokenRevocationService = tokenRevocationService;
     }
 
     /**
@@ -40,6 +49,34 @@ public class JwtAuthentication extends OncePerRequestFilter {
         return null;
     }
 
+    /**
+     * This method is used to resolve the principal for the verified claims.
+     * In the claims-only mode the principal is built from the claims without loading the user.
+     *
+     * @param claims
+     * @return UserDetails
+     */
+    private UserDetails resolvePrincipal(Claims claims) {
+        if (jwtUtil.isClaimsAuthenticationEnabled()) {
+            Optional<UserPrincipal> principal = jwtUtil.toPrincipal(claims);
+            if (principal.isPresent()) {
+                return principal.get();
+            }
+        }
+        return userDetailsService.loadUserByUsername(claims.getSubject());
+    }
+
+    /**
+     * This method is used to authenticate the async dispatches too, as the throttled requests are resumed with one
+     * and the security context of the first dispatch is not kept.
+     *
+     * @return boolean
+     */
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
     /**
      * This method is used to validate the user request for the valid JWT token.
      *
@@ -53,15 +90,18 @@ public class JwtAuthentication extends OncePerRequestFilter {
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
         String token = getJwtFromRequest(request);
 
-        if (StringUtils.hasText(token) && jwtUtil.validateToken(token)) {
-            String email = jwtUtil.extractEmail(token);
-            UserDetails userDetails = userDetailsService.loadUserByUsername(email);
+        if (StringUtils.hasText(token)) {
+            // Verify the signature and read the claims in a single parse
+            jwtUtil.verifyToken(token).filter(claims -> !tokenRevocationService.isRevoked(claims)).ifPresent(claims -> {
+                UserDetails userDetails = resolvePrincipal(claims);
 
-            Authentication authentication = new UsernamePasswordAuthenticationToken(
-                    userDetails, null, userDetails.getAuthorities()
-            );
+                Authentication authentication = new UsernamePasswordAuthenticationToken(
+                        userDetails, null, userDetails.getAuthorities()
+                );
 
-            SecurityContextHolder.getContext().setAuthentication(authentication);
+                SecurityContextHolder.getContext().setAuthentication(authentication);
+                request.setAttribute(CLAIMS_ATTRIBUTE, claims);
+            });
         }
 
         filterChain.doFilter(request, response);
@@ -1,30 +1,66 @@
 package com.assessment.speernotes.requests;
 
+import com.assessment.speernotes.exceptions.TooManyRequestsException;
+import com.assessment.speernotes.requests.ratelimit.RateLimitPolicy;
+import com.assessment.speernotes.requests.ratelimit.RateLimitPolicyRegistry;
+import com.assessment.speernotes.requests.ratelimit.RateLimitPolicyRegistry.PolicyLimiter;
+import com.assessment.speernotes.requests.ratelimit.RateLimiter;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.DispatcherType;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.web.servlet.HandlerInterceptor;
 
-import java.time.Instant;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Component
 public class RateLimitInterceptor implements HandlerInterceptor {
-    private static final long TIME_WINDOW_MS = 60 * 1000; // 1-minute window
-    public static final int MAX_REQUESTS = 5; // Max 5 requests per minute
-    private static final int THROTTLE_DELAY_MS = 500; // 500ms delay for excessive requests
+    // Marks a throttled request which is resumed after its delay
+    static final String THROTTLED_ATTRIBUTE = "speernotes.rate-limit.throttled";
 
-    private final Map<String, UserRequestInfo> requestCounts = new ConcurrentHashMap<>();
+    // Limits per class of requests, reloadable at runtime
+    private final RateLimitPolicyRegistry policyRegistry;
+
+    // Shared timer resuming the throttled requests, a delayed request holds no request thread
+    private final ScheduledExecutorService throttleTimer = Executors.newSingleThreadScheduledExecutor(throttleThreadFactory());
 
     @Value("${rate-limiting.enabled:true}")  // Default to true if the property is not found
     boolean rateLimitingEnabled;
 
+    public RateLimitInterceptor(RateLimitPolicyRegistry policyRegistry) {
+        this.policyRegistry = policyRegistry;
+    }
+
+    private static CustomizableThreadFactory throttleThreadFactory() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("rate-limit-throttle-");
+        threadFactory.setDaemon(true);
+        return threadFactory;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        throttleTimer.shutdownNow();
+    }
+
     /**
-     * This method is used to limit the requests
+     * This method is used to limit the requests with the policy of their class, per user or per IP when anonymous.
+     * The remaining budget is advertised with the RateLimit headers so clients can slow down before being throttled.
+     * Throttled requests are parked with servlet async processing and dispatched again after the delay,
+     * and requests over the hard limit are rejected with 429 and Retry-After. Boot registers the filters and the
+     * dispatcher servlet as async supported, a throttled request on a path without async support is rejected
+     * with 429 and the throttle delay as Retry-After rather than holding the thread for the delay.
      *
      * @param request
      * @param response
@@ -38,47 +74,89 @@ public class RateLimitInterceptor implements HandlerInterceptor {
             return true;  // Skip rate limiting logic if disabled
         }
 
-        String userIp = request.getRemoteAddr(); // Identify users (IP-based, can use auth)
-        Instant now = Instant.now();
-
-        requestCounts.putIfAbsent(userIp, new UserRequestInfo());
-
-        UserRequestInfo userInfo = requestCounts.get(userIp);
-
-        synchronized (userInfo) {
-            // Reset counter if time window expired
-            if (now.toEpochMilli() - userInfo.startTime.toEpochMilli() > TIME_WINDOW_MS) {
-                userInfo.startTime = now;
-                userInfo.requestCount = 0;
-            }
-
-            // Increment request count
-            userInfo.requestCount++;
-
-            if (userInfo.requestCount > MAX_REQUESTS) {
-                // Apply throttling instead of blocking
-                Thread.sleep(THROTTLE_DELAY_MS);
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            // Resumed after the throttle delay or a streamed response completing, the request was already counted
+            if (request.getAttribute(THROTTLED_ATTRIBUTE) != null) {
                 response.addHeader("X-RateLimit-Throttled", "true");
             }
+            return true;
+        }
 
-            if (userInfo.requestCount > MAX_REQUESTS * 2) {
-                // Hard block if excessive abuse
-                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
-                response.getWriter().write("Too many requests. Try again later.");
+        PolicyLimiter limiter = policyRegistry.resolve(request);
+        RateLimitPolicy policy = limiter.policy();
+        String clientKey = clientKey(request);
+
+        RateLimiter.Decision decision = limiter.rateLimiter().acquire(clientKey);
+        addRateLimitHeaders(response, limiter, clientKey);
+        switch (decision) {
+            case THROTTLED -> {
+                if (!request.isAsyncSupported()) {
+                    throw new TooManyRequestsException("The " + limiter.name() + " requests are throttled, retry after the delay",
+                            toSeconds(policy.throttleDelayMs()));
+                }
+                delay(request, policy.throttleDelayMs());
                 return false;
             }
+            case REJECTED -> {
+                // Hard block if excessive abuse
+                long retryAfterSeconds = toSeconds(limiter.rateLimiter().retryAfterMillis(clientKey));
+                throw new TooManyRequestsException("The rate limit of " + policy.maxRequests() + " " + limiter.name()
+                        + " requests per " + toSeconds(policy.windowMs()) + " seconds is exceeded", retryAfterSeconds);
+            }
+            case ALLOWED -> {}
         }
 
         return true; // Allow request
     }
 
-    private static class UserRequestInfo {
-        private Instant startTime;
-        private int requestCount;
+    /**
+     * This method is used to identify the client, by the authenticated user or else by the IP
+     *
+     * @param request
+     * @return String
+     */
+    private String clientKey(HttpServletRequest request) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.isAuthenticated() && !(authentication instanceof AnonymousAuthenticationToken)) {
+            return "user:" + authentication.getName();
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
 
-        UserRequestInfo() {
-            this.startTime = Instant.now();
-            this.requestCount = 0;
+    /**
+     * This method is used to advertise the free budget of the client: the requests served without delay,
+     * those left, and the seconds until all of them are available again
+     *
+     * @param response
+     * @param limiter
+     * @param clientKey
+     */
+    private void addRateLimitHeaders(HttpServletResponse response, PolicyLimiter limiter, String clientKey) {
+        RateLimitPolicy policy = limiter.policy();
+        response.setHeader("RateLimit-Policy", policy.freeRequests() + ";w=" + toSeconds(policy.windowMs()));
+        response.setHeader("RateLimit-Limit", String.valueOf(policy.freeRequests()));
+        response.setHeader("RateLimit-Remaining", String.valueOf(limiter.rateLimiter().remaining(clientKey)));
+        response.setHeader("RateLimit-Reset", String.valueOf(toSeconds(limiter.rateLimiter().resetMillis(clientKey))));
+    }
+
+    private static long toSeconds(long millis) {
+        return Math.max(1, TimeUnit.MILLISECONDS.toSeconds(millis + 999));
+    }
+
+    /**
+     * This method is used to park the request and dispatch it again once the throttle delay has passed
+     *
+     * @param request
+     * @param delayMs
+     */
+    private void delay(HttpServletRequest request, long delayMs) {
+        request.setAttribute(THROTTLED_ATTRIBUTE, Boolean.TRUE);
+        AsyncContext asyncContext = request.startAsync();
+        try {
+            throttleTimer.schedule(() -> asyncContext.dispatch(), delayMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down, serve the request without the delay
+            asyncContext.dispatch();
         }
     }
 }
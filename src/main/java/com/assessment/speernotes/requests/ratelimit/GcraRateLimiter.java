@@ -0,0 +1,126 @@
+package com.assessment.speernotes.requests.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free rate limiter implementing the generic cell rate algorithm (GCRA).
+ * The whole state of a key is its theoretical arrival time (TAT) packed in an AtomicLong,
+ * which every request advances by one emission interval with a compare-and-set.
+ * Requests are allowed while they stay within the free budget, throttled up to the hard limit,
+ * and rejected beyond it. The budget refills continuously over the window instead of being reset at once.
+ *
+ * The state is kept in a bounded cache. A key idle for a whole window has a fully refilled budget,
+ * so it is expired then without changing any decision. The size bound is a hard ceiling against scans
+ * and large NAT pools, evicting the least recently used keys first.
+ */
+public class GcraRateLimiter implements RateLimiter {
+
+    private final long emissionIntervalMs;
+    private final long throttleThresholdMs;
+    private final long burstToleranceMs;
+    private final LongSupplier clock;
+    private final Cache<String, AtomicLong> theoreticalArrivalTimes;
+
+    /**
+     * @param windowMs the window in which the limits apply
+     * @param freeRequests requests per window which are allowed without throttling
+     * @param maxRequests requests per window after which the requests are rejected
+     * @param maxKeys keys tracked at most
+     */
+    public GcraRateLimiter(long windowMs, int freeRequests, int maxRequests, long maxKeys) {
+        this(windowMs, freeRequests, maxRequests, maxKeys, System::currentTimeMillis);
+    }
+
+    GcraRateLimiter(long windowMs, int freeRequests, int maxRequests, long maxKeys, LongSupplier clock) {
+        if (freeRequests <= 0 || maxRequests < freeRequests) {
+            throw new IllegalArgumentException("Invalid rate limits " + freeRequests + " / " + maxRequests);
+        }
+        this.emissionIntervalMs = windowMs / maxRequests;
+        this.throttleThresholdMs = emissionIntervalMs * freeRequests;
+        this.burstToleranceMs = emissionIntervalMs * maxRequests;
+        this.clock = clock;
+        this.theoreticalArrivalTimes = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(Duration.ofMillis(burstToleranceMs))
+                .ticker(() -> TimeUnit.MILLISECONDS.toNanos(clock.getAsLong()))
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public void bindMetrics(MeterRegistry meterRegistry, String name) {
+        CaffeineCacheMetrics.monitor(meterRegistry, theoreticalArrivalTimes, name);
+    }
+
+    @Override
+    public Decision acquire(String key) {
+        AtomicLong theoreticalArrivalTime = theoreticalArrivalTimes.get(key, k -> new AtomicLong());
+
+        long now = clock.getAsLong();
+        while (true) {
+            long current = theoreticalArrivalTime.get();
+            long next = Math.max(current, now) + emissionIntervalMs;
+            long backlog = next - now;
+            if (backlog > burstToleranceMs) {
+                // Rejected requests do not consume the budget
+                return Decision.REJECTED;
+            }
+            if (theoreticalArrivalTime.compareAndSet(current, next)) {
+                return backlog > throttleThresholdMs ? Decision.THROTTLED : Decision.ALLOWED;
+            }
+        }
+    }
+
+    @Override
+    public long retryAfterMillis(String key) {
+        AtomicLong theoreticalArrivalTime = theoreticalArrivalTimes.getIfPresent(key);
+        if (theoreticalArrivalTime == null) {
+            return 0;
+        }
+        long now = clock.getAsLong();
+        return Math.max(0, Math.max(theoreticalArrivalTime.get(), now) + emissionIntervalMs - burstToleranceMs - now);
+    }
+
+    @Override
+    public long remaining(String key) {
+        return Math.max(0, (throttleThresholdMs - backlogMillis(key)) / emissionIntervalMs);
+    }
+
+    @Override
+    public long resetMillis(String key) {
+        return backlogMillis(key);
+    }
+
+    /**
+     * This method is used to compute how far the theoretical arrival time of the key is ahead of now
+     *
+     * @param key
+     * @return long milliseconds
+     */
+    private long backlogMillis(String key) {
+        AtomicLong theoreticalArrivalTime = theoreticalArrivalTimes.getIfPresent(key);
+        if (theoreticalArrivalTime == null) {
+            return 0;
+        }
+        long now = clock.getAsLong();
+        return Math.max(0, theoreticalArrivalTime.get() - now);
+    }
+
+    /**
+     * This method is used to retrieve the approximate number of tracked keys
+     *
+     * @return long
+     */
+    public long trackedKeys() {
+        theoreticalArrivalTimes.cleanUp();
+        return theoreticalArrivalTimes.estimatedSize();
+    }
+}
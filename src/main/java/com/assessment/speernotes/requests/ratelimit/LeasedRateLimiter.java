@@ -0,0 +1,262 @@
+package com.assessment.speernotes.requests.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Rate limiter enforcing the limits across all the instances through a shared counter store.
+ * Each instance leases a block of consecutive positions of the window counter and hands them out locally,
+ * so only one store round trip is made per lease instead of per request. A position within the free budget
+ * is allowed, up to the hard limit it is throttled, and beyond it the request is rejected.
+ * Once the hard limit is seen the key is rejected locally for the rest of the window.
+ *
+ * Leases unused for a while are given back to the store, so that their budget goes to the other instances.
+ *
+ * When the store fails, it is not called again for a while and the leases are granted locally meanwhile,
+ * so each instance limits its own requests instead of every request waiting for the unavailable store.
+ *
+ * The store round trip is made outside the lock of the key. The requests of the key arriving while a lease
+ * is in flight do not wait for it, they take the positions following the ones already handed out by this instance.
+ * These positions are counted by the lease once it arrives, so the limit is only exceeded by the requests
+ * of a key that arrive during a slow round trip.
+ */
+@Slf4j
+public class LeasedRateLimiter implements RateLimiter {
+    private final RateLimitCounterStore counterStore;
+    private final long windowMs;
+    private final int freeRequests;
+    private final int maxRequests;
+    private final int leaseSize;
+    private final long leaseIdleMs;
+    private final long storeRetryMs;
+    private final LongSupplier clock;
+    private final Cache<String, Lease> leases;
+    // The store is not called before this time after a failure
+    private volatile long storeRetryAt;
+
+    /**
+     * @param counterStore the counter store shared by the instances
+     * @param windowMs the window in which the limits apply
+     * @param freeRequests requests per window which are allowed without throttling
+     * @param maxRequests requests per window after which the requests are rejected
+     * @param leaseSize positions reserved from the store at once
+     * @param leaseIdleMs idle time after which the unused positions of a lease are given back
+     * @param storeRetryMs time after a failure of the store during which the requests are limited locally
+     * @param maxKeys keys tracked at most
+     */
+    public LeasedRateLimiter(RateLimitCounterStore counterStore, long windowMs, int freeRequests, int maxRequests,
+                             int leaseSize, long leaseIdleMs, long storeRetryMs, long maxKeys) {
+        this(counterStore, windowMs, freeRequests, maxRequests, leaseSize, leaseIdleMs, storeRetryMs, maxKeys, System::currentTimeMillis);
+    }
+
+    LeasedRateLimiter(RateLimitCounterStore counterStore, long windowMs, int freeRequests, int maxRequests,
+                      int leaseSize, long leaseIdleMs, long storeRetryMs, long maxKeys, LongSupplier clock) {
+        if (freeRequests <= 0 || maxRequests < freeRequests || leaseSize <= 0) {
+            throw new IllegalArgumentException("Invalid rate limits " + freeRequests + " / " + maxRequests + " leasing " + leaseSize);
+        }
+        this.counterStore = counterStore;
+        this.windowMs = windowMs;
+        this.freeRequests = freeRequests;
+        this.maxRequests = maxRequests;
+        this.leaseSize = leaseSize;
+        this.leaseIdleMs = leaseIdleMs;
+        this.storeRetryMs = storeRetryMs;
+        this.clock = clock;
+        this.leases = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(Duration.ofMillis(windowMs))
+                .ticker(() -> TimeUnit.MILLISECONDS.toNanos(clock.getAsLong()))
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public void bindMetrics(MeterRegistry meterRegistry, String name) {
+        CaffeineCacheMetrics.monitor(meterRegistry, leases, name);
+    }
+
+    @Override
+    public Decision acquire(String key) {
+        Lease lease = leases.get(key, k -> new Lease());
+        long now = clock.getAsLong();
+        long windowStart = now - now % windowMs;
+
+        synchronized (lease) {
+            if (lease.windowStart != windowStart) {
+                lease.reset(windowStart);
+            }
+            if (lease.exhausted) {
+                return Decision.REJECTED;
+            }
+            if (lease.next <= lease.end) {
+                return take(lease, now);
+            }
+            if (lease.leasing || now < storeRetryAt) {
+                leaseLocally(lease);
+                return take(lease, now);
+            }
+            lease.leasing = true;
+        }
+
+        // No request of the key waits on the lock for the store, the ones arriving meanwhile are decided locally
+        long end = leaseFromStore(key, windowStart, now);
+        synchronized (lease) {
+            lease.leasing = false;
+            if (lease.windowStart == windowStart && end >= 0) {
+                // The positions handed out locally meanwhile are taken from the lease, no position is handed out twice
+                lease.next = Math.max(lease.next, end - leaseSize + 1);
+                lease.end = Math.max(end, lease.next - 1);
+                lease.local = false;
+            }
+            if (lease.exhausted) {
+                return Decision.REJECTED;
+            }
+            if (lease.next > lease.end) {
+                leaseLocally(lease);
+            }
+            return take(lease, now);
+        }
+    }
+
+    /**
+     * This method is used to reserve the positions following the ones already handed out by this instance,
+     * without the store. It is called holding the lock of the lease.
+     *
+     * @param lease
+     */
+    private void leaseLocally(Lease lease) {
+        lease.next = lease.end + 1;
+        lease.end += leaseSize;
+        lease.local = true;
+    }
+
+    /**
+     * This method is used to hand out the next position of the lease. It is called holding the lock of the lease.
+     *
+     * @param lease
+     * @param now
+     * @return Decision
+     */
+    private Decision take(Lease lease, long now) {
+        long position = lease.next++;
+        lease.lastUsed = now;
+        if (position > maxRequests) {
+            lease.exhausted = true;
+            return Decision.REJECTED;
+        }
+        return position > freeRequests ? Decision.THROTTLED : Decision.ALLOWED;
+    }
+
+    /**
+     * This method is used to lease the next positions of the window counter from the store.
+     * On a failure the store is left alone for the retry time, an unavailable store must not take the API down.
+     *
+     * @param key
+     * @param windowStart
+     * @param now
+     * @return long the last leased position, -1 if the store failed
+     */
+    private long leaseFromStore(String key, long windowStart, long now) {
+        try {
+            return counterStore.add(key, windowStart, windowMs, leaseSize);
+        } catch (RuntimeException e) {
+            storeRetryAt = now + storeRetryMs;
+            log.warn("Could not lease the rate limit of {}, limiting locally for {}ms: {}", key, storeRetryMs, e.getMessage());
+            return -1;
+        }
+    }
+
+    @Override
+    public long retryAfterMillis(String key) {
+        Lease lease = leases.getIfPresent(key);
+        if (lease == null) {
+            return 0;
+        }
+        long now = clock.getAsLong();
+        synchronized (lease) {
+            return lease.exhausted && lease.windowStart == now - now % windowMs ? lease.windowStart + windowMs - now : 0;
+        }
+    }
+
+    @Override
+    public long remaining(String key) {
+        Lease lease = leases.getIfPresent(key);
+        if (lease == null) {
+            return freeRequests;
+        }
+        long now = clock.getAsLong();
+        synchronized (lease) {
+            if (lease.windowStart != now - now % windowMs) {
+                return freeRequests;
+            }
+            // The positions leased by the other instances are only seen with the next lease
+            return lease.exhausted ? 0 : Math.max(0, freeRequests - (lease.next - 1));
+        }
+    }
+
+    @Override
+    public long resetMillis(String key) {
+        long now = clock.getAsLong();
+        return now - now % windowMs + windowMs - now;
+    }
+
+    /**
+     * This method is used to give the unused positions of the idle leases back to the counter store
+     */
+    @Override
+    public void releaseIdle() {
+        long now = clock.getAsLong();
+        if (now < storeRetryAt) {
+            return;
+        }
+        leases.asMap().forEach((key, lease) -> {
+            long unused;
+            long windowStart;
+            synchronized (lease) {
+                unused = lease.end - lease.next + 1;
+                // The local positions were never added to the store
+                if (unused <= 0 || lease.local || lease.leasing || lease.exhausted || now - lease.lastUsed < leaseIdleMs
+                        || lease.windowStart != now - now % windowMs) {
+                    return;
+                }
+                windowStart = lease.windowStart;
+                lease.end = lease.next - 1;
+            }
+            try {
+                counterStore.add(key, windowStart, windowMs, -unused);
+            } catch (RuntimeException e) {
+                // The positions stay consumed until the window passes
+                log.warn("Could not release the rate limit lease of {}: {}", key, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Positions of the window counter reserved by this instance, from next up to end inclusive
+     */
+    private static class Lease {
+        private long windowStart = -1;
+        private long next = 1;
+        private long end = 0;
+        private long lastUsed;
+        private boolean exhausted;
+        private boolean local;
+        // A lease is being read from the store, outside the lock
+        private boolean leasing;
+
+        private void reset(long windowStart) {
+            this.windowStart = windowStart;
+            this.next = 1;
+            this.end = 0;
+            this.exhausted = false;
+            this.local = false;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.assessment.speernotes.requests.ratelimit;
+
+import com.assessment.speernotes.model.RateLimitCounter;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.Date;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Counter store keeping one document per key and window in MongoDB, updated with a single upserting $inc
+ */
+public class MongoRateLimitCounterStore implements RateLimitCounterStore {
+    private final MongoTemplate mongoTemplate;
+
+    public MongoRateLimitCounterStore(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public long add(String key, long windowStart, long windowMs, long delta) {
+        RateLimitCounter counter = mongoTemplate.findAndModify(
+                query(where("_id").is(key + "@" + windowStart)),
+                new Update().inc("count", delta).setOnInsert("expiresAt", new Date(windowStart + windowMs)),
+                FindAndModifyOptions.options().upsert(true).returnNew(true),
+                RateLimitCounter.class
+        );
+        return counter == null ? delta : counter.getCount();
+    }
+}
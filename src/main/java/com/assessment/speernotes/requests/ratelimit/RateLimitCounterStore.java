@@ -0,0 +1,18 @@
+package com.assessment.speernotes.requests.ratelimit;
+
+/**
+ * Counter store shared by all the instances, holding the requests of every key per fixed window
+ */
+public interface RateLimitCounterStore {
+
+    /**
+     * This method is used to atomically add the delta to the counter of the key in the window
+     *
+     * @param key
+     * @param windowStart start of the window in epoch milliseconds
+     * @param windowMs length of the window, the counter may be dropped once it has passed
+     * @param delta
+     * @return long the counter after the addition
+     */
+    long add(String key, long windowStart, long windowMs, long delta);
+}
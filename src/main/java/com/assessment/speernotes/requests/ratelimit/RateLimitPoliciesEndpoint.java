@@ -0,0 +1,30 @@
+package com.assessment.speernotes.requests.ratelimit;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Read-only actuator end point showing the rate limit policies in effect, at /actuator/ratelimitpolicies
+ */
+@Component
+@Endpoint(id = "ratelimitpolicies")
+public class RateLimitPoliciesEndpoint {
+    private final RateLimitPolicyRegistry policyRegistry;
+
+    public RateLimitPoliciesEndpoint(RateLimitPolicyRegistry policyRegistry) {
+        this.policyRegistry = policyRegistry;
+    }
+
+    /**
+     * This method is used to retrieve the rate limit policies in effect
+     *
+     * @return Map<String, RateLimitPolicy>
+     */
+    @ReadOperation
+    public Map<String, RateLimitPolicy> policies() {
+        return policyRegistry.getPolicies();
+    }
+}
@@ -0,0 +1,42 @@
+package com.assessment.speernotes.requests.ratelimit;
+
+import java.util.Properties;
+
+/**
+ * Limits of a class of requests: the requests per window served without delay, the requests after which
+ * they are rejected, the window, and the delay of the throttled requests in between
+ */
+public record RateLimitPolicy(int freeRequests, int maxRequests, long windowMs, long throttleDelayMs) {
+
+    public RateLimitPolicy {
+        if (freeRequests <= 0 || maxRequests < freeRequests || windowMs < maxRequests || throttleDelayMs < 0) {
+            throw new IllegalArgumentException("Invalid rate limit policy " + freeRequests + " / " + maxRequests
+                    + " per " + windowMs + "ms delaying " + throttleDelayMs + "ms");
+        }
+    }
+
+    /**
+     * This method is used to read the policy from its name prefixed properties,
+     * e.g. search.free-requests, search.max-requests, search.window-ms and search.throttle-delay-ms
+     *
+     * @param properties
+     * @param name
+     * @return RateLimitPolicy
+     */
+    public static RateLimitPolicy from(Properties properties, String name) {
+        return new RateLimitPolicy(
+                Integer.parseInt(required(properties, name + ".free-requests")),
+                Integer.parseInt(required(properties, name + ".max-requests")),
+                Long.parseLong(required(properties, name + ".window-ms")),
+                Long.parseLong(required(properties, name + ".throttle-delay-ms"))
+        );
+    }
+
+    private static String required(Properties properties, String key) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing rate limit policy property " + key);
+        }
+        return value.trim();
+    }
+}
@@ -0,0 +1,198 @@
+package com.assessment.speernotes.requests.ratelimit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Holds the rate limit policies of the notes API and their limiters, one per class of requests.
+ * The defaults are bundled with the application and can be overridden by an external file,
+ * which is reloaded without a restart when it changes. Only the limiters of the changed policies are
+ * replaced, the others keep their state. An invalid file is logged and the previous policies stay in effect.
+ */
+@Slf4j
+@Component
+public class RateLimitPolicyRegistry {
+    public static final String READ = "read";
+    public static final String WRITE = "write";
+    public static final String SEARCH = "search";
+    public static final String SUGGEST = "suggest";
+    private static final List<String> POLICY_NAMES = List.of(READ, WRITE, SEARCH, SUGGEST);
+    private static final String DEFAULT_POLICIES = "rate-limit-policies.properties";
+    private static final String SEARCH_PATH = "/api/notes/search";
+    private static final String SUGGEST_PATH = "/api/notes/suggest";
+
+    private final RateLimiterFactory rateLimiterFactory;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${rate-limiting.policies-file:}")
+    String policiesFile;
+
+    private volatile Map<String, PolicyLimiter> limiters = Map.of();
+    private long policiesFileModified = Long.MIN_VALUE;
+
+    public RateLimitPolicyRegistry(RateLimiterFactory rateLimiterFactory, MeterRegistry meterRegistry) {
+        this.rateLimiterFactory = rateLimiterFactory;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * This method is used to load the policies on startup, invalid policies fail the startup
+     */
+    @PostConstruct
+    public synchronized void init() {
+        apply(loadPolicies());
+    }
+
+    /**
+     * This method is used to reload the policies when the external policies file has changed
+     */
+    @Scheduled(fixedDelayString = "${rate-limiting.policies-reload-ms:10000}")
+    public void reloadIfModified() {
+        if (!StringUtils.hasText(policiesFile)) {
+            return;
+        }
+        try {
+            long modified = Files.getLastModifiedTime(Path.of(policiesFile)).toMillis();
+            if (modified != policiesFileModified) {
+                reload();
+            }
+        } catch (IOException e) {
+            log.warn("Could not check the rate limit policies file {}: {}", policiesFile, e.getMessage());
+        }
+    }
+
+    /**
+     * This method is used to reload the policies, keeping the current ones if the new ones are invalid
+     *
+     * @return boolean
+     */
+    public synchronized boolean reload() {
+        try {
+            apply(loadPolicies());
+            return true;
+        } catch (RuntimeException e) {
+            log.error("Rejected the rate limit policies, keeping the current ones: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * This method is used to resolve the policy and limiter of the request:
+     * search and suggest for their end points, read for the safe methods and write for the others
+     *
+     * @param request
+     * @return PolicyLimiter
+     */
+    public PolicyLimiter resolve(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        String name;
+        if (path.startsWith(SEARCH_PATH)) {
+            name = SEARCH;
+        } else if (path.startsWith(SUGGEST_PATH)) {
+            name = SUGGEST;
+        } else if ("GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod())) {
+            name = READ;
+        } else {
+            name = WRITE;
+        }
+        return limiters.get(name);
+    }
+
+    /**
+     * This method is used to retrieve the policies in effect
+     *
+     * @return Map<String, RateLimitPolicy>
+     */
+    public Map<String, RateLimitPolicy> getPolicies() {
+        Map<String, RateLimitPolicy> policies = new LinkedHashMap<>();
+        Map<String, PolicyLimiter> current = limiters;
+        for (String name : POLICY_NAMES) {
+            policies.put(name, current.get(name).policy());
+        }
+        return policies;
+    }
+
+    /**
+     * This method is used to give the budget held but not used by this instance back to the cluster
+     */
+    @Scheduled(fixedDelayString = "${rate-limiting.cluster.lease-idle-ms:1000}")
+    public void releaseIdle() {
+        limiters.values().forEach(limiter -> limiter.rateLimiter().releaseIdle());
+    }
+
+    /**
+     * This method is used to read the bundled policies overridden by the external policies file
+     *
+     * @return Map<String, RateLimitPolicy>
+     */
+    private Map<String, RateLimitPolicy> loadPolicies() {
+        Properties properties = new Properties();
+        try (InputStream defaults = new ClassPathResource(DEFAULT_POLICIES).getInputStream()) {
+            properties.load(defaults);
+            if (StringUtils.hasText(policiesFile)) {
+                Path path = Path.of(policiesFile);
+                policiesFileModified = Files.getLastModifiedTime(path).toMillis();
+                try (InputStream overrides = Files.newInputStream(path)) {
+                    properties.load(overrides);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the rate limit policies", e);
+        }
+
+        Map<String, RateLimitPolicy> policies = new LinkedHashMap<>();
+        for (String name : POLICY_NAMES) {
+            policies.put(name, RateLimitPolicy.from(properties, name));
+        }
+        return policies;
+    }
+
+    /**
+     * This method is used to swap in the limiters of the policies, reusing the limiters of the unchanged ones
+     *
+     * @param policies
+     */
+    private void apply(Map<String, RateLimitPolicy> policies) {
+        Map<String, PolicyLimiter> current = limiters;
+        Map<String, PolicyLimiter> updated = new HashMap<>();
+        policies.forEach((name, policy) -> {
+            PolicyLimiter existing = current.get(name);
+            if (existing != null && existing.policy().equals(policy)) {
+                updated.put(name, existing);
+                return;
+            }
+            String metricsName = "rate-limit." + name;
+            if (existing != null) {
+                // The metrics would keep reporting the replaced limiter
+                meterRegistry.getMeters().stream()
+                        .filter(meter -> metricsName.equals(meter.getId().getTag("cache")))
+                        .toList()
+                        .forEach(meterRegistry::remove);
+            }
+            RateLimiter rateLimiter = rateLimiterFactory.create(name, policy);
+            rateLimiter.bindMetrics(meterRegistry, metricsName);
+            updated.put(name, new PolicyLimiter(name, policy, rateLimiter));
+            log.info("Rate limiting {} requests to {} / {} per {}ms", name, policy.freeRequests(), policy.maxRequests(), policy.windowMs());
+        });
+        limiters = Map.copyOf(updated);
+    }
+
+    /**
+     * A policy with the limiter enforcing it
+     */
+    public record PolicyLimiter(String name, RateLimitPolicy policy, RateLimiter rateLimiter) {}
+}
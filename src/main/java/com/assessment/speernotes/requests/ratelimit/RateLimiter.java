@@ -0,0 +1,55 @@
+package com.assessment.speernotes.requests.ratelimit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Decides per key whether a request is allowed, throttled or rejected
+ */
+public interface RateLimiter {
+    enum Decision { ALLOWED, THROTTLED, REJECTED }
+
+    /**
+     * This method is used to count the request of the key and decide whether it is allowed
+     *
+     * @param key
+     * @return Decision
+     */
+    Decision acquire(String key);
+
+    /**
+     * This method is used to compute how long the key has to wait until its next request is not rejected
+     *
+     * @param key
+     * @return long milliseconds, zero if the next request is not rejected
+     */
+    long retryAfterMillis(String key);
+
+    /**
+     * This method is used to compute how many more requests of the key are allowed before it is throttled
+     *
+     * @param key
+     * @return long
+     */
+    long remaining(String key);
+
+    /**
+     * This method is used to compute how long it takes until the whole free budget of the key is available again
+     *
+     * @param key
+     * @return long milliseconds
+     */
+    long resetMillis(String key);
+
+    /**
+     * This method is used to give the budget held but not used by this instance back to the other instances
+     */
+    default void releaseIdle() {}
+
+    /**
+     * This method is used to expose the number of tracked keys and the evictions as cache metrics
+     *
+     * @param meterRegistry
+     * @param name
+     */
+    void bindMetrics(MeterRegistry meterRegistry, String name);
+}
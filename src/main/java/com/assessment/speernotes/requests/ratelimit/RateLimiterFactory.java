@@ -0,0 +1,17 @@
+package com.assessment.speernotes.requests.ratelimit;
+
+/**
+ * Creates the limiter enforcing a policy, local to the instance or shared by the cluster
+ */
+@FunctionalInterface
+public interface RateLimiterFactory {
+
+    /**
+     * This method is used to create an empty limiter enforcing the policy
+     *
+     * @param name name of the policy, the limiters of different policies do not share any state
+     * @param policy
+     * @return RateLimiter
+     */
+    RateLimiter create(String name, RateLimitPolicy policy);
+}
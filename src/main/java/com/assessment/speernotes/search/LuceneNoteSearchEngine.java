@@ -0,0 +1,457 @@
+package com.assessment.speernotes.search;
+
+import com.assessment.speernotes.model.Note;
+import com.assessment.speernotes.model.NoteSearchCursor;
+import com.assessment.speernotes.repository.NotesRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.simple.SimpleQueryParser;
+import org.apache.lucene.search.*;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Search engine on an embedded Lucene index of the notes stored on the local disk.
+ * The notes service keeps the index up to date on every write, and the searchers are refreshed
+ * in the background so the writes become searchable within the refresh interval.
+ * Lucene only returns the ids of the matching notes, their fields are read from MongoDB.
+ * The index can be rebuilt from MongoDB at any time, which also recovers a lost or stale index.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "notes.search.engine", havingValue = "lucene")
+public class LuceneNoteSearchEngine implements NoteSearchEngine {
+    static final String ID = "id";
+    static final String USER_ID = "userId";
+    static final String TITLE = "title";
+    static final String CONTENT = "content";
+
+    // Notes read per page when all the matching notes are streamed
+    private static final int STREAM_BATCH_SIZE = 500;
+    // The most relevant first, the id breaks the ties so the cursor has a total order
+    private static final Sort RELEVANCE = new Sort(SortField.FIELD_SCORE, new SortField(ID, SortField.Type.STRING, true));
+
+    private final NotesRepository notesRepository;
+    private final Directory directory;
+    private final Analyzer analyzer = new EnglishAnalyzer();
+    private final SearcherFactory searcherFactory;
+    // Opened again from the last commit when a rebuild fails
+    private volatile IndexWriter indexWriter;
+    private volatile SearcherManager searcherManager;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    // Ids of the notes written while the index is rebuilt, read again once the rebuild has read all the notes
+    private final Set<String> writtenDuringRebuild = ConcurrentHashMap.newKeySet();
+    private final ExecutorService rebuilder = Executors.newSingleThreadExecutor(rebuilderThreadFactory());
+
+    @Value("${notes.search.lucene.rebuild-on-startup:false}")
+    boolean rebuildOnStartup;
+
+    public LuceneNoteSearchEngine(NotesRepository notesRepository,
+                                  @Value("${notes.search.lucene.path:search-index}") String path,
+                                  @Value("${notes.search.lucene.filter-cache-size:1000}") int filterCacheSize) throws IOException {
+        this(notesRepository, FSDirectory.open(Path.of(path)), filterCacheSize);
+    }
+
+    LuceneNoteSearchEngine(NotesRepository notesRepository, Directory directory, int filterCacheSize) throws IOException {
+        this.notesRepository = notesRepository;
+        this.directory = directory;
+        // The access filters of the users are cached per segment, so a refresh only computes them on the new segments
+        LRUQueryCache filterCache = new LRUQueryCache(filterCacheSize, 64 * 1024 * 1024, leaf -> true, Float.POSITIVE_INFINITY);
+        QueryCachingPolicy accessFilters = new QueryCachingPolicy() {
+            @Override
+            public void onUse(Query query) {}
+
+            @Override
+            public boolean shouldCache(Query query) {
+                return isAccessFilter(query);
+            }
+        };
+        this.searcherFactory = new SearcherFactory() {
+            @Override
+            public IndexSearcher newSearcher(IndexReader reader, IndexReader previousReader) {
+                IndexSearcher searcher = new IndexSearcher(reader);
+                searcher.setQueryCache(filterCache);
+                searcher.setQueryCachingPolicy(accessFilters);
+                return searcher;
+            }
+        };
+        this.indexWriter = openWriter();
+        this.searcherManager = new SearcherManager(indexWriter, searcherFactory);
+    }
+
+    private IndexWriter openWriter() throws IOException {
+        return new IndexWriter(directory, new IndexWriterConfig(analyzer)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+    }
+
+    private static CustomizableThreadFactory rebuilderThreadFactory() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("search-index-rebuild-");
+        threadFactory.setDaemon(true);
+        return threadFactory;
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        rebuilder.shutdownNow();
+        searcherManager.close();
+        // Commits the pending changes
+        indexWriter.close();
+        directory.close();
+    }
+
+    /**
+     * This method is used to build the index in the background once the application has started,
+     * when it is empty or when a rebuild is asked for by the notes.search.lucene.rebuild-on-startup property
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildIfNeeded() {
+        if (rebuildOnStartup || indexWriter.getDocStats().numDocs == 0) {
+            startRebuild();
+        }
+    }
+
+    /**
+     * This method is used to rebuild the index in the background, unless it is already being rebuilt
+     *
+     * @return boolean whether the rebuild was started
+     */
+    public boolean startRebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            rebuilder.execute(() -> {
+                try {
+                    rebuildIndex();
+                } catch (RuntimeException e) {
+                    log.error("Could not rebuild the search index", e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rebuilding.set(false);
+            throw e;
+        }
+        return true;
+    }
+
+    /**
+     * This method is used to make the recent writes searchable, it is skipped while the index is being rebuilt
+     * so that the searches keep using the complete index until the rebuild has finished
+     */
+    @Scheduled(fixedDelayString = "${notes.search.lucene.refresh-ms:500}")
+    public void refresh() {
+        if (rebuilding.get()) {
+            return;
+        }
+        try {
+            searcherManager.maybeRefresh();
+        } catch (IOException e) {
+            log.warn("Could not refresh the search index: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * This method is used to persist the recent writes, the index is read back from the disk on restart
+     */
+    @Scheduled(fixedDelayString = "${notes.search.lucene.commit-ms:60000}")
+    public void commit() {
+        if (rebuilding.get() || !indexWriter.hasUncommittedChanges()) {
+            return;
+        }
+        try {
+            indexWriter.commit();
+        } catch (IOException e) {
+            log.warn("Could not commit the search index: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * This method is used to replace the whole index by the notes stored in MongoDB.
+     * The rebuild can read a note before it is written meanwhile, so the notes written during the rebuild
+     * are read again from MongoDB at the end, and a stale copy neither overwrites an update nor brings back a deleted note.
+     * If the rebuild fails, the index goes back to its state before the rebuild and is never left empty or partial.
+     *
+     * @return long the number of notes indexed
+     */
+    public long rebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            throw new IllegalStateException("The search index is already being rebuilt");
+        }
+        return rebuildIndex();
+    }
+
+    /**
+     * This method is used to rebuild the index once the rebuilding flag is taken, the flag is released when done
+     *
+     * @return long the number of notes indexed
+     */
+    private long rebuildIndex() {
+        long start = System.nanoTime();
+        long count = 0;
+        try {
+            // The index before the rebuild is kept by this commit, a failed rebuild goes back to it
+            indexWriter.commit();
+            try (Stream<Note> notes = notesRepository.streamAll(ID, USER_ID, TITLE, CONTENT)) {
+                indexWriter.deleteAll();
+                for (Iterator<Note> iterator = notes.iterator(); iterator.hasNext(); count++) {
+                    Note note = iterator.next();
+                    indexWriter.updateDocument(new Term(ID, note.getId()), document(note));
+                }
+                reindexWrittenDuringRebuild();
+                indexWriter.commit();
+            }
+        } catch (IOException e) {
+            restoreLastCommit();
+            throw new UncheckedIOException("Could not rebuild the search index", e);
+        } catch (RuntimeException e) {
+            restoreLastCommit();
+            throw e;
+        } finally {
+            rebuilding.set(false);
+        }
+        refresh();
+        log.info("Rebuilt the search index with {} notes in {}ms", count, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return count;
+    }
+
+    /**
+     * This method is used to drop the changes of a failed rebuild and open the index again from the commit made before it.
+     * The searches keep using the searcher of the index before the rebuild until the new one is open,
+     * and the notes written during the rebuild are indexed again from MongoDB.
+     */
+    private void restoreLastCommit() {
+        IndexWriter failedWriter = indexWriter;
+        SearcherManager previousSearchers = searcherManager;
+        try {
+            failedWriter.rollback();
+            indexWriter = openWriter();
+            searcherManager = new SearcherManager(indexWriter, searcherFactory);
+            previousSearchers.close();
+            reindexWrittenDuringRebuild();
+            log.info("Restored the search index with {} notes after the failed rebuild", indexWriter.getDocStats().numDocs);
+        } catch (IOException | RuntimeException e) {
+            log.error("Could not restore the search index after the failed rebuild", e);
+        }
+    }
+
+    /**
+     * This method is used to index again the notes written during the rebuild as they are now stored in MongoDB,
+     * until no write is left. The writes made from then on until the end of the rebuild are indexed by the writes themselves.
+     *
+     * @throws IOException
+     */
+    private void reindexWrittenDuringRebuild() throws IOException {
+        while (!writtenDuringRebuild.isEmpty()) {
+            List<String> ids = new ArrayList<>(writtenDuringRebuild);
+            writtenDuringRebuild.removeAll(ids);
+            Map<String, Note> stored = notesRepository.findProjectedByIds(ids, ID, USER_ID, TITLE, CONTENT).stream()
+                    .collect(Collectors.toMap(Note::getId, Function.identity()));
+            for (String id : ids) {
+                Note note = stored.get(id);
+                if (note == null) {
+                    indexWriter.deleteDocuments(new Term(ID, id));
+                } else {
+                    indexWriter.updateDocument(new Term(ID, id), document(note));
+                }
+            }
+        }
+    }
+
+    /**
+     * This method is used to retrieve the state of the index
+     *
+     * @return Map<String, Object>
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("notes", indexWriter.getDocStats().numDocs);
+        status.put("rebuilding", rebuilding.get());
+        return status;
+    }
+
+    @Override
+    public void index(Note note) {
+        // Recorded first, so a write hitting the writer of a failed rebuild is indexed again once it is restored
+        if (rebuilding.get()) {
+            writtenDuringRebuild.add(note.getId());
+        }
+        try {
+            indexWriter.updateDocument(new Term(ID, note.getId()), document(note));
+        } catch (IOException | RuntimeException e) {
+            // The note is saved, a rebuild brings the index back in line
+            log.warn("Could not index the note {}: {}", note.getId(), e.getMessage());
+        }
+    }
+
+    @Override
+    public void remove(String noteId) {
+        if (rebuilding.get()) {
+            writtenDuringRebuild.add(noteId);
+        }
+        try {
+            indexWriter.deleteDocuments(new Term(ID, noteId));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not remove the note {} from the index: {}", noteId, e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean isCurrent() {
+        try {
+            return !rebuilding.get() && searcherManager.isSearcherCurrent();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * This method is used to search the index for the page of the ids and then read the notes of the page from MongoDB,
+     * in the order of the index. The notes deleted since the last refresh are left out, the next page follows the last hit.
+     */
+    @Override
+    public NoteSearchPage searchPage(String keyword, String userId, Collection<String> sharedNoteIds,
+                                     NoteSearchCursor after, int size, String... fields) {
+        // One more hit than the page size is read to know whether a next page exists
+        List<NoteSearchCursor> hits = searchHits(keyword, userId, sharedNoteIds, after, size + 1);
+        if (hits.isEmpty()) {
+            return NoteSearchPage.EMPTY;
+        }
+        NoteSearchCursor next = hits.size() > size ? hits.get(size - 1) : null;
+        hits = hits.subList(0, Math.min(size, hits.size()));
+
+        Map<String, Note> notes = notesRepository.findProjectedByIds(hits.stream().map(NoteSearchCursor::id).toList(), fields)
+                .stream().collect(Collectors.toMap(Note::getId, Function.identity()));
+        List<Note> page = new ArrayList<>(hits.size());
+        for (NoteSearchCursor hit : hits) {
+            Note note = notes.get(hit.id());
+            if (note != null) {
+                note.setScore(hit.score());
+                page.add(note);
+            }
+        }
+        return new NoteSearchPage(page, next);
+    }
+
+    @Override
+    public Stream<Note> streamSearch(String keyword, String userId, Collection<String> sharedNoteIds, String... fields) {
+        // Pages of the ids read on demand, only one of them is held at a time
+        return Stream.iterate(searchPage(keyword, userId, sharedNoteIds, null, STREAM_BATCH_SIZE, fields),
+                        Objects::nonNull,
+                        page -> page.next() == null ? null
+                                : searchPage(keyword, userId, sharedNoteIds, page.next(), STREAM_BATCH_SIZE, fields))
+                .flatMap(page -> page.notes().stream());
+    }
+
+    /**
+     * This method is used to find the positions of the page of the matching notes the user can read.
+     * The keyword supports "phrases", prefix* and fuzzy~ terms, the title weighs twice as much as the content.
+     *
+     * @param keyword
+     * @param userId
+     * @param sharedNoteIds
+     * @param after
+     * @param limit
+     * @return List<NoteSearchCursor> the scores and the ids, the most relevant first
+     */
+    private List<NoteSearchCursor> searchHits(String keyword, String userId, Collection<String> sharedNoteIds,
+                                              NoteSearchCursor after, int limit) {
+        Query text = new SimpleQueryParser(analyzer, Map.of(TITLE, 2f, CONTENT, 1f)).parse(keyword);
+        if (text == null) {
+            return List.of();
+        }
+        BooleanQuery.Builder access = new BooleanQuery.Builder()
+                .add(new TermQuery(new Term(USER_ID, userId)), BooleanClause.Occur.SHOULD);
+        if (!sharedNoteIds.isEmpty()) {
+            access.add(new TermInSetQuery(ID, sharedNoteIds.stream().map(BytesRef::new).toList()), BooleanClause.Occur.SHOULD);
+        }
+        Query query = new BooleanQuery.Builder()
+                .add(text, BooleanClause.Occur.MUST)
+                .add(access.build(), BooleanClause.Occur.FILTER)
+                .build();
+
+        List<NoteSearchCursor> positions = new ArrayList<>(limit);
+        // Released to the manager it was acquired from, even if the index is opened again meanwhile
+        SearcherManager searchers = searcherManager;
+        try {
+            IndexSearcher searcher = searchers.acquire();
+            try {
+                TopFieldDocs hits = after == null
+                        ? searcher.search(query, limit, RELEVANCE, true)
+                        // The last doc id, so the note of the cursor itself is not after the cursor
+                        : searcher.searchAfter(new FieldDoc(searcher.getIndexReader().maxDoc() - 1, (float) after.score(),
+                        new Object[]{(float) after.score(), new BytesRef(after.id())}), query, limit, RELEVANCE, true);
+                for (ScoreDoc hit : hits.scoreDocs) {
+                    Object[] values = ((FieldDoc) hit).fields;
+                    positions.add(new NoteSearchCursor((Float) values[0], ((BytesRef) values[1]).utf8ToString()));
+                }
+            } finally {
+                searchers.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not search the notes", e);
+        }
+        return positions;
+    }
+
+    /**
+     * This method is used to check whether the query restricts the notes to those of a user,
+     * the only queries worth caching as they come back on every search of the user
+     *
+     * @param query
+     * @return boolean
+     */
+    static boolean isAccessFilter(Query query) {
+        if (query instanceof TermQuery termQuery) {
+            return USER_ID.equals(termQuery.getTerm().field());
+        }
+        return query instanceof BooleanQuery booleanQuery && booleanQuery.clauses().stream()
+                .anyMatch(clause -> clause.getQuery() instanceof TermQuery termQuery && USER_ID.equals(termQuery.getTerm().field()));
+    }
+
+    private static Document document(Note note) {
+        Document document = new Document();
+        document.add(new StringField(ID, note.getId(), Field.Store.NO));
+        document.add(new SortedDocValuesField(ID, new BytesRef(note.getId())));
+        document.add(new StringField(USER_ID, note.getUserId(), Field.Store.NO));
+        if (note.getTitle() != null) {
+            document.add(new TextField(TITLE, note.getTitle(), Field.Store.NO));
+        }
+        if (note.getContent() != null) {
+            document.add(new TextField(CONTENT, note.getContent(), Field.Store.NO));
+        }
+        return document;
+    }
+}
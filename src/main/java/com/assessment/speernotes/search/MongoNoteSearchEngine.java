@@ -0,0 +1,41 @@
+package com.assessment.speernotes.search;
+
+import com.assessment.speernotes.model.Note;
+import com.assessment.speernotes.model.NoteSearchCursor;
+import com.assessment.speernotes.repository.NotesRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * The default search engine, $text queries on the text index of the notes collection
+ */
+@Component
+@ConditionalOnProperty(name = "notes.search.engine", havingValue = "mongo", matchIfMissing = true)
+public class MongoNoteSearchEngine implements NoteSearchEngine {
+    private final NotesRepository notesRepository;
+
+    public MongoNoteSearchEngine(NotesRepository notesRepository) {
+        this.notesRepository = notesRepository;
+    }
+
+    @Override
+    public NoteSearchPage searchPage(String keyword, String userId, Collection<String> sharedNoteIds,
+                                     NoteSearchCursor after, int size, String... fields) {
+        // One more note than the page size is read to know whether a next page exists
+        List<Note> notes = notesRepository.searchPage(keyword, userId, sharedNoteIds, after, size + 1, fields);
+        if (notes.size() <= size) {
+            return new NoteSearchPage(notes, null);
+        }
+        notes = notes.subList(0, size);
+        return new NoteSearchPage(notes, NoteSearchCursor.of(notes.get(size - 1)));
+    }
+
+    @Override
+    public Stream<Note> streamSearch(String keyword, String userId, Collection<String> sharedNoteIds, String... fields) {
+        return notesRepository.streamSearchNotes(keyword, userId, sharedNoteIds, fields);
+    }
+}
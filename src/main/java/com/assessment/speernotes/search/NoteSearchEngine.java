@@ -0,0 +1,31 @@
+package com.assessment.speernotes.search;
+
+import com.assessment.speernotes.model.Note;
+import com.assessment.speernotes.model.NoteSearchCursor;
+
+import java.util.Collection;
+import java.util.stream.Stream;
+
+/**
+ * Full text search of the notes owned by or shared with a user, the most relevant first.
+ * The notes carry their score, which positions the search cursor.
+ */
+public interface NoteSearchEngine {
+    // Seeks past the cursor in the (score, id) order, the page holds at most size hits
+    NoteSearchPage searchPage(String keyword, String userId, Collection<String> sharedNoteIds,
+                              NoteSearchCursor after, int size, String... fields);
+
+    // Iterates all the matching notes, the stream has to be closed
+    Stream<Note> streamSearch(String keyword, String userId, Collection<String> sharedNoteIds, String... fields);
+
+    // Called once the note is saved, the engines searching the notes collection itself have nothing to do
+    default void index(Note note) {}
+
+    // Called once the note is deleted
+    default void remove(String noteId) {}
+
+    // Whether the searches see every write so far, the results of a lagging engine are not cached
+    default boolean isCurrent() {
+        return true;
+    }
+}
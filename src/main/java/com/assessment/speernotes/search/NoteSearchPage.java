@@ -0,0 +1,15 @@
+package com.assessment.speernotes.search;
+
+import com.assessment.speernotes.model.Note;
+import com.assessment.speernotes.model.NoteSearchCursor;
+
+import java.util.List;
+
+/**
+ * A page of search results and the position of its last hit, null when no hit follows.
+ * The page can hold fewer notes than hits, as the notes deleted since the index was refreshed are left out,
+ * so the next page is positioned on the hits and not on the notes.
+ */
+public record NoteSearchPage(List<Note> notes, NoteSearchCursor next) {
+    public static final NoteSearchPage EMPTY = new NoteSearchPage(List.of(), null);
+}
@@ -0,0 +1,197 @@
+package com.assessment.speernotes.search;
+
+import com.assessment.speernotes.model.Note;
+import com.assessment.speernotes.repository.NotesRepository;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Suggests the terms of the titles of the notes of a user starting with a prefix, for typeahead.
+ * The terms of a user are kept in memory in a sorted map with the number of notes having them in their title,
+ * so a prefix is a range of the map. They are loaded from MongoDB on the first suggestion and kept up to date
+ * on the writes of the notes made through this instance. The writes made through other instances are only seen
+ * once the terms are loaded again, which happens a fixed time after they were loaded however often the user types.
+ * The terms are read from MongoDB by the request which misses them, outside of the cache, and the concurrent requests
+ * of the user wait for that load instead of reading them again.
+ */
+@Component
+public class NoteSuggester {
+    private static final Pattern TERM_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final NotesRepository notesRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${notes.suggest.max-terms:1000000}")
+    long maxTerms;
+
+    @Value("${notes.suggest.ttl:1m}")
+    Duration ttl;
+
+    @Value("${notes.suggest.max-suggestions:20}")
+    int maxSuggestions;
+
+    private AsyncCache<String, TitleTerms> titleTerms;
+
+    public NoteSuggester(NotesRepository notesRepository, MeterRegistry meterRegistry) {
+        this.notesRepository = notesRepository;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * This method is used to build the cache of the terms by user, bounded by the total number of terms and titles.
+     * The terms expire once the ttl has passed since they were loaded, the updates and the reads do not extend it.
+     */
+    @PostConstruct
+    void init() {
+        titleTerms = Caffeine.newBuilder()
+                .maximumWeight(maxTerms)
+                .<String, TitleTerms>weigher((userId, terms) -> terms.counts().size() + terms.titles().size() + 1)
+                .expireAfter(new Expiry<String, TitleTerms>() {
+                    @Override
+                    public long expireAfterCreate(String userId, TitleTerms terms, long currentTime) {
+                        return ttl.toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String userId, TitleTerms terms, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String userId, TitleTerms terms, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, titleTerms, "notes.suggest");
+    }
+
+    /**
+     * This method is used to suggest the title terms of the user starting with the prefix,
+     * the terms of the most notes first
+     *
+     * @param userId
+     * @param prefix
+     * @param limit capped to the max suggestions
+     * @return List<String>
+     */
+    public List<String> suggest(String userId, String prefix, int limit) {
+        String normalized = prefix.trim().toLowerCase(Locale.ROOT);
+        if (normalized.isEmpty() || limit < 1) {
+            return List.of();
+        }
+        return terms(userId).counts()
+                .subMap(normalized, true, normalized + Character.MAX_VALUE, false)
+                .entrySet().stream()
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(Math.min(limit, maxSuggestions))
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    /**
+     * This method is used to retrieve the terms of the user, loading them if they are not cached.
+     * Only an empty future is put in the cache, the request which put it loads the terms and completes it,
+     * so no MongoDB read runs while the cache holds the entry.
+     *
+     * @param userId
+     * @return TitleTerms
+     */
+    private TitleTerms terms(String userId) {
+        CompletableFuture<TitleTerms> loading = new CompletableFuture<>();
+        CompletableFuture<TitleTerms> terms = titleTerms.get(userId, (id, executor) -> loading);
+        if (terms == loading) {
+            try {
+                loading.complete(load(userId));
+            } catch (RuntimeException e) {
+                // The failed load is removed from the cache, the next request tries again
+                loading.completeExceptionally(e);
+                throw e;
+            }
+        }
+        try {
+            return terms.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    /**
+     * This method is used to apply the title of a note to the terms of its owner, once the note is written.
+     * The title replaces the one known for the note, so applying it again, or to terms loaded after the write, changes nothing.
+     * Nothing is done if the terms of the user are not loaded, they are read from MongoDB when needed.
+     * A load in progress may have read the note before the write, so it is dropped from the cache without waiting for it
+     * and the next suggestion loads the terms again.
+     *
+     * @param userId
+     * @param noteId
+     * @param title the title after the write, null for a deleted note
+     */
+    public void update(String userId, String noteId, String title) {
+        CompletableFuture<TitleTerms> loaded = titleTerms.getIfPresent(userId);
+        if (loaded == null || loaded.isCompletedExceptionally()) {
+            return;
+        }
+        if (!loaded.isDone()) {
+            titleTerms.asMap().remove(userId, loaded);
+            return;
+        }
+        TitleTerms terms = loaded.join();
+        synchronized (terms) {
+            String oldTitle = title == null ? terms.titles().remove(noteId) : terms.titles().put(noteId, title);
+            if (!Objects.equals(oldTitle, title)) {
+                count(terms.counts(), oldTitle, -1);
+                count(terms.counts(), title, 1);
+            }
+        }
+    }
+
+    private TitleTerms load(String userId) {
+        TitleTerms terms = new TitleTerms(new HashMap<>(), new ConcurrentSkipListMap<>());
+        try (Stream<Note> notes = notesRepository.streamByUserId(userId, "title")) {
+            notes.filter(note -> note.getTitle() != null).forEach(note -> {
+                terms.titles().put(note.getId(), note.getTitle());
+                count(terms.counts(), note.getTitle(), 1);
+            });
+        }
+        return terms;
+    }
+
+    // The titles by note id are only changed holding the lock of the terms, the counts are read concurrently
+    private record TitleTerms(Map<String, String> titles, ConcurrentSkipListMap<String, Integer> counts) {}
+
+    private static void count(ConcurrentSkipListMap<String, Integer> terms, String title, int delta) {
+        if (title == null) {
+            return;
+        }
+        Set<String> titleTerms = new HashSet<>();
+        for (String term : TERM_SEPARATOR.split(title.toLowerCase(Locale.ROOT))) {
+            if (!term.isEmpty()) {
+                titleTerms.add(term);
+            }
+        }
+        for (String term : titleTerms) {
+            if (delta > 0) {
+                terms.merge(term, delta, Integer::sum);
+            } else {
+                // The terms no longer in any title are removed
+                terms.computeIfPresent(term, (key, notes) -> notes + delta > 0 ? notes + delta : null);
+            }
+        }
+    }
+}
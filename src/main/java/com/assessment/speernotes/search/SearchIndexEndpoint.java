@@ -0,0 +1,49 @@
+package com.assessment.speernotes.search;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Actuator end point of the Lucene search index at /actuator/searchindex, a POST by an administrator
+ * rebuilds the index from MongoDB in the background
+ */
+@Component
+@Endpoint(id = "searchindex")
+@ConditionalOnProperty(name = "notes.search.engine", havingValue = "lucene")
+public class SearchIndexEndpoint {
+    private final LuceneNoteSearchEngine searchEngine;
+
+    public SearchIndexEndpoint(LuceneNoteSearchEngine searchEngine) {
+        this.searchEngine = searchEngine;
+    }
+
+    /**
+     * This method is used to retrieve the state of the index
+     *
+     * @return Map<String, Object>
+     */
+    @ReadOperation
+    public Map<String, Object> status() {
+        return searchEngine.getStatus();
+    }
+
+    /**
+     * This method is used to start rebuilding the index from the notes stored in MongoDB,
+     * the progress is shown by the status
+     *
+     * @return WebEndpointResponse<Map<String, Object>> accepted, or conflict when a rebuild is already running
+     */
+    @WriteOperation
+    public WebEndpointResponse<Map<String, Object>> rebuild() {
+        return searchEngine.startRebuild()
+                ? new WebEndpointResponse<>(searchEngine.getStatus(), HttpStatus.ACCEPTED.value())
+                : new WebEndpointResponse<>(Map.of("error", "The search index is already being rebuilt"), HttpStatus.CONFLICT.value());
+    }
+}
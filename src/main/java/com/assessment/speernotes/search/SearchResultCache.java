@@ -0,0 +1,92 @@
+package com.assessment.speernotes.search;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Caches the ids of the pages of search results by user, notes generation, normalized query and page.
+ * The generation of a user is bumped on every change of the notes of the user or shared with the user,
+ * so a change moves the searches to new keys and the entries of the older generations are never read again.
+ * They are evicted by size or age, nothing has to be scanned or invalidated.
+ */
+@Component
+public class SearchResultCache {
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${notes.search.cache.max-size:10000}")
+    long maxSize;
+
+    @Value("${notes.search.cache.ttl:10m}")
+    Duration ttl;
+
+    private Cache<Key, Page> pages;
+
+    public SearchResultCache(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * This method is used to build the bounded cache of the pages
+     */
+    @PostConstruct
+    void init() {
+        pages = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, pages, "notes.search");
+    }
+
+    /**
+     * This method is used to normalize the query, so the same search written differently shares the cached pages
+     *
+     * @param query
+     * @return String
+     */
+    public static String normalize(String query) {
+        return WHITESPACE.matcher(query.trim()).replaceAll(" ").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * This method is used to retrieve the cached page
+     *
+     * @param key
+     * @return Page, null if missing
+     */
+    public Page get(Key key) {
+        return pages.getIfPresent(key);
+    }
+
+    /**
+     * This method is used to cache the page
+     *
+     * @param key
+     * @param page
+     */
+    public void put(Key key, Page page) {
+        pages.put(key, page);
+    }
+
+    /**
+     * A page of search results, the query has to be normalized and the cursor is null for the first page
+     */
+    public record Key(String userId, long notesGeneration, String query, String cursor, int size) {}
+
+    /**
+     * The ids of the notes of a page, the most relevant first, and the token of the next page
+     */
+    public record Page(List<String> noteIds, String nextCursor) {}
+}
@@ -1,15 +1,13 @@
 package com.assessment.speernotes.service;
 
 import com.assessment.speernotes.model.User;
+import com.assessment.speernotes.model.UserPrincipal;
 import com.assessment.speernotes.repository.UsersRepository;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
-import java.util.Collections;
-
 @Service
 public class CustomerUserDetailsService implements UserDetailsService {
     private final UsersRepository userRepository;
@@ -30,10 +28,6 @@ public class CustomerUserDetailsService implements UserDetailsService {
         User user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found"));
 
-        return new org.springframework.security.core.userdetails.User(
-                user.getEmail(),
-                user.getPassword(),
-                Collections.singletonList(new SimpleGrantedAuthority("USER"))
-        );
+        return UserPrincipal.from(user);
     }
 }
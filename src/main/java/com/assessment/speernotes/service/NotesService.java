@@ -1,18 +1,32 @@
 package com.assessment.speernotes.service;
 
+import com.assessment.speernotes.exceptions.NoteConflictException;
 import com.assessment.speernotes.exceptions.NotesException;
 import com.assessment.speernotes.exceptions.UserException;
 import com.assessment.speernotes.model.Note;
+import com.assessment.speernotes.model.NoteCursor;
+import com.assessment.speernotes.model.NoteFields;
+import com.assessment.speernotes.model.NoteSearchCursor;
 import com.assessment.speernotes.model.dto.NoteDto;
+import com.assessment.speernotes.model.dto.NotePageDto;
 import com.assessment.speernotes.model.User;
+import com.assessment.speernotes.model.UserPrincipal;
 import com.assessment.speernotes.repository.NotesRepository;
+import com.assessment.speernotes.search.NoteSearchEngine;
+import com.assessment.speernotes.search.NoteSearchPage;
+import com.assessment.speernotes.search.NoteSuggester;
+import com.assessment.speernotes.search.SearchResultCache;
 import com.assessment.speernotes.utils.ConvertorUtil;
+import com.assessment.speernotes.utils.NoteETags;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @Slf4j
@@ -20,20 +34,36 @@ public class NotesService {
     private final NotesRepository noteRepository;
     private final UsersService usersService;
     private final ConvertorUtil convertorUtil;
+    private final NoteSearchEngine noteSearchEngine;
+    private final NoteSuggester noteSuggester;
+    private final SearchResultCache searchResultCache;
 
-    public NotesService(NotesRepository noteRepository, UsersService usersService, ConvertorUtil convertorUtil) {
+    @Value("${notes.page.default-size:50}")
+    int defaultPageSize;
+
+    @Value("${notes.page.max-size:200}")
+    int maxPageSize;
+
+    @Value("${notes.suggest.default-suggestions:10}")
+    int defaultSuggestions;
+
+    public NotesService(NotesRepository noteRepository, UsersService usersService, ConvertorUtil convertorUtil,
+                        NoteSearchEngine noteSearchEngine, NoteSuggester noteSuggester, SearchResultCache searchResultCache) {
         this.noteRepository = noteRepository;
         this.usersService = usersService;
         this.convertorUtil = convertorUtil;
+        this.noteSearchEngine = noteSearchEngine;
+        this.noteSuggester = noteSuggester;
+        this.searchResultCache = searchResultCache;
     }
 
     /**
-     * This method is used to return the current authenticated user
+     * This method is used to return the principal of the current authenticated user
      *
-     * @return User
+     * @return UserPrincipal
      */
-    private User getAuthenticatedUser() {
-        return usersService.getAuthenticatedUser();
+    private UserPrincipal getAuthenticatedPrincipal() {
+        return usersService.getAuthenticatedPrincipal();
     }
 
     /**
@@ -47,24 +77,94 @@ public class NotesService {
     }
 
     /**
-     * This method is used to retrieve all the notes associated with the current authenticated user
+     * This method is used to retrieve a page of the notes associated with the current authenticated user,
+     * the most recently updated first. One more note than the page size is read to know whether a next page exists.
      *
-     * @return List<Note>
+     * @param cursor the token of the page, null for the first page
+     * @param size the page size, the default size if null, capped to the max size
+     * @param fields the fields of the notes to return
+     * @return NotePageDto
+     */
+    public NotePageDto getNotes(String cursor, Integer size, NoteFields fields) {
+        UserPrincipal principal = getAuthenticatedPrincipal();
+        int pageSize = size == null ? defaultPageSize : Math.max(1, Math.min(size, maxPageSize));
+        NoteCursor after = cursor == null || cursor.isBlank() ? null : NoteCursor.decode(cursor);
+
+        // The cursor is built from the id and the update time of the last note, even if they are not requested
+        List<Note> notes = noteRepository.findPageByUserId(principal.getId(), after, pageSize + 1,
+                fields.projection("id", "updatedAt"));
+        String nextCursor = null;
+        if (notes.size() > pageSize) {
+            notes = notes.subList(0, pageSize);
+            nextCursor = NoteCursor.of(notes.get(pageSize - 1)).encode();
+        }
+        notes.forEach(fields::apply);
+        return new NotePageDto(notes, nextCursor);
+    }
+
+    /**
+     * This method is used to stream all the notes associated with the current authenticated user,
+     * the most recently updated first. The stream holds a database cursor and has to be closed.
+     *
+     * @param fields the fields of the notes to return
+     * @return Stream<Note>
      */
-    public List<Note> getAllNotes() {
-        User user = getAuthenticatedUser();
-        return getAllUserNotes(user);
+    public Stream<Note> streamNotes(NoteFields fields) {
+        UserPrincipal principal = getAuthenticatedPrincipal();
+        return noteRepository.streamByUserId(principal.getId(), fields.projection()).map(fields::apply);
     }
 
     /**
      * This method is used to retrieve the note by the note id associated with the current authenticated user
      *
      * @param id
+     * @param fields the fields of the note to return
      * @return Optional<Note>
      */
-    public Optional<Note> getNoteById(String id) {
-        User user = getAuthenticatedUser();
-        return noteRepository.findById(id).filter(note -> note.getUserId().equals(user.getId()));
+    public Optional<Note> getNoteById(String id, NoteFields fields) {
+        UserPrincipal principal = getAuthenticatedPrincipal();
+        return noteRepository.findProjectedById(id, fields.projection("userId"))
+                .filter(note -> note.getUserId().equals(principal.getId()))
+                .map(fields::apply);
+    }
+
+    /**
+     * This method is used to get the entity tag of the note associated with the current authenticated user,
+     * from an index only lookup of its version and update time, so an unchanged note is not read
+     *
+     * @param id
+     * @param fields the fields of the note to return
+     * @return Optional<String>, empty if the note is not found
+     */
+    public Optional<String> getNoteETag(String id, NoteFields fields) {
+        UserPrincipal principal = getAuthenticatedPrincipal();
+        return noteRepository.findVersionById(id, principal.getId()).map(note -> NoteETags.of(note, fields));
+    }
+
+    /**
+     * This method is used to get the version of the note associated with the current authenticated user,
+     * from the same index only lookup as its entity tag. The notes created before the versioning are at version 0.
+     *
+     * @param id
+     * @return Optional<Long>, empty if the note is not found
+     */
+    public Optional<Long> getNoteVersion(String id) {
+        UserPrincipal principal = getAuthenticatedPrincipal();
+        return noteRepository.findVersionById(id, principal.getId()).map(note -> note.getVersion() == null ? 0L : note.getVersion());
+    }
+
+    /**
+     * This method is used to get the entity tag of a page of the notes associated with the current authenticated user.
+     * It changes with the notes generation of the user, so it has to be read before the notes of the page.
+     *
+     * @param cursor
+     * @param size
+     * @param fields the fields of the notes to return
+     * @return String
+     */
+    public String getNotesETag(String cursor, Integer size, NoteFields fields) {
+        UserPrincipal principal = getAuthenticatedPrincipal();
+        return NoteETags.ofPage(principal.getId(), usersService.getNotesGeneration(principal.getId()), cursor, size, fields);
     }
 
     /**
@@ -75,15 +175,23 @@ public class NotesService {
      */
     public Note createNote(NoteDto noteDto) {
         Note note = convertorUtil.convertNoteDtoToNote(noteDto);
-        User user = getAuthenticatedUser();
-        note.setUserId(user.getId());
+        UserPrincipal principal = getAuthenticatedPrincipal();
+        note.setUserId(principal.getId());
+        // A version sent back from a read would make the new note look like an existing one to save
+        note.setVersion(null);
         note.setCreatedAt(Instant.now());
         note.setUpdatedAt(Instant.now());
-        return noteRepository.save(note);
+        Note savedNote = noteRepository.save(note);
+        noteSearchEngine.index(savedNote);
+        noteSuggester.update(principal.getId(), savedNote.getId(), savedNote.getTitle());
+        usersService.notesChanged(principal.getId(), savedNote.getId());
+        return savedNote;
     }
 
     /**
-     * This method is used to update the note for the note id associated with the current authenticated user
+     * This method is used to update the note for the note id associated with the current authenticated user.
+     * Only the changed fields are written, in a single findAndModify matching the owner and, if given, the version,
+     * so a concurrent update is never overwritten by an update based on an older version.
      *
      * @param noteId
      * @param noteDto
@@ -91,24 +199,37 @@ public class NotesService {
      */
     public Optional<Note> updateNote(String noteId, NoteDto noteDto) {
         Note newNote = convertorUtil.convertNoteDtoToNote(noteDto);
-        User user = getAuthenticatedUser();
+        UserPrincipal principal = getAuthenticatedPrincipal();
+        Instant updatedAt = Instant.now();
 
-        return noteRepository.findById(noteId).map(note -> {
-            if (!note.getUserId().equals(user.getId())) {
-                throw new NotesException("The note does not belong to the user!");
-            }
+        Optional<Note> previous = noteRepository.updateFields(noteId, principal.getId(), noteDto.getVersion(),
+                newNote.getTitle(), newNote.getContent(), updatedAt);
+        if (previous.isEmpty()) {
+            // Nothing matched, the owner and the version tell why
+            return noteRepository.findProjectedById(noteId, "userId", "version").map(note -> {
+                if (!note.getUserId().equals(principal.getId())) {
+                    throw new NotesException("The note does not belong to the user!");
+                }
+                throw new NoteConflictException("The note " + noteId + " is at version " + note.getVersion()
+                        + " and not " + noteDto.getVersion() + "!");
+            });
+        }
 
-            if (Optional.ofNullable(newNote.getTitle()).isPresent()) {
-                note.setTitle(newNote.getTitle());
-            }
+        Note note = previous.get();
+        if (Optional.ofNullable(newNote.getTitle()).isPresent()) {
+            note.setTitle(newNote.getTitle());
+        }
 
-            if (Optional.ofNullable(newNote.getContent()).isPresent()) {
-                note.setContent(newNote.getContent());
-            }
+        if (Optional.ofNullable(newNote.getContent()).isPresent()) {
+            note.setContent(newNote.getContent());
+        }
 
-            note.setUpdatedAt(Instant.now());
-            return noteRepository.save(note);
-        });
+        note.setUpdatedAt(updatedAt);
+        note.setVersion(note.getVersion() == null ? 1 : note.getVersion() + 1);
+        noteSearchEngine.index(note);
+        noteSuggester.update(principal.getId(), note.getId(), note.getTitle());
+        usersService.notesChanged(principal.getId(), note.getId());
+        return Optional.of(note);
     }
 
     /**
@@ -118,6 +239,9 @@ public class NotesService {
      */
     public void deleteUserNote(Note note) {
         noteRepository.delete(note);
+        noteSearchEngine.remove(note.getId());
+        noteSuggester.update(note.getUserId(), note.getId(), null);
+        usersService.notesChanged(note.getUserId(), note.getId());
     }
 
     /**
@@ -126,14 +250,31 @@ public class NotesService {
      * @param noteId
      */
     public void deleteNote(String noteId) {
-        User user = getAuthenticatedUser();
-        noteRepository.findById(noteId).ifPresent(note -> {
-            if (note.getUserId().equals(user.getId())) {
-                deleteUserNote(note);
-            } else {
+        deleteNote(noteId, null);
+    }
+
+    /**
+     * This method is used to delete the note for the id associated with the current authenticated user,
+     * if it is still at the expected version. The delete matches the version read, so a concurrent update is not lost.
+     *
+     * @param noteId
+     * @param expectedVersion null to delete whatever the version
+     * @return boolean whether the note was found
+     */
+    public boolean deleteNote(String noteId, Long expectedVersion) {
+        UserPrincipal principal = getAuthenticatedPrincipal();
+        return noteRepository.findById(noteId).map(note -> {
+            if (!note.getUserId().equals(principal.getId())) {
                 throw new NotesException("The note does not belong to the user!");
             }
-        });
+            long version = note.getVersion() == null ? 0 : note.getVersion();
+            if (expectedVersion != null && expectedVersion != version) {
+                throw new NoteConflictException("The note " + noteId + " is at version " + version
+                        + " and not " + expectedVersion + "!");
+            }
+            deleteUserNote(note);
+            return true;
+        }).orElse(false);
     }
 
     /**
@@ -148,18 +289,15 @@ public class NotesService {
 
         try {
             User sharedUser = usersService.findUserByEmail(email);
-            User user = getAuthenticatedUser();
+            UserPrincipal principal = getAuthenticatedPrincipal();
 
             status = noteRepository.findById(noteId).map(note -> {
-                if (note.getUserId().equals(user.getId())) {
-                    sharedUser.getSharedNotes().add(noteId);
-                    usersService.saveUser(sharedUser);
-                    return true;
+                if (note.getUserId().equals(principal.getId())) {
+                    return usersService.shareNoteWithUser(sharedUser, noteId);
                 }
                 return false;
             }).orElse(false);
             log.info(String.valueOf(status));
-            log.info(sharedUser.getSharedNotes().toString());
         } catch (UserException e) {
             throw new NotesException("Notes cannot be shared to the user " + email + " as the user is invalid!");
         } catch (Exception ignored) {}
@@ -168,15 +306,73 @@ public class NotesService {
     }
 
     /**
-     * This method is used to get all the available notes which satisfies the query associated with the current authenticated user
+     * This method is used to get a page of the notes which satisfy the query associated with the current authenticated user,
+     * the most relevant first. The notes not owned by or shared with the user are filtered out by the search engine.
+     * The search engine tells whether a next page exists.
+     * The ids of the page are cached for the notes generation of the user, so a repeated search only reads the notes by id.
      *
      * @param query
-     * @return List<Note>
+     * @param cursor the token of the page, null for the first page
+     * @param size the page size, the default size if null, capped to the max size
+     * @param fields the fields of the notes to return
+     * @return NotePageDto
+     */
+    public NotePageDto searchNoteForQuery(String query, String cursor, Integer size, NoteFields fields) {
+        UserPrincipal principal = getAuthenticatedPrincipal();
+        int pageSize = size == null ? defaultPageSize : Math.max(1, Math.min(size, maxPageSize));
+        NoteSearchCursor after = cursor == null || cursor.isBlank() ? null : NoteSearchCursor.decode(cursor);
+        String normalizedQuery = SearchResultCache.normalize(query);
+        User scope = usersService.getNotesScope(principal.getId());
+        SearchResultCache.Key key = new SearchResultCache.Key(principal.getId(), scope.getNotesGeneration(), normalizedQuery,
+                after == null ? null : cursor, pageSize);
+
+        List<Note> notes;
+        String nextCursor;
+        SearchResultCache.Page cached = searchResultCache.get(key);
+        if (cached != null) {
+            // The fields are read by id, so a cached page serves every set of fields
+            Map<String, Note> notesById = noteRepository.findProjectedByIds(cached.noteIds(), fields.projection("id")).stream()
+                    .collect(Collectors.toMap(Note::getId, Function.identity()));
+            notes = cached.noteIds().stream().map(notesById::get).filter(Objects::nonNull).toList();
+            nextCursor = cached.nextCursor();
+        } else {
+            NoteSearchPage page = noteSearchEngine.searchPage(normalizedQuery, principal.getId(), scope.getSharedNotes(), after,
+                    pageSize, fields.projection("id"));
+            notes = page.notes();
+            nextCursor = page.next() == null ? null : page.next().encode();
+            if (noteSearchEngine.isCurrent()) {
+                searchResultCache.put(key, new SearchResultCache.Page(notes.stream().map(Note::getId).toList(), nextCursor));
+            }
+        }
+        notes.forEach(fields::apply);
+        return new NotePageDto(notes, nextCursor);
+    }
+
+    /**
+     * This method is used to stream the notes which satisfy the query associated with the current authenticated user.
+     * The stream holds a database cursor and has to be closed.
+     *
+     * @param query
+     * @param fields the fields of the notes to return
+     * @return Stream<Note>
+     */
+    public Stream<Note> streamSearchNotes(String query, NoteFields fields) {
+        UserPrincipal principal = getAuthenticatedPrincipal();
+        Set<String> sharedNoteIds = usersService.getSharedNoteIds(principal.getId());
+        return noteSearchEngine.streamSearch(query, principal.getId(), sharedNoteIds, fields.projection("id"))
+                .map(fields::apply);
+    }
+
+    /**
+     * This method is used to suggest the terms of the titles of the notes of the current authenticated user
+     * starting with the prefix, served from memory
+     *
+     * @param prefix
+     * @param limit the number of suggestions, the default number if null
+     * @return List<String>
      */
-    public List<Note> searchNoteForQuery(String query) {
-        User user = getAuthenticatedUser();
-        return noteRepository.searchNotes(query).stream()
-                .filter(note -> note.getUserId().equals(user.getId()) || user.getSharedNotes().contains(note.getId()))
-                .toList();
+    public List<String> suggest(String prefix, Integer limit) {
+        UserPrincipal principal = getAuthenticatedPrincipal();
+        return noteSuggester.suggest(principal.getId(), prefix, limit == null ? defaultSuggestions : limit);
     }
 }
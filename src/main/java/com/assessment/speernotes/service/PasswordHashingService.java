@@ -0,0 +1,202 @@
+package com.assessment.speernotes.service;
+
+import com.assessment.speernotes.exceptions.TooManyRequestsException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+@Service
+@Slf4j
+public class PasswordHashingService {
+    private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolExecutor executor;
+    private final ThreadPoolExecutor bulkExecutor;
+    private final int bulkParallelism;
+    private final int bulkQueueCapacity;
+
+    @Value("${password-hashing.timeout-ms:5000}")
+    long timeoutMs;
+
+    @Value("${password-hashing.bulk-timeout-ms:60000}")
+    long bulkTimeoutMs;
+
+    @Value("${password-hashing.target-latency-ms:250}")
+    long targetLatencyMs;
+
+    @Value("${password-hashing.retry-after-seconds:1}")
+    long retryAfterSeconds;
+
+    /**
+     * The hashing runs on a dedicated pool where both the threads and the queue are bounded,
+     * so a burst of logins cannot take every request thread or all the CPU.
+     * The bulk hashing has its own smaller pool and queue, so the logins and the bulk requests never reject each other.
+     *
+     * @param passwordEncoder
+     * @param poolSize threads of the pool, defaults to the number of processors
+     * @param queueCapacity hashing tasks waiting for a thread before new ones are rejected
+     * @param bulkQueueCapacity bulk hashing tasks waiting for a thread before new bulk requests are rejected
+     */
+    @Autowired
+    public PasswordHashingService(PasswordEncoder passwordEncoder,
+                                  @Value("${password-hashing.pool-size:0}") int poolSize,
+                                  @Value("${password-hashing.queue-capacity:64}") int queueCapacity,
+                                  @Value("${password-hashing.bulk-queue-capacity:1000}") int bulkQueueCapacity) {
+        this(passwordEncoder, poolSize, new ArrayBlockingQueue<>(queueCapacity), new ArrayBlockingQueue<>(bulkQueueCapacity));
+    }
+
+    PasswordHashingService(PasswordEncoder passwordEncoder, int poolSize, BlockingQueue<Runnable> queue, BlockingQueue<Runnable> bulkQueue) {
+        int threads = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+        this.passwordEncoder = passwordEncoder;
+        // Bulk hashing takes at most half as many threads as the logins
+        this.bulkParallelism = Math.max(1, threads / 2);
+        this.bulkQueueCapacity = bulkQueue.remainingCapacity();
+        this.executor = new ThreadPoolExecutor(
+                threads, threads,
+                0L, TimeUnit.MILLISECONDS,
+                queue,
+                new CustomizableThreadFactory("password-hashing-"),
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+        this.bulkExecutor = new ThreadPoolExecutor(
+                bulkParallelism, bulkParallelism,
+                0L, TimeUnit.MILLISECONDS,
+                bulkQueue,
+                new CustomizableThreadFactory("password-hashing-bulk-"),
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+        bulkExecutor.shutdownNow();
+    }
+
+    /**
+     * This method is used to hash the raw password on the password hashing pool
+     *
+     * @param rawPassword
+     * @return String
+     */
+    public String encode(String rawPassword) {
+        return execute(() -> passwordEncoder.encode(rawPassword));
+    }
+
+    /**
+     * This method is used to get the most passwords a bulk request may hash,
+     * bounded by the bulk queue and by what the bulk threads hash within the bulk timeout
+     *
+     * @return int
+     */
+    public int getMaxBulkSize() {
+        long withinTimeout = bulkParallelism * bulkTimeoutMs / Math.max(1, targetLatencyMs);
+        return (int) Math.min(bulkQueueCapacity, withinTimeout);
+    }
+
+    /**
+     * This method is used to hash many raw passwords in parallel on the bulk hashing pool, within the bulk timeout.
+     * The request is rejected up front when the bulk queue cannot take all of its passwords,
+     * and the hashes left are cancelled when the timeout expires.
+     *
+     * @param rawPasswords
+     * @return List<String> the hashes in the order of the raw passwords
+     */
+    public List<String> encodeAll(List<String> rawPasswords) {
+        if (rawPasswords.size() > bulkExecutor.getQueue().remainingCapacity()) {
+            log.warn("Bulk password hashing queue cannot take {} passwords, rejecting the bulk request", rawPasswords.size());
+            throw new TooManyRequestsException("The authentication service is busy", retryAfterSeconds);
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(bulkTimeoutMs);
+        List<Future<String>> futures = new ArrayList<>(rawPasswords.size());
+        try {
+            for (String rawPassword : rawPasswords) {
+                futures.add(bulkExecutor.submit(() -> passwordEncoder.encode(rawPassword)));
+            }
+
+            List<String> hashes = new ArrayList<>(futures.size());
+            for (Future<String> future : futures) {
+                hashes.add(future.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS));
+            }
+            return hashes;
+        } catch (RejectedExecutionException e) {
+            log.warn("Bulk password hashing queue is full, rejecting the bulk request");
+            throw new TooManyRequestsException("The authentication service is busy", retryAfterSeconds);
+        } catch (TimeoutException e) {
+            log.warn("Bulk password hashing of {} passwords did not finish within {}ms", rawPasswords.size(), bulkTimeoutMs);
+            throw new TooManyRequestsException("The authentication service is busy", retryAfterSeconds);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing the passwords", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
+
+    /**
+     * This method is used to verify the raw password against the stored hash on the password hashing pool
+     *
+     * @param rawPassword
+     * @param encodedPassword
+     * @return boolean
+     */
+    public boolean matches(String rawPassword, String encodedPassword) {
+        return execute(() -> passwordEncoder.matches(rawPassword, encodedPassword));
+    }
+
+    /**
+     * This method is used to check whether the stored hash uses an outdated algorithm or work factor
+     *
+     * @param encodedPassword
+     * @return boolean
+     */
+    public boolean upgradeEncoding(String encodedPassword) {
+        return passwordEncoder.upgradeEncoding(encodedPassword);
+    }
+
+    /**
+     * This method is used to run the hashing task on the bounded pool.
+     * The request is rejected fast when the queue is full instead of waiting for a free thread.
+     *
+     * @param task
+     * @return T
+     */
+    private <T> T execute(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            log.warn("Password hashing queue is full, rejecting the request");
+            throw new TooManyRequestsException("The authentication service is busy", retryAfterSeconds);
+        }
+
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new TooManyRequestsException("The authentication service is busy", retryAfterSeconds);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing the password", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
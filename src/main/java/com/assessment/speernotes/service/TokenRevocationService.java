@@ -0,0 +1,156 @@
+package com.assessment.speernotes.service;
+
+import com.assessment.speernotes.model.RevokedToken;
+import com.assessment.speernotes.repository.RevokedTokensRepository;
+import com.assessment.speernotes.repository.UsersRepository;
+import com.assessment.speernotes.utils.BloomFilter;
+import com.assessment.speernotes.utils.JwtUtil;
+import io.jsonwebtoken.Claims;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+@Service
+@Slf4j
+public class TokenRevocationService {
+    private final UsersRepository userRepository;
+    private final RevokedTokensRepository revokedTokensRepository;
+
+    @Value("${token-revocation.expected-revocations:10000}")
+    long expectedRevocations;
+
+    @Value("${token-revocation.false-positive-rate:0.0001}")
+    double falsePositiveRate;
+
+    // Null until the first rebuild, every token id is looked up in the store meanwhile
+    private volatile BloomFilter revokedTokenIds;
+
+    // Revocations of this node which the running rebuild might have missed, with the time they were stored
+    private final Map<String, Long> recentRevocations = new ConcurrentHashMap<>();
+
+    public TokenRevocationService(UsersRepository userRepository, RevokedTokensRepository revokedTokensRepository) {
+        this.userRepository = userRepository;
+        this.revokedTokensRepository = revokedTokensRepository;
+    }
+
+    /**
+     * This method is used to verify whether the verified token was revoked.
+     * The token id is checked against the Bloom filter first, and only possible matches are looked up in the store.
+     * The token version is compared with the current version of the user, read by id without the user cache
+     * so that logging out everywhere takes effect on every node at once.
+     * Tokens issued without an id or a version claim are not checked for it.
+     *
+     * @param claims
+     * @return boolean
+     */
+    public boolean isRevoked(Claims claims) {
+        return isTokenIdRevoked(claims) || isTokenVersionRevoked(claims);
+    }
+
+    /**
+     * This method is used to revoke the single token until its expiry
+     *
+     * @param claims
+     * @return boolean false if the token carries no id and cannot be revoked alone
+     */
+    public boolean revoke(Claims claims) {
+        String tokenId = claims.getId();
+        if (tokenId == null) {
+            return false;
+        }
+
+        log.info("Revoke the token {} of the email {}", tokenId, claims.getSubject());
+        revokedTokensRepository.save(new RevokedToken(tokenId, claims.get(JwtUtil.CLAIM_USER_ID, String.class), claims.getExpiration()));
+        recentRevocations.put(tokenId, System.currentTimeMillis());
+
+        BloomFilter filter = revokedTokenIds;
+        if (filter != null) {
+            filter.put(tokenId);
+        }
+        return true;
+    }
+
+    /**
+     * This method is used to rebuild the Bloom filter from the revoked tokens which have not expired yet.
+     * It also picks up the revocations made by the other nodes and drops the expired ones.
+     */
+    @Scheduled(fixedDelayString = "${token-revocation.rebuild-interval-ms:60000}")
+    public void rebuildFilter() {
+        long startedAt = System.currentTimeMillis();
+        List<String> tokenIds = new ArrayList<>();
+        try (Stream<RevokedToken> revokedTokens = revokedTokensRepository.streamActiveTokenIds(new Date(startedAt))) {
+            revokedTokens.forEach(revokedToken -> tokenIds.add(revokedToken.getId()));
+        }
+
+        // Leave headroom so the false positive rate holds until the next rebuild
+        BloomFilter filter = new BloomFilter(Math.max(expectedRevocations, tokenIds.size() * 2L), falsePositiveRate);
+        tokenIds.forEach(filter::put);
+        revokedTokenIds = filter;
+
+        // Revocations stored after the query started are not in the result, add them to the new filter
+        recentRevocations.forEach((tokenId, revokedAt) -> {
+            filter.put(tokenId);
+            if (revokedAt < startedAt) {
+                recentRevocations.remove(tokenId, revokedAt);
+            }
+        });
+        log.debug("Rebuilt the revoked token filter with {} tokens", tokenIds.size());
+    }
+
+    /**
+     * This method is used to check whether the token id was revoked.
+     * Most tokens are answered by the Bloom filter without reading the store.
+     *
+     * @param claims
+     * @return boolean
+     */
+    private boolean isTokenIdRevoked(Claims claims) {
+        String tokenId = claims.getId();
+        if (tokenId == null) {
+            return false;
+        }
+
+        BloomFilter filter = revokedTokenIds;
+        if (filter != null && !filter.mightContain(tokenId)) {
+            return false;
+        }
+
+        boolean revoked = revokedTokensRepository.existsById(tokenId);
+        if (revoked) {
+            log.info("Rejected revoked token {}", tokenId);
+        }
+        return revoked;
+    }
+
+    /**
+     * This method is used to check whether the token version is older than the current version of the user.
+     * The version is read from the store on each request, as a cached user would keep the revoked tokens working
+     * on the other nodes until it expires.
+     *
+     * @param claims
+     * @return boolean
+     */
+    private boolean isTokenVersionRevoked(Claims claims) {
+        String userId = claims.get(JwtUtil.CLAIM_USER_ID, String.class);
+        Object version = claims.get(JwtUtil.CLAIM_TOKEN_VERSION);
+        if (userId == null || !(version instanceof Number tokenVersion)) {
+            return false;
+        }
+
+        boolean revoked = userRepository.findTokenVersionById(userId)
+                .map(user -> user.getTokenVersion() != tokenVersion.longValue())
+                .orElse(true);
+        if (revoked) {
+            log.info("Rejected revoked token for the user {}", userId);
+        }
+        return revoked;
+    }
+}
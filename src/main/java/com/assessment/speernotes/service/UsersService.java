@@ -1,20 +1,26 @@
 package com.assessment.speernotes.service;
 
 import com.assessment.speernotes.exceptions.AuthenticationException;
+import com.assessment.speernotes.exceptions.TooManyRequestsException;
 import com.assessment.speernotes.exceptions.UserException;
 import com.assessment.speernotes.model.User;
+import com.assessment.speernotes.model.UserPrincipal;
 import com.assessment.speernotes.model.dto.UserAuthDto;
+import com.assessment.speernotes.model.dto.UserProvisioningResultDto;
 import com.assessment.speernotes.repository.UsersRepository;
 import com.assessment.speernotes.utils.JwtUtil;
 import com.assessment.speernotes.utils.ConvertorUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
 
-import java.util.Optional;
+import java.util.*;
 
 @Service
 @Slf4j
@@ -22,14 +28,20 @@ public class UsersService {
     private final UsersRepository userRepository;
     private final JwtUtil jwtUtil;
     private final ConvertorUtil convertorUtil;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashingService;
+
+    @Value("${users.provisioning.batch-size:500}")
+    int provisioningBatchSize;
+
+    @Value("${users.provisioning.max-users:1000}")
+    int provisioningMaxUsers;
 
     @Autowired
-    public UsersService(UsersRepository userRepository, JwtUtil jwtUtil, ConvertorUtil convertorUtil, PasswordEncoder passwordEncoder) {
+    public UsersService(UsersRepository userRepository, JwtUtil jwtUtil, ConvertorUtil convertorUtil, PasswordHashingService passwordHashingService) {
         this.userRepository = userRepository;
         this.jwtUtil = jwtUtil;
         this.convertorUtil = convertorUtil;
-        this.passwordEncoder = passwordEncoder;
+        this.passwordHashingService = passwordHashingService;
     }
 
     /**
@@ -47,6 +59,24 @@ public class UsersService {
         }
     }
 
+    /**
+     * This method is used to return the principal of the authenticated user.
+     * The principal resolved by the authentication filter already carries the user id, so no lookup is done for it.
+     *
+     * @return UserPrincipal principal
+     */
+    public UserPrincipal getAuthenticatedPrincipal() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        Object principal = authentication == null ? null : authentication.getPrincipal();
+        if (principal instanceof UserPrincipal userPrincipal) {
+            return userPrincipal;
+        } else if (principal instanceof UserDetails userDetails) {
+            return UserPrincipal.from(findUserByEmail(userDetails.getUsername()));
+        } else {
+            throw new AuthenticationException();
+        }
+    }
+
     /**
      * This method is used to find the user by email.
      * It returns the Optional<User>, so if the email is present it will contain the user otherwise it will be null
@@ -68,12 +98,7 @@ public class UsersService {
      */
     public boolean isUserPresent(String email) {
         log.info("Verify whether the email {} associated with an existing user", email);
-        try {
-            this.findUserByEmail(email);
-            return true;
-        } catch (Exception e) {
-            return false;
-        }
+        return userRepository.findByEmail(email).isPresent();
     }
 
     /**
@@ -86,28 +111,130 @@ public class UsersService {
      */
     boolean isPasswordMatching(User user, User existingUser) {
         log.info("Verify whether the password is matching for the email {}", user.getEmail());
-        return passwordEncoder.matches(user.getPassword(), existingUser.getPassword());
+        return passwordHashingService.matches(user.getPassword(), existingUser.getPassword());
+    }
+
+    /**
+     * This method is used to retrieve the ids of the notes shared with the user
+     *
+     * @param userId
+     * @return Set<String>
+     */
+    public Set<String> getSharedNoteIds(String userId) {
+        return userRepository.findSharedNotesById(userId)
+                .map(User::getSharedNotes)
+                .orElse(Collections.emptySet());
+    }
+
+    /**
+     * This method is used to read the shared notes and the notes generation of the user, which scope the searches of the user
+     *
+     * @param userId
+     * @return User holding only the shared notes and the notes generation, not to be saved
+     */
+    public User getNotesScope(String userId) {
+        return userRepository.findSharedNotesById(userId).orElseGet(User::new);
+    }
+
+    /**
+     * This method is used to get the notes generation of the user, bumped on every change of the notes
+     * of the user or shared with the user
+     *
+     * @param userId
+     * @return long, 0 if the user is not found
+     */
+    public long getNotesGeneration(String userId) {
+        return userRepository.findNotesGenerationById(userId).map(User::getNotesGeneration).orElse(0L);
+    }
+
+    /**
+     * This method is used to record a change of the note, invalidating the cached searches of its owner
+     * and of the users it is shared with
+     *
+     * @param ownerId
+     * @param noteId
+     */
+    public void notesChanged(String ownerId, String noteId) {
+        userRepository.incrementNotesGeneration(ownerId, noteId);
     }
 
     /**
-     * This method is used to save the user into the mongo DB
+     * This method is used to share the note with the user.
+     * The note id is added in place in the DB, and the cached lookups of the user are invalidated.
+     *
      * @param user
+     * @param noteId
+     * @return boolean
      */
-    public void saveUser(User user) {
-        userRepository.save(user);
+    public boolean shareNoteWithUser(User user, String noteId) {
+        return userRepository.addSharedNote(user, noteId);
     }
 
     /**
      * This method is used to create the user into the DB.
+     * The user is inserted directly, and an existing email is detected by the unique email index.
      *
      * @param userAuthDto
+     * @return boolean false if the email already exists
      */
-    public void createUser(UserAuthDto userAuthDto) {
+    public boolean createUser(UserAuthDto userAuthDto) {
         log.info("Create a new user for the email {}", userAuthDto.getEmail());
         User user = convertorUtil.convertUserAuthDtoToUser(userAuthDto);
-        log.info(String.valueOf(user));
-        user.setPassword(passwordEncoder.encode(userAuthDto.getPassword()));
-        saveUser(user);
+        user.setPassword(passwordHashingService.encode(userAuthDto.getPassword()));
+        try {
+            userRepository.insert(user);
+            return true;
+        } catch (DuplicateKeyException e) {
+            log.info("The email {} is associated with an existing user", userAuthDto.getEmail());
+            return false;
+        }
+    }
+
+    /**
+     * This method is used to create many users at once.
+     * The passwords are hashed in parallel and the users are inserted in batches of unordered bulk writes.
+     * Emails which already exist, or repeat in the request, are skipped and returned.
+     *
+     * @param userAuthDtos
+     * @return UserProvisioningResultDto
+     */
+    public UserProvisioningResultDto provisionUsers(List<UserAuthDto> userAuthDtos) {
+        log.info("Provision {} users", userAuthDtos.size());
+        // The passwords of a request have to be hashed within the bulk hashing timeout
+        int maxUsers = Math.min(provisioningMaxUsers, passwordHashingService.getMaxBulkSize());
+        if (userAuthDtos.size() > maxUsers) {
+            throw new UserException(userAuthDtos.get(0).getEmail(), "At most " + maxUsers + " users can be provisioned at once");
+        }
+
+        Set<String> existingEmails = new LinkedHashSet<>();
+        Map<String, UserAuthDto> uniqueUsers = new LinkedHashMap<>();
+        for (UserAuthDto userAuthDto : userAuthDtos) {
+            if (!StringUtils.hasText(userAuthDto.getPassword())) {
+                throw new UserException(userAuthDto.getEmail(), "The password is required");
+            }
+            if (uniqueUsers.putIfAbsent(userAuthDto.getEmail(), userAuthDto) != null) {
+                existingEmails.add(userAuthDto.getEmail());
+            }
+        }
+
+        List<UserAuthDto> pending = new ArrayList<>(uniqueUsers.values());
+        List<String> hashes = passwordHashingService.encodeAll(pending.stream().map(UserAuthDto::getPassword).toList());
+
+        List<User> users = new ArrayList<>(pending.size());
+        for (int i = 0; i < pending.size(); i++) {
+            User user = convertorUtil.convertUserAuthDtoToUser(pending.get(i));
+            user.setPassword(hashes.get(i));
+            users.add(user);
+        }
+
+        int created = 0;
+        for (int from = 0; from < users.size(); from += provisioningBatchSize) {
+            List<User> batch = users.subList(from, Math.min(from + provisioningBatchSize, users.size()));
+            Set<String> skipped = userRepository.insertAll(batch);
+            created += batch.size() - skipped.size();
+            existingEmails.addAll(skipped);
+        }
+        return new UserProvisioningResultDto(created, new ArrayList<>(existingEmails));
     }
 
     /**
@@ -121,11 +248,41 @@ public class UsersService {
         User user = convertorUtil.convertUserAuthDtoToUser(userAuthDto);
         User existingUser = this.findUserByEmail(user.getEmail());
         if (this.isPasswordMatching(user, existingUser)) {
-            return jwtUtil.generateToken(user.getEmail());
+            this.upgradePasswordEncoding(user.getPassword(), existingUser);
+            return jwtUtil.generateToken(existingUser);
         }
         return "";
     }
 
+    /**
+     * This method is used to rehash the password with the current encoder when the stored hash is outdated.
+     * The login is not failed when the hashing pool is busy, the upgrade is retried on the next login.
+     *
+     * @param rawPassword
+     * @param existingUser
+     */
+    private void upgradePasswordEncoding(String rawPassword, User existingUser) {
+        if (!passwordHashingService.upgradeEncoding(existingUser.getPassword())) {
+            return;
+        }
+
+        try {
+            log.info("Upgrade the password encoding for the email {}", existingUser.getEmail());
+            userRepository.updatePassword(existingUser, passwordHashingService.encode(rawPassword));
+        } catch (TooManyRequestsException e) {
+            log.warn("Skipped the password encoding upgrade for the email {}: {}", existingUser.getEmail(), e.getMessage());
+        }
+    }
+
+    /**
+     * This method is used to revoke every token issued to the authenticated user
+     */
+    public void revokeAllTokens() {
+        User user = findUserByEmail(getAuthenticatedPrincipal().getEmail());
+        log.info("Revoke all the tokens for the email {}", user.getEmail());
+        userRepository.incrementTokenVersion(user);
+    }
+
     /**
      * This method is used to delete the created user if present
      *
@@ -0,0 +1,56 @@
+package com.assessment.speernotes.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+/**
+ * Picks the BCrypt work factor whose hash time on the current hardware is closest to the target latency
+ * without exceeding it. Every extra round of strength doubles the cost, so the strength is derived from
+ * a single measurement at the minimum strength.
+ */
+@Slf4j
+public final class BCryptStrengthCalibrator {
+    private static final String SAMPLE_PASSWORD = "calibration-password";
+    private static final int SAMPLES = 3;
+
+    private BCryptStrengthCalibrator() {}
+
+    /**
+     * This method is used to calibrate the BCrypt strength for the target latency
+     *
+     * @param targetLatencyMs
+     * @param minStrength
+     * @param maxStrength
+     * @return int
+     */
+    public static int calibrate(long targetLatencyMs, int minStrength, int maxStrength) {
+        double baselineMs = measure(minStrength);
+        int strength = minStrength;
+        while (strength < maxStrength && baselineMs * (1L << (strength + 1 - minStrength)) <= targetLatencyMs) {
+            strength++;
+        }
+
+        log.info("BCrypt hashes at strength {} take {} ms, using strength {} for the target of {} ms",
+                minStrength, String.format("%.1f", baselineMs), strength, targetLatencyMs);
+        return strength;
+    }
+
+    /**
+     * This method is used to measure the fastest hash time in milliseconds at the strength
+     *
+     * @param strength
+     * @return double
+     */
+    static double measure(int strength) {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(strength);
+        encoder.encode(SAMPLE_PASSWORD); // warm up
+
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < SAMPLES; i++) {
+            long start = System.nanoTime();
+            encoder.encode(SAMPLE_PASSWORD);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best / 1_000_000.0;
+    }
+}
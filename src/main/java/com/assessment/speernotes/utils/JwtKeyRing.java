@@ -0,0 +1,126 @@
+package com.assessment.speernotes.utils;
+
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.LocatorAdapter;
+import io.jsonwebtoken.UnsupportedJwtException;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.MacAlgorithm;
+
+import javax.crypto.SecretKey;
+import java.security.Key;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The HMAC keys which are valid for the JWT tokens, decoded once at startup.
+ * Tokens are signed with the active key and carry its id in the kid header, while any key of the ring
+ * verifies the tokens signed with it. Tokens issued without a kid header are verified with the default key.
+ */
+public class JwtKeyRing extends LocatorAdapter<Key> {
+    public static final String DEFAULT_KID = "default";
+
+    private final Map<String, SecretKey> keys;
+    private final Map<String, MacAlgorithm> algorithms = new LinkedHashMap<>();
+    private final String activeKid;
+
+    public JwtKeyRing(Map<String, SecretKey> keys, String activeKid) {
+        if (!keys.containsKey(activeKid)) {
+            throw new IllegalArgumentException("The active JWT key id " + activeKid + " is not in the key ring " + keys.keySet());
+        }
+        this.keys = Map.copyOf(keys);
+        this.activeKid = activeKid;
+        keys.forEach((kid, key) -> algorithms.put(kid, ThreadLocalMacAlgorithm.forKey(key)));
+    }
+
+    /**
+     * This method is used to build the key ring from the default secret and the additional keys.
+     * The additional keys are given as comma separated kid:base64-secret pairs.
+     *
+     * @param defaultSecret
+     * @param additionalKeys
+     * @param activeKid
+     * @return JwtKeyRing
+     */
+    public static JwtKeyRing of(String defaultSecret, String additionalKeys, String activeKid) {
+        Map<String, SecretKey> keys = new LinkedHashMap<>();
+        keys.put(DEFAULT_KID, Keys.hmacShaKeyFor(Decoders.BASE64.decode(defaultSecret)));
+
+        if (additionalKeys != null && !additionalKeys.isBlank()) {
+            for (String entry : additionalKeys.split(",")) {
+                String[] parts = entry.trim().split(":", 2);
+                if (parts.length != 2 || parts[0].isBlank()) {
+                    throw new IllegalArgumentException("Invalid JWT key ring entry, expected kid:base64-secret");
+                }
+                keys.put(parts[0].trim(), Keys.hmacShaKeyFor(Decoders.BASE64.decode(parts[1].trim())));
+            }
+        }
+        return new JwtKeyRing(keys, activeKid);
+    }
+
+    /**
+     * This method is used to retrieve the id of the key which signs the new tokens
+     *
+     * @return String
+     */
+    public String getActiveKid() {
+        return activeKid;
+    }
+
+    /**
+     * This method is used to retrieve the key which signs the new tokens
+     *
+     * @return SecretKey
+     */
+    public SecretKey getActiveKey() {
+        return keys.get(activeKid);
+    }
+
+    /**
+     * This method is used to retrieve the signature algorithm of the active key
+     *
+     * @return MacAlgorithm
+     */
+    public MacAlgorithm getActiveAlgorithm() {
+        return algorithms.get(activeKid);
+    }
+
+    /**
+     * This method is used to retrieve the distinct signature algorithms used by the keys of the ring
+     *
+     * @return Collection<MacAlgorithm>
+     */
+    public Collection<MacAlgorithm> getAlgorithms() {
+        Map<String, MacAlgorithm> byId = new LinkedHashMap<>();
+        algorithms.values().forEach(algorithm -> byId.putIfAbsent(algorithm.getId(), algorithm));
+        return List.copyOf(byId.values());
+    }
+
+    /**
+     * This method is used to retrieve the ids of the keys in the ring
+     *
+     * @return Set<String>
+     */
+    public Set<String> getKeyIds() {
+        return keys.keySet();
+    }
+
+    /**
+     * This method is used to find the verification key from the kid header of the token
+     *
+     * @param header
+     * @return Key
+     */
+    @Override
+    protected Key locate(JwsHeader header) {
+        String kid = header.getKeyId() == null ? DEFAULT_KID : header.getKeyId();
+        SecretKey key = keys.get(kid);
+        if (key == null) {
+            throw new UnsupportedJwtException("Unknown JWT key id " + kid);
+        }
+        return key;
+    }
+}
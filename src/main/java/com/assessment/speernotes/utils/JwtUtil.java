@@ -1,31 +1,85 @@
 package com.assessment.speernotes.utils;
 
+import com.assessment.speernotes.model.User;
+import com.assessment.speernotes.model.UserPrincipal;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
-import io.jsonwebtoken.io.Decoders;
-import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.stereotype.Component;
 
-import javax.crypto.SecretKey;
 import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Component
 public class JwtUtil {
+    public static final String CLAIM_USER_ID = "uid";
+    public static final String CLAIM_ROLES = "roles";
+    public static final String CLAIM_TOKEN_VERSION = "ver";
+
     @Value("${jwt.secret.key}")
     private String secretKey;
 
+    // Additional verification keys as comma separated kid:base64-secret pairs
+    @Value("${jwt.key-ring.keys:}")
+    private String keyRingKeys;
+
+    // Id of the key which signs the new tokens, the secret key is registered as "default"
+    @Value("${jwt.key-ring.active-kid:" + JwtKeyRing.DEFAULT_KID + "}")
+    private String activeKid;
+
+    // Authenticate from the token claims alone, without loading the user
+    @Value("${jwt.claims-auth.enabled:false}")
+    private boolean claimsAuthenticationEnabled;
+
+    // Short lifetime bounding how long a claims-only token outlives a revocation
+    @Value("${jwt.claims-auth.expiration-ms:900000}")
+    private long claimsExpirationTime;
+
+    @Value("${jwt.verified-cache.max-size:10000}")
+    private long verifiedCacheMaxSize;
+
     private final long EXPIRATION_TIME = 86400000; // 1 day
 
+    private final MeterRegistry meterRegistry;
+
+    private JwtKeyRing keyRing;
+    private JwtParser jwtParser;
+    private Cache<String, Claims> verifiedTokens;
+
+    public JwtUtil(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
     /**
-     * Thid method is used to get the secret key
-     *
-     * @return SecretKey
+     * This method is used to decode the key ring and build the parser and the verified token cache once.
+     * The parser looks the key up by the kid header and verifies with a per-thread Mac.
      */
-    private SecretKey getSecretKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(secretKey);
-        return Keys.hmacShaKeyFor(keyBytes);
+    @PostConstruct
+    void init() {
+        keyRing = JwtKeyRing.of(secretKey, keyRingKeys, activeKid);
+        jwtParser = Jwts.parser()
+                .keyLocator(keyRing)
+                .sig().add(keyRing.getAlgorithms()).and()
+                .build();
+        log.info("Loaded the JWT key ring {} signing with the key {}", keyRing.getKeyIds(), keyRing.getActiveKid());
+        verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(verifiedCacheMaxSize)
+                .expireAfter(new ClaimsExpiry())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verifiedTokens, "jwt.verified");
     }
 
     /**
@@ -36,25 +90,99 @@ public class JwtUtil {
      */
     public String generateToken(String email) {
         return Jwts.builder()
+                .header().keyId(keyRing.getActiveKid()).and()
+                .id(UUID.randomUUID().toString())
                 .setSubject(email)
                 .setIssuedAt(new Date())
                 .setExpiration(new Date(System.currentTimeMillis() + EXPIRATION_TIME))
-                .signWith(getSecretKey())
+                .signWith(keyRing.getActiveKey(), keyRing.getActiveAlgorithm())
+                .compact();
+    }
+
+    /**
+     * This method is used to generate the JWT token carrying the user id, authorities and token version as claims
+     *
+     * @param user
+     * @return String
+     */
+    public String generateToken(User user) {
+        List<String> roles = UserPrincipal.from(user).getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .toList();
+        long expirationTime = claimsAuthenticationEnabled ? claimsExpirationTime : EXPIRATION_TIME;
+
+        return Jwts.builder()
+                .header().keyId(keyRing.getActiveKid()).and()
+                .id(UUID.randomUUID().toString())
+                .setSubject(user.getEmail())
+                .claim(CLAIM_USER_ID, user.getId())
+                .claim(CLAIM_ROLES, roles)
+                .claim(CLAIM_TOKEN_VERSION, user.getTokenVersion())
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + expirationTime))
+                .signWith(keyRing.getActiveKey(), keyRing.getActiveAlgorithm())
                 .compact();
     }
 
     /**
-     * This method is used to convert the JWT token to claims object
+     * This method is used to check whether the requests are authenticated from the token claims alone
+     *
+     * @return boolean
+     */
+    public boolean isClaimsAuthenticationEnabled() {
+        return claimsAuthenticationEnabled;
+    }
+
+    /**
+     * This method is used to build the principal from the verified claims.
+     * An empty optional is returned for tokens issued without the user id claim.
+     *
+     * @param claims
+     * @return Optional<UserPrincipal>
+     */
+    public Optional<UserPrincipal> toPrincipal(Claims claims) {
+        String userId = claims.get(CLAIM_USER_ID, String.class);
+        List<?> roles = claims.get(CLAIM_ROLES, List.class);
+        if (userId == null || roles == null) {
+            return Optional.empty();
+        }
+
+        List<SimpleGrantedAuthority> authorities = roles.stream()
+                .map(role -> new SimpleGrantedAuthority(String.valueOf(role)))
+                .toList();
+        return Optional.of(new UserPrincipal(userId, claims.getSubject(), null, authorities));
+    }
+
+    /**
+     * This method is used to convert the JWT token to claims object.
+     * Tokens which were already verified are served from the cache until their expiry.
      *
      * @param token
      * @return Claims
      */
     private Claims extractClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSecretKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+        Claims claims = verifiedTokens.getIfPresent(token);
+        if (claims == null) {
+            claims = jwtParser.parseSignedClaims(token).getPayload();
+            verifiedTokens.put(token, claims);
+        }
+        return claims;
+    }
+
+    /**
+     * This method is used to verify the JWT token and return its claims in a single parse.
+     * An empty optional is returned if the token is invalid or expired.
+     *
+     * @param token
+     * @return Optional<Claims>
+     */
+    public Optional<Claims> verifyToken(String token) {
+        try {
+            return Optional.of(extractClaims(token));
+        } catch (JwtException | IllegalArgumentException e) {
+            log.debug("Rejected JWT token: {}", e.getMessage());
+            return Optional.empty();
+        }
     }
 
     /**
@@ -74,11 +202,31 @@ public class JwtUtil {
      * @return boolean
      */
     public boolean validateToken(String token) {
-        try {
-            Jwts.parser().verifyWith(getSecretKey()).build().parseSignedClaims(token);
-            return true;
-        } catch (JwtException e) {
-            return false;
+        return verifyToken(token).isPresent();
+    }
+
+    /**
+     * Expires every cached token exactly when its exp claim passes
+     */
+    private static class ClaimsExpiry implements Expiry<String, Claims> {
+        @Override
+        public long expireAfterCreate(String token, Claims claims, long currentTime) {
+            Date expiration = claims.getExpiration();
+            if (expiration == null) {
+                return 0;
+            }
+            long remainingMs = expiration.getTime() - System.currentTimeMillis();
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(remainingMs, 0));
+        }
+
+        @Override
+        public long expireAfterUpdate(String token, Claims claims, long currentTime, long currentDuration) {
+            return expireAfterCreate(token, claims, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String token, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
         }
     }
 }
@@ -0,0 +1,105 @@
+package com.assessment.speernotes.utils;
+
+import com.assessment.speernotes.exceptions.PreconditionFailedException;
+import com.assessment.speernotes.model.Note;
+import com.assessment.speernotes.model.NoteFields;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Builds and parses the strong entity tags of the notes. The tag of a note changes with its version and update time,
+ * the tag of a page of notes with the notes generation of the user, which is bumped on every write of the notes.
+ * Both include the requested fields, as the same state has a different representation for other fields.
+ */
+public final class NoteETags {
+    private static final Pattern NOTE_TAG = Pattern.compile("\"(\\d{1,18})-(\\d{1,19})-([0-9a-f]+)\"");
+    // Bytes of the SHA-256 digest of the page kept in its tag
+    private static final int PAGE_DIGEST_BYTES = 12;
+
+    private NoteETags() {
+    }
+
+    /**
+     * This method is used to build the entity tag of the note, the notes created before the versioning are at version 0
+     *
+     * @param version
+     * @param updatedAt
+     * @param fields
+     * @return String
+     */
+    public static String of(Long version, Instant updatedAt, NoteFields fields) {
+        return "\"" + (version == null ? 0 : version) + "-" + (updatedAt == null ? 0 : updatedAt.toEpochMilli())
+                + "-" + fields.key() + "\"";
+    }
+
+    /**
+     * This method is used to build the entity tag of the note
+     *
+     * @param note read with its version and update time
+     * @param fields
+     * @return String
+     */
+    public static String of(Note note, NoteFields fields) {
+        return of(note.getVersion(), note.getUpdatedAt(), fields);
+    }
+
+    /**
+     * This method is used to build the entity tag of a page of the notes of the user.
+     * The page is identified by a truncated SHA-256 digest, so two pages of the user do not share a tag by chance.
+     *
+     * @param userId
+     * @param notesGeneration
+     * @param cursor
+     * @param size
+     * @param fields
+     * @return String
+     */
+    public static String ofPage(String userId, long notesGeneration, String cursor, Integer size, NoteFields fields) {
+        byte[] page = (userId + '\0' + cursor + '\0' + size).getBytes(StandardCharsets.UTF_8);
+        return "\"g" + notesGeneration + "-" + HexFormat.of().formatHex(Arrays.copyOf(sha256(page), PAGE_DIGEST_BYTES))
+                + "-" + fields.key() + "\"";
+    }
+
+    private static byte[] sha256(byte[] bytes) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform implements SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * This method is used to parse the versions of the note the If-Match header is based on.
+     * The header holds a comma separated list of tags, the write goes ahead if the note is at any of their versions.
+     *
+     * @param ifMatch
+     * @return Set<Long>, null if any version matches
+     */
+    public static Set<Long> parseVersions(String ifMatch) {
+        if (ifMatch.trim().equals("*")) {
+            return null;
+        }
+        Set<Long> versions = new LinkedHashSet<>();
+        for (String tag : ifMatch.split(",")) {
+            // Weak tags never match a write, neither do the tags of the pages
+            Matcher matcher = NOTE_TAG.matcher(tag.trim());
+            if (matcher.matches()) {
+                versions.add(Long.parseLong(matcher.group(1)));
+            }
+        }
+        if (versions.isEmpty()) {
+            throw new PreconditionFailedException("The entity tags " + ifMatch.trim() + " do not match the note!");
+        }
+        return versions;
+    }
+}
@@ -0,0 +1,77 @@
+package com.assessment.speernotes.utils;
+
+import com.assessment.speernotes.model.Note;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+@Component
+public class NoteStreamWriter {
+    // Flushed after the first note for an early first byte, then every so many notes
+    private static final int FLUSH_INTERVAL = 100;
+
+    private final ObjectMapper objectMapper;
+    // The flushes are left to the interval, the mapper would otherwise flush the socket after every note
+    private final ObjectWriter noteWriter;
+
+    public NoteStreamWriter(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.noteWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * This method is used to check whether the client accepts newline delimited JSON
+     *
+     * @param accept
+     * @return boolean
+     */
+    public static boolean acceptsNdjson(String accept) {
+        return accept != null && MediaType.parseMediaTypes(accept).stream()
+                .anyMatch(mediaType -> mediaType.isCompatibleWith(MediaType.APPLICATION_NDJSON) && !mediaType.isWildcardType());
+    }
+
+    /**
+     * This method is used to write the notes to the response as they are read from the stream,
+     * as the elements of a JSON array or as newline delimited JSON. Only the note being written is held in memory,
+     * and the stream is closed once written, also if the client goes away.
+     *
+     * @param notes
+     * @param ndjson
+     * @return StreamingResponseBody
+     */
+    public StreamingResponseBody write(Stream<Note> notes, boolean ndjson) {
+        return outputStream -> {
+            try (notes; JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream, JsonEncoding.UTF8)) {
+                if (ndjson) {
+                    generator.setRootValueSeparator(null);
+                } else {
+                    generator.writeStartArray();
+                }
+
+                int written = 0;
+                Iterator<Note> iterator = notes.iterator();
+                while (iterator.hasNext()) {
+                    noteWriter.writeValue(generator, iterator.next());
+                    if (ndjson) {
+                        generator.writeRaw('\n');
+                    }
+                    if (++written % FLUSH_INTERVAL == 1) {
+                        generator.flush();
+                    }
+                }
+
+                if (!ndjson) {
+                    generator.writeEndArray();
+                }
+            }
+        };
+    }
+}
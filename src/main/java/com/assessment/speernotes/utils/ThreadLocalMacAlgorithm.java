@@ -0,0 +1,112 @@
+package com.assessment.speernotes.utils;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.MacAlgorithm;
+import io.jsonwebtoken.security.SecretKeyBuilder;
+import io.jsonwebtoken.security.SecureRequest;
+import io.jsonwebtoken.security.SecurityException;
+import io.jsonwebtoken.security.VerifySecureDigestRequest;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * An HMAC signature algorithm which keeps one initialized Mac per thread and key,
+ * instead of looking up and initializing a new Mac for every signed or verified token.
+ * The id, key length and key builder are the ones of the standard HS256, HS384 and HS512 algorithms,
+ * so the tokens are interchangeable with the ones signed by the default implementation.
+ */
+class ThreadLocalMacAlgorithm implements MacAlgorithm {
+    private static final Map<String, ThreadLocalMacAlgorithm> INSTANCES = Map.of(
+            "HmacSHA256", new ThreadLocalMacAlgorithm(Jwts.SIG.HS256, "HmacSHA256"),
+            "HmacSHA384", new ThreadLocalMacAlgorithm(Jwts.SIG.HS384, "HmacSHA384"),
+            "HmacSHA512", new ThreadLocalMacAlgorithm(Jwts.SIG.HS512, "HmacSHA512")
+    );
+
+    private final MacAlgorithm standard;
+    private final String jcaName;
+    private final ThreadLocal<Map<SecretKey, Mac>> macs = ThreadLocal.withInitial(IdentityHashMap::new);
+
+    private ThreadLocalMacAlgorithm(MacAlgorithm standard, String jcaName) {
+        this.standard = standard;
+        this.jcaName = jcaName;
+    }
+
+    /**
+     * This method is used to find the algorithm matching the strength of the HMAC key
+     *
+     * @param key
+     * @return ThreadLocalMacAlgorithm
+     */
+    static ThreadLocalMacAlgorithm forKey(SecretKey key) {
+        ThreadLocalMacAlgorithm algorithm = INSTANCES.get(key.getAlgorithm());
+        if (algorithm == null) {
+            throw new IllegalArgumentException("Unsupported JWT key algorithm " + key.getAlgorithm()
+                    + ", expected one of " + INSTANCES.keySet());
+        }
+        return algorithm;
+    }
+
+    @Override
+    public String getId() {
+        return standard.getId();
+    }
+
+    @Override
+    public int getKeyBitLength() {
+        return standard.getKeyBitLength();
+    }
+
+    @Override
+    public SecretKeyBuilder key() {
+        return standard.key();
+    }
+
+    @Override
+    public byte[] digest(SecureRequest<InputStream, SecretKey> request) throws SecurityException {
+        Mac mac = macFor(request.getKey());
+        byte[] buffer = new byte[1024];
+        try (InputStream payload = request.getPayload()) {
+            int read;
+            while ((read = payload.read(buffer)) != -1) {
+                mac.update(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            mac.reset();
+            throw new SecurityException("Unable to read the JWT payload", e);
+        }
+        return mac.doFinal();
+    }
+
+    @Override
+    public boolean verify(VerifySecureDigestRequest<SecretKey> request) throws SecurityException {
+        return MessageDigest.isEqual(digest(request), request.getDigest());
+    }
+
+    /**
+     * This method is used to retrieve the Mac of the current thread which is initialized with the key
+     *
+     * @param key
+     * @return Mac
+     */
+    private Mac macFor(SecretKey key) {
+        if (!jcaName.equals(key.getAlgorithm())) {
+            throw new SecurityException("The key is not valid for the " + getId() + " algorithm");
+        }
+        return macs.get().computeIfAbsent(key, k -> {
+            try {
+                Mac mac = Mac.getInstance(jcaName);
+                mac.init(k);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new SecurityException("Unable to initialize the " + jcaName + " Mac", e);
+            }
+        });
+    }
+}
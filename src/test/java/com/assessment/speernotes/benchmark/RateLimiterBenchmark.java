@@ -0,0 +1,105 @@
+package com.assessment.speernotes.benchmark;
+
+import com.assessment.speernotes.requests.ratelimit.GcraRateLimiter;
+import com.assessment.speernotes.requests.ratelimit.RateLimiter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the lock-free GCRA limiter with the previous synchronized fixed window counter under contention,
+ * with all the threads on a single key (one busy IP) and spread over many keys.
+ * The throttle sleep of the previous implementation is left out, it would only measure the sleep.
+ *
+ * Run with: mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test "-Dexec.args=-cp %classpath com.assessment.speernotes.benchmark.RateLimiterBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Threads(8)
+@Fork(1)
+public class RateLimiterBenchmark {
+    private static final int KEYS = 1024;
+
+    @Param({"single-key", "many-keys"})
+    public String contention;
+
+    private GcraRateLimiter gcraRateLimiter;
+    private SynchronizedWindowLimiter synchronizedWindowLimiter;
+    private String[] keys;
+
+    @Setup
+    public void setup() {
+        // A single busy key spends its budget quickly, so most of its calls measure the rejection path as under abuse
+        gcraRateLimiter = new GcraRateLimiter(60_000, SynchronizedWindowLimiter.MAX_REQUESTS, SynchronizedWindowLimiter.MAX_REQUESTS * 2, KEYS * 4L);
+        synchronizedWindowLimiter = new SynchronizedWindowLimiter();
+        keys = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = "10.0." + (i / 256) + "." + (i % 256);
+        }
+    }
+
+    private String key() {
+        return "single-key".equals(contention) ? keys[0] : keys[ThreadLocalRandom.current().nextInt(KEYS)];
+    }
+
+    @Benchmark
+    public Object gcra() {
+        return gcraRateLimiter.acquire(key());
+    }
+
+    @Benchmark
+    public Object synchronizedWindow() {
+        return synchronizedWindowLimiter.acquire(key());
+    }
+
+    /**
+     * The previous RateLimitInterceptor bookkeeping: putIfAbsent with a new entry, get, and a monitor per key
+     */
+    static class SynchronizedWindowLimiter {
+        private static final long TIME_WINDOW_MS = 60 * 1000;
+        private static final int MAX_REQUESTS = 30_000;
+
+        private final Map<String, UserRequestInfo> requestCounts = new ConcurrentHashMap<>();
+
+        RateLimiter.Decision acquire(String userIp) {
+            Instant now = Instant.now();
+            requestCounts.putIfAbsent(userIp, new UserRequestInfo());
+            UserRequestInfo userInfo = requestCounts.get(userIp);
+
+            synchronized (userInfo) {
+                if (now.toEpochMilli() - userInfo.startTime.toEpochMilli() > TIME_WINDOW_MS) {
+                    userInfo.startTime = now;
+                    userInfo.requestCount = 0;
+                }
+                userInfo.requestCount++;
+                if (userInfo.requestCount > MAX_REQUESTS * 2) {
+                    return RateLimiter.Decision.REJECTED;
+                }
+                return userInfo.requestCount > MAX_REQUESTS ? RateLimiter.Decision.THROTTLED : RateLimiter.Decision.ALLOWED;
+            }
+        }
+
+        private static class UserRequestInfo {
+            private Instant startTime = Instant.now();
+            private int requestCount;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(RateLimiterBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
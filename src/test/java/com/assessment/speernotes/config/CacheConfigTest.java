@@ -0,0 +1,138 @@
+package com.assessment.speernotes.config;
+
+import com.assessment.speernotes.bean.CacheConfig;
+import com.assessment.speernotes.model.User;
+import com.assessment.speernotes.repository.UsersRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@SpringJUnitConfig(CacheConfigTest.Config.class)
+public class CacheConfigTest {
+    private static final UsersRepository delegate = mock(UsersRepository.class);
+
+    @Configuration
+    @Import(CacheConfig.class)
+    static class Config {
+        @Bean
+        static ConversionService conversionService() {
+            return ApplicationConversionService.getSharedInstance();
+        }
+
+        @Bean
+        UsersRepository usersRepository() {
+            return delegate;
+        }
+    }
+
+    @Autowired
+    private UsersRepository usersRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @BeforeEach
+    public void setUp() {
+        reset(delegate);
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+    }
+
+    @Test
+    public void testFindByEmail_RepeatedLookup_ServedFromCache() {
+        User user = new User("testuser", "test@example.com", "password");
+        user.setId("1");
+        when(delegate.findByEmail("test@example.com")).thenReturn(Optional.of(user));
+
+        assertEquals(user, usersRepository.findByEmail("test@example.com").orElseThrow());
+        assertEquals(user, usersRepository.findByEmail("test@example.com").orElseThrow());
+
+        verify(delegate, times(1)).findByEmail("test@example.com");
+    }
+
+    @Test
+    public void testFindByEmail_MissingUser_NegativelyCached() {
+        when(delegate.findByEmail("missing@example.com")).thenReturn(Optional.empty());
+
+        assertTrue(usersRepository.findByEmail("missing@example.com").isEmpty());
+        assertTrue(usersRepository.findByEmail("missing@example.com").isEmpty());
+
+        verify(delegate, times(1)).findByEmail("missing@example.com");
+    }
+
+    @Test
+    public void testSave_EvictsCachedLookups() {
+        User user = new User("testuser", "test@example.com", "password");
+        when(delegate.findByEmail("test@example.com")).thenReturn(Optional.empty()).thenReturn(Optional.of(user));
+
+        assertTrue(usersRepository.findByEmail("test@example.com").isEmpty());
+        usersRepository.save(user);
+
+        assertTrue(usersRepository.findByEmail("test@example.com").isPresent(), "Signup should clear the negative entry");
+        verify(delegate, times(2)).findByEmail("test@example.com");
+    }
+
+    @Test
+    public void testDelete_EvictsCachedLookups() {
+        User user = new User("testuser", "test@example.com", "password");
+        user.setId("1");
+        when(delegate.findById("1")).thenReturn(Optional.of(user));
+
+        usersRepository.findById("1");
+        usersRepository.delete(user);
+        usersRepository.findById("1");
+
+        verify(delegate, times(2)).findById("1");
+    }
+
+    @Test
+    public void testFindById_CallerChangesCopy_CachedUserUnchanged() {
+        User user = new User("testuser", "test@example.com", "password");
+        user.setId("1");
+        when(delegate.findById("1")).thenReturn(Optional.of(user));
+
+        User first = usersRepository.findById("1").orElseThrow();
+        first.setPassword("changed");
+        first.getRoles().add("ADMIN");
+        User second = usersRepository.findById("1").orElseThrow();
+
+        assertEquals("password", second.getPassword());
+        assertTrue(second.getRoles().isEmpty());
+        assertNotSame(first, second);
+        verify(delegate, times(1)).findById("1");
+    }
+
+    @Test
+    public void testUserWrites_EvictCachedLookups() {
+        User user = new User("testuser", "test@example.com", "password");
+        user.setId("1");
+        when(delegate.findById("1")).thenReturn(Optional.of(user));
+        when(delegate.findByEmail("test@example.com")).thenReturn(Optional.of(user));
+
+        usersRepository.findById("1");
+        usersRepository.findByEmail("test@example.com");
+        usersRepository.updatePassword(user, "upgraded");
+        usersRepository.findById("1");
+        usersRepository.findByEmail("test@example.com");
+        usersRepository.incrementTokenVersion(user);
+        usersRepository.findById("1");
+        usersRepository.findByEmail("test@example.com");
+        usersRepository.addSharedNote(user, "note1");
+        usersRepository.findById("1");
+        usersRepository.findByEmail("test@example.com");
+
+        verify(delegate, times(4)).findById("1");
+        verify(delegate, times(4)).findByEmail("test@example.com");
+    }
+}
@@ -149,6 +149,66 @@ public class NotesControllerTest {
         assertTrue(deleteResponse.getBody().contains("Note " + noteId + " is deleted successfully."));
     }
 
+    @Test
+    void testGetNoteById_NotModifiedSinceETag() {
+        NoteDto noteDto = new NoteDto("Test Note", "This is a test note");
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(jwtToken);
+        ResponseEntity<Note> createResponse = restTemplate.exchange("/api/notes", HttpMethod.POST, new HttpEntity<>(noteDto, headers), Note.class);
+        String noteId = createResponse.getBody().getId();
+
+        ResponseEntity<Note> getResponse = restTemplate.exchange("/api/notes/{id}", HttpMethod.GET, new HttpEntity<>(headers), Note.class, noteId);
+        String eTag = getResponse.getHeaders().getETag();
+        assertNotNull(eTag);
+        assertEquals(createResponse.getHeaders().getETag(), eTag);
+
+        HttpHeaders conditionalHeaders = new HttpHeaders();
+        conditionalHeaders.setBearerAuth(jwtToken);
+        conditionalHeaders.setIfNoneMatch(eTag);
+        ResponseEntity<Note> notModified = restTemplate.exchange("/api/notes/{id}", HttpMethod.GET, new HttpEntity<>(conditionalHeaders), Note.class, noteId);
+        assertEquals(HttpStatus.NOT_MODIFIED, notModified.getStatusCode());
+        assertNull(notModified.getBody());
+
+        // The listing changes with the note
+        ResponseEntity<List> listResponse = restTemplate.exchange("/api/notes", HttpMethod.GET, new HttpEntity<>(headers), List.class);
+        conditionalHeaders.setIfNoneMatch(listResponse.getHeaders().getETag());
+        assertEquals(HttpStatus.NOT_MODIFIED, restTemplate.exchange("/api/notes", HttpMethod.GET, new HttpEntity<>(conditionalHeaders), List.class).getStatusCode());
+        restTemplate.exchange("/api/notes/{id}", HttpMethod.PUT, new HttpEntity<>(new NoteDto("Updated Test Note", null), headers), Note.class, noteId);
+        assertEquals(HttpStatus.OK, restTemplate.exchange("/api/notes", HttpMethod.GET, new HttpEntity<>(conditionalHeaders), List.class).getStatusCode());
+    }
+
+    @Test
+    void testUpdateNote_StaleIfMatchFails() {
+        NoteDto noteDto = new NoteDto("Test Note", "This is a test note");
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(jwtToken);
+        ResponseEntity<Note> createResponse = restTemplate.exchange("/api/notes", HttpMethod.POST, new HttpEntity<>(noteDto, headers), Note.class);
+        String noteId = createResponse.getBody().getId();
+        String eTag = createResponse.getHeaders().getETag();
+
+        HttpHeaders conditionalHeaders = new HttpHeaders();
+        conditionalHeaders.setBearerAuth(jwtToken);
+        conditionalHeaders.setIfMatch(eTag);
+        ResponseEntity<Note> updateResponse = restTemplate.exchange("/api/notes/{id}", HttpMethod.PUT,
+                new HttpEntity<>(new NoteDto("Updated Test Note", null), conditionalHeaders), Note.class, noteId);
+        assertEquals(HttpStatus.OK, updateResponse.getStatusCode());
+        assertNotEquals(eTag, updateResponse.getHeaders().getETag());
+
+        // The tag read before the update no longer matches
+        ResponseEntity<String> staleUpdate = restTemplate.exchange("/api/notes/{id}", HttpMethod.PUT,
+                new HttpEntity<>(new NoteDto("Lost Update", null), conditionalHeaders), String.class, noteId);
+        assertEquals(HttpStatus.PRECONDITION_FAILED, staleUpdate.getStatusCode());
+        ResponseEntity<String> staleDelete = restTemplate.exchange("/api/notes/{id}", HttpMethod.DELETE,
+                new HttpEntity<>(conditionalHeaders), String.class, noteId);
+        assertEquals(HttpStatus.PRECONDITION_FAILED, staleDelete.getStatusCode());
+
+        // A list of tags matches if any of them is current
+        conditionalHeaders.setIfMatch(List.of(eTag, updateResponse.getHeaders().getETag()));
+        ResponseEntity<String> deleteResponse = restTemplate.exchange("/api/notes/{id}", HttpMethod.DELETE,
+                new HttpEntity<>(conditionalHeaders), String.class, noteId);
+        assertEquals(HttpStatus.OK, deleteResponse.getStatusCode());
+    }
+
     @Test
     void testShareNote() {
         // Create a note first
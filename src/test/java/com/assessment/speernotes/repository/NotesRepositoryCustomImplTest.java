@@ -0,0 +1,81 @@
+package com.assessment.speernotes.repository;
+
+import com.assessment.speernotes.model.Note;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class NotesRepositoryCustomImplTest {
+    private MongoTemplate mongoTemplate;
+    private NotesRepositoryCustomImpl notesRepository;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        notesRepository = new NotesRepositoryCustomImpl(mongoTemplate);
+    }
+
+    private static Note note(String id, String userId, double score) {
+        Note note = new Note();
+        note.setId(id);
+        note.setUserId(userId);
+        note.setScore(score);
+        return note;
+    }
+
+    @Test
+    void testSearchPage_SharedNotesSearchedPerOwnerAndMerged() {
+        // The shared notes of bob and carol, and a note of alice shared with herself
+        when(mongoTemplate.find(any(Query.class), eq(Note.class))).thenReturn(List.of(
+                note("b1", "bob", 0), note("c1", "carol", 0), note("b2", "bob", 0), note("a9", "alice", 0)));
+        when(mongoTemplate.aggregate(any(TypedAggregation.class), eq(Note.class))).thenReturn(
+                new AggregationResults<>(List.of(note("a2", "alice", 3), note("a1", "alice", 1)), new Document()),
+                new AggregationResults<>(List.of(note("b2", "bob", 2), note("b1", "bob", 1)), new Document()),
+                new AggregationResults<>(List.of(note("c1", "carol", 3)), new Document()));
+
+        List<Note> page = notesRepository.searchPage("keyword", "alice", Set.of("b1", "b2", "c1", "a9"), null, 4, "id");
+
+        assertEquals(List.of("c1", "a2", "b2", "b1"), page.stream().map(Note::getId).toList());
+        verify(mongoTemplate, times(3)).aggregate(any(TypedAggregation.class), eq(Note.class));
+    }
+
+    @Test
+    void testSearchPage_NoSharedNotes_SingleQuery() {
+        when(mongoTemplate.aggregate(any(TypedAggregation.class), eq(Note.class)))
+                .thenReturn(new AggregationResults<>(List.of(note("a1", "alice", 1)), new Document()));
+
+        assertEquals(1, notesRepository.searchPage("keyword", "alice", Set.of(), null, 10, "id").size());
+
+        verify(mongoTemplate, never()).find(any(Query.class), eq(Note.class));
+        verify(mongoTemplate, times(1)).aggregate(any(TypedAggregation.class), eq(Note.class));
+    }
+
+    @Test
+    void testStreamSearchNotes_MergedByRelevanceAndClosed() {
+        AtomicInteger closed = new AtomicInteger();
+        when(mongoTemplate.find(any(Query.class), eq(Note.class))).thenReturn(List.of(note("b1", "bob", 0)));
+        when(mongoTemplate.aggregateStream(any(TypedAggregation.class), eq(Note.class))).thenReturn(
+                Stream.of(note("a2", "alice", 2), note("a1", "alice", 1)).onClose(closed::incrementAndGet),
+                Stream.of(note("b1", "bob", 2)).onClose(closed::incrementAndGet));
+
+        try (Stream<Note> notes = notesRepository.streamSearchNotes("keyword", "alice", Set.of("b1"), "id")) {
+            // Equal scores are ordered by id, as the cursor expects
+            assertEquals(List.of("b1", "a2", "a1"), notes.map(Note::getId).toList());
+        }
+        assertEquals(2, closed.get());
+    }
+}
@@ -0,0 +1,322 @@
+package com.assessment.speernotes.repository;
+
+import com.assessment.speernotes.model.Note;
+import com.assessment.speernotes.model.NoteCursor;
+import com.assessment.speernotes.model.RateLimitCounter;
+import com.assessment.speernotes.model.RevokedToken;
+import com.assessment.speernotes.model.User;
+import com.assessment.speernotes.repository.index.IndexRegistry;
+import com.assessment.speernotes.requests.ratelimit.MongoRateLimitCounterStore;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Guards the hot queries against collection scans: the commands the repositories send are captured
+ * from the driver and explained on the declared indexes, and the build fails if a winning plan reads the whole collection.
+ * Every query of the repositories and of the rate limit counter store is covered, the reads as well as the writes
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+public class QueryPlanGuardTest {
+    private static final Set<String> EXPLAINED_COMMANDS = Set.of("find", "aggregate", "findAndModify", "update", "delete");
+    private static final ThreadLocal<List<BsonDocument>> CAPTURED = new ThreadLocal<>();
+
+    @TestConfiguration
+    static class CommandCaptureConfig {
+        // Only the commands sent by the test thread are captured, not the ones of the background jobs
+        @Bean
+        MongoClientSettingsBuilderCustomizer commandCapture() {
+            return builder -> builder.addCommandListener(new CommandListener() {
+                @Override
+                public void commandStarted(CommandStartedEvent event) {
+                    List<BsonDocument> commands = CAPTURED.get();
+                    if (commands != null && EXPLAINED_COMMANDS.contains(event.getCommandName())) {
+                        commands.add(event.getCommand().clone());
+                    }
+                }
+            });
+        }
+    }
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private NotesRepository notesRepository;
+
+    @Autowired
+    private UsersRepository usersRepository;
+
+    @Autowired
+    private RevokedTokensRepository revokedTokensRepository;
+
+    @Autowired
+    private IndexRegistry indexRegistry;
+
+    private final String userId = new ObjectId().toHexString();
+    private final String noteId = new ObjectId().toHexString();
+
+    @BeforeEach
+    void setUp() {
+        assertTrue(indexRegistry.ensureIndexes(), "The indexes could not be built");
+    }
+
+    @Test
+    void testNotesPageByUser() {
+        assertNoCollectionScan(() -> notesRepository.findPageByUserId(userId, null, 51, "id", "title", "updatedAt"));
+    }
+
+    @Test
+    void testNotesPageByUserAfterCursor() {
+        assertNoCollectionScan(() -> notesRepository.findPageByUserId(userId, new NoteCursor(Instant.now(), noteId), 51, "id", "updatedAt"));
+    }
+
+    @Test
+    void testNotesByUser() {
+        assertNoCollectionScan(() -> {
+            notesRepository.findByUserId(userId);
+            try (Stream<Note> notes = notesRepository.streamByUserId(userId, "title")) {
+                notes.count();
+            }
+        });
+    }
+
+    @Test
+    void testNotesSearch() {
+        assertNoCollectionScan(() -> {
+            notesRepository.searchPage("keyword", userId, Set.of(noteId), null, 10, "id", "title");
+            try (Stream<Note> notes = notesRepository.streamSearchNotes("keyword", userId, Set.of(noteId), "id")) {
+                notes.count();
+            }
+        });
+    }
+
+    @Test
+    void testNotesSearchBoundedByOwner() {
+        // A note of another user shared with the user, searched in a query of its own
+        Note shared = new Note();
+        shared.setId(new ObjectId().toHexString());
+        shared.setUserId(new ObjectId().toHexString());
+        shared.setTitle("keyword");
+        shared.setContent("keyword");
+        mongoTemplate.insert(shared);
+        try {
+            List<BsonDocument> commands = capture(() -> assertEquals(List.of(shared.getId()),
+                    notesRepository.searchPage("keyword", userId, Set.of(shared.getId()), null, 10, "id").stream().map(Note::getId).toList()));
+
+            List<BsonDocument> searches = commands.stream().filter(command -> command.containsKey("aggregate")).toList();
+            assertEquals(2, searches.size());
+            for (BsonDocument search : searches) {
+                List<Document> stages = winningPlan(search);
+                // The text index is only entered under the owner, never across the notes of every user
+                assertTrue(stages.stream().anyMatch(QueryPlanGuardTest::boundedByOwner),
+                        "The search " + search.toJson() + " is not bounded by the owner: " + stages);
+            }
+        } finally {
+            mongoTemplate.remove(shared);
+        }
+    }
+
+    @Test
+    void testUserByEmail() {
+        assertNoCollectionScan(() -> usersRepository.findByEmail(userId + "@example.com"));
+    }
+
+    @Test
+    void testUsersOfNoteForGenerationBump() {
+        assertNoCollectionScan(() -> usersRepository.incrementNotesGeneration(userId, noteId));
+    }
+
+    @Test
+    void testNoteAndUserById() {
+        assertNoCollectionScan(() -> {
+            notesRepository.findProjectedById(noteId, "title");
+            usersRepository.findById(userId);
+            usersRepository.findSharedNotesById(userId);
+            usersRepository.findNotesGenerationById(userId);
+            usersRepository.findTokenVersionById(userId);
+        });
+    }
+
+    @Test
+    void testNotesByIds() {
+        assertNoCollectionScan(() -> notesRepository.findProjectedByIds(List.of(noteId, new ObjectId().toHexString()), "id", "title"));
+    }
+
+    @Test
+    void testUserWrites() {
+        User user = user(userId + "@example.com");
+        assertNoCollectionScan(() -> {
+            usersRepository.addSharedNote(user, noteId);
+            usersRepository.incrementTokenVersion(user);
+            usersRepository.updatePassword(user, "encoded");
+        });
+    }
+
+    @Test
+    void testUsersInsertUniquenessUsesEmailIndex() {
+        // Inserts cannot be explained, the duplicate emails are found by the unique index instead of a lookup
+        IndexInfo email = mongoTemplate.indexOps(User.class).getIndexInfo().stream()
+                .filter(index -> index.getName().equals("email")).findFirst().orElseThrow();
+        assertTrue(email.isUnique());
+
+        String address = userId + "@example.com";
+        try {
+            List<BsonDocument> commands = capture(() -> assertEquals(Set.of(address),
+                    usersRepository.insertAll(List.of(user(address), user(address)))));
+            assertTrue(commands.isEmpty(), "The insert of the users sent queries: " + commands);
+        } finally {
+            mongoTemplate.remove(query(where("email").is(address)), User.class);
+        }
+    }
+
+    @Test
+    void testActiveRevokedTokens() {
+        assertNoCollectionScan(() -> {
+            try (Stream<RevokedToken> revokedTokens = revokedTokensRepository.streamActiveTokenIds(new Date())) {
+                revokedTokens.count();
+            }
+        });
+    }
+
+    @Test
+    void testRateLimitCounterLease() {
+        MongoRateLimitCounterStore counterStore = new MongoRateLimitCounterStore(mongoTemplate);
+        String key = "ip:" + userId;
+        try {
+            assertNoCollectionScan(() -> counterStore.add(key, 0, 60_000, 1));
+        } finally {
+            mongoTemplate.remove(query(where("_id").is(key + "@0")), RateLimitCounter.class);
+        }
+    }
+
+    @Test
+    void testNoteUpdate() {
+        assertNoCollectionScan(() -> notesRepository.updateFields(noteId, userId, 1L, "title", null, Instant.now()));
+    }
+
+    @Test
+    void testNoteVersionForETagIsIndexOnly() {
+        List<BsonDocument> commands = capture(() -> notesRepository.findVersionById(noteId, userId));
+
+        assertEquals(1, commands.size());
+        List<String> stages = winningStages(commands.get(0));
+        assertFalse(stages.contains("FETCH") || stages.contains("COLLSCAN"), "The entity tag lookup reads the notes: " + stages);
+    }
+
+    private static User user(String email) {
+        User user = new User();
+        user.setId(new ObjectId().toHexString());
+        user.setEmail(email);
+        user.setUsername(email);
+        user.setPassword("password");
+        return user;
+    }
+
+    /**
+     * This method is used to run the repository calls, then explain every command they sent
+     * and fail if a winning plan has a COLLSCAN stage
+     *
+     * @param calls
+     */
+    private void assertNoCollectionScan(Runnable calls) {
+        List<BsonDocument> commands = capture(calls);
+        assertFalse(commands.isEmpty(), "No command was sent");
+        for (BsonDocument command : commands) {
+            List<String> stages = winningStages(command);
+            assertFalse(stages.contains("COLLSCAN"), "The command " + command.toJson() + " scans the collection: " + stages);
+        }
+    }
+
+    private static List<BsonDocument> capture(Runnable calls) {
+        List<BsonDocument> commands = new ArrayList<>();
+        CAPTURED.set(commands);
+        try {
+            calls.run();
+        } finally {
+            CAPTURED.remove();
+        }
+        return commands;
+    }
+
+    private List<String> winningStages(BsonDocument command) {
+        return winningPlan(command).stream().map(stage -> stage.getString("stage")).toList();
+    }
+
+    private List<Document> winningPlan(BsonDocument command) {
+        // The session, cluster time and read preference of the sent command are not part of the query
+        Document explained = new Document();
+        command.forEach((name, value) -> {
+            if (!name.startsWith("$") && !name.equals("lsid") && !name.equals("txnNumber")) {
+                explained.append(name, value);
+            }
+        });
+        Document explain = mongoTemplate.getDb().runCommand(
+                new Document("explain", explained).append("verbosity", "queryPlanner"));
+
+        List<Document> stages = new ArrayList<>();
+        collectWinningStages(explain, stages);
+        assertFalse(stages.isEmpty(), "No plan in the explain of " + command.toJson());
+        return stages;
+    }
+
+    // The text stage shows the equality prefix of the text index, and the index scan starts with it
+    private static boolean boundedByOwner(Document stage) {
+        Object indexPrefix = stage.get("indexPrefix");
+        Object keyPattern = stage.get("keyPattern");
+        return indexPrefix instanceof Document prefix && prefix.containsKey("userId")
+                || "IXSCAN".equals(stage.getString("stage")) && keyPattern instanceof Document keys
+                && "userId".equals(keys.keySet().stream().findFirst().orElse(null));
+    }
+
+    // The winning plans are nested in the stages of the aggregations, the rejected plans are left out
+    private void collectWinningStages(Object explain, List<Document> stages) {
+        if (explain instanceof Document document) {
+            document.forEach((name, value) -> {
+                if (name.equals("winningPlan")) {
+                    collectStages(value, stages);
+                } else if (!name.equals("rejectedPlans")) {
+                    collectWinningStages(value, stages);
+                }
+            });
+        } else if (explain instanceof List<?> values) {
+            values.forEach(value -> collectWinningStages(value, stages));
+        }
+    }
+
+    private void collectStages(Object plan, List<Document> stages) {
+        if (plan instanceof Document stage) {
+            if (stage.containsKey("stage")) {
+                stages.add(stage);
+            }
+            // The stages are nested in inputStage(s), and in queryPlan with the slot based engine
+            stage.values().forEach(value -> collectStages(value, stages));
+        } else if (plan instanceof List<?> inputs) {
+            inputs.forEach(input -> collectStages(input, stages));
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.assessment.speernotes.repository.index;
+
+import com.assessment.speernotes.model.Note;
+import com.assessment.speernotes.model.RevokedToken;
+import com.mongodb.MongoTimeoutException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class IndexRegistryTest {
+    private final ManagedIndex userIdIndex = new ManagedIndex(Note.class, new Index().on("userId", Sort.Direction.ASC).named("userId"), true);
+    private final ManagedIndex expiryIndex = new ManagedIndex(RevokedToken.class, new Index().on("expiresAt", Sort.Direction.ASC).named("expiresAt"), false);
+
+    private MongoTemplate mongoTemplate;
+    private IndexOperations notesIndexOps;
+    private IndexOperations revokedTokensIndexOps;
+    private IndexRegistry indexRegistry;
+    private IndexesHealthIndicator healthIndicator;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        notesIndexOps = mock(IndexOperations.class);
+        revokedTokensIndexOps = mock(IndexOperations.class);
+        when(mongoTemplate.indexOps(Note.class)).thenReturn(notesIndexOps);
+        when(mongoTemplate.indexOps(RevokedToken.class)).thenReturn(revokedTokensIndexOps);
+        when(mongoTemplate.getCollectionName(Note.class)).thenReturn("notes");
+        when(mongoTemplate.getCollectionName(RevokedToken.class)).thenReturn("revoked_tokens");
+
+        indexRegistry = new IndexRegistry(mongoTemplate, List.of(userIdIndex, expiryIndex));
+        indexRegistry.retryIntervalMs = 60_000;
+        healthIndicator = new IndexesHealthIndicator(indexRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        indexRegistry.shutdown();
+    }
+
+    @Test
+    void testNotReadyUntilBuilt() {
+        assertFalse(indexRegistry.isReady());
+        assertEquals(Status.OUT_OF_SERVICE, healthIndicator.health().getStatus());
+        assertEquals(IndexRegistry.State.PENDING, healthIndicator.health().getDetails().get("notes.userId"));
+
+        assertTrue(indexRegistry.ensureIndexes());
+
+        assertTrue(indexRegistry.isReady());
+        assertEquals(Status.UP, healthIndicator.health().getStatus());
+        verify(notesIndexOps).ensureIndex(userIdIndex.definition());
+        verify(revokedTokensIndexOps).ensureIndex(expiryIndex.definition());
+
+        // Built indexes are not created again
+        indexRegistry.ensureIndexes();
+        verify(notesIndexOps, times(1)).ensureIndex(any());
+    }
+
+    @Test
+    void testFailedOptionalIndex_StillReady() {
+        doThrow(new MongoTimeoutException("timeout")).when(revokedTokensIndexOps).ensureIndex(any());
+
+        assertFalse(indexRegistry.ensureIndexes());
+
+        assertTrue(indexRegistry.isReady());
+        assertEquals(IndexRegistry.State.FAILED, indexRegistry.getStates().get("revoked_tokens.expiresAt"));
+    }
+
+    @Test
+    void testFailedRequiredIndex_RetriedUntilBuilt() {
+        doThrow(new MongoTimeoutException("timeout")).doReturn("userId").when(notesIndexOps).ensureIndex(any());
+
+        assertFalse(indexRegistry.ensureIndexes());
+        assertFalse(indexRegistry.isReady());
+        assertEquals(Status.OUT_OF_SERVICE, healthIndicator.health().getStatus());
+
+        assertTrue(indexRegistry.ensureIndexes());
+        assertTrue(indexRegistry.isReady());
+        verify(revokedTokensIndexOps, times(1)).ensureIndex(any());
+    }
+
+    @Test
+    void testReplacedIndex_DroppedBeforeBuild() {
+        ManagedIndex textIndex = new ManagedIndex(Note.class, new Index().on("userId", Sort.Direction.ASC).named("user_text"), true, "Note_TextIndex");
+        IndexRegistry registry = new IndexRegistry(mongoTemplate, List.of(textIndex));
+        when(notesIndexOps.getIndexInfo()).thenReturn(List.of(
+                new IndexInfo(List.of(), "Note_TextIndex", false, false, "")));
+        try {
+            assertTrue(registry.ensureIndexes());
+
+            InOrder inOrder = inOrder(notesIndexOps);
+            inOrder.verify(notesIndexOps).dropIndex("Note_TextIndex");
+            inOrder.verify(notesIndexOps).ensureIndex(textIndex.definition());
+        } finally {
+            registry.shutdown();
+        }
+
+        // Once gone, it is not dropped again
+        when(notesIndexOps.getIndexInfo()).thenReturn(List.of());
+        IndexRegistry restarted = new IndexRegistry(mongoTemplate, List.of(textIndex));
+        try {
+            assertTrue(restarted.ensureIndexes());
+            verify(notesIndexOps, times(1)).dropIndex(any(String.class));
+        } finally {
+            restarted.shutdown();
+        }
+    }
+
+    @Test
+    void testDeclaredIndexes_NamedAndRequired() {
+        assertEquals(List.of("email", "sharedNotes", "user_updated_id", "id_user_updated_version", "user_text", "expiresAt", "expiresAt"),
+                IndexRegistry.INDEXES.stream().map(ManagedIndex::name).toList());
+        assertTrue(IndexRegistry.INDEXES.stream().filter(index -> index.entity() == Note.class).allMatch(ManagedIndex::required));
+    }
+}
@@ -0,0 +1,50 @@
+package com.assessment.speernotes.requests;
+
+import com.assessment.speernotes.exceptions.TooManyRequestsException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AuthAttemptLimiterTest {
+    private AuthAttemptLimiter authAttemptLimiter;
+
+    @BeforeEach
+    void setUp() {
+        authAttemptLimiter = new AuthAttemptLimiter(1000);
+        authAttemptLimiter.rateLimitingEnabled = true;
+        authAttemptLimiter.maxAttemptsPerIp = 3;
+        authAttemptLimiter.maxAttemptsPerEmail = 2;
+    }
+
+    @Test
+    void testAcquireForEmail_ExceedsLimit_Rejected() {
+        authAttemptLimiter.acquireForEmail("user@example.com");
+        authAttemptLimiter.acquireForEmail("USER@example.com");
+
+        TooManyRequestsException thrown = assertThrows(TooManyRequestsException.class,
+                () -> authAttemptLimiter.acquireForEmail("user@example.com"));
+        assertTrue(thrown.getRetryAfterSeconds() > 0 && thrown.getRetryAfterSeconds() <= 60);
+
+        // Other emails keep their own budget
+        assertDoesNotThrow(() -> authAttemptLimiter.acquireForEmail("other@example.com"));
+    }
+
+    @Test
+    void testAcquireForIp_ExceedsLimit_Rejected() {
+        for (int i = 0; i < 3; i++) {
+            authAttemptLimiter.acquireForIp("192.168.0.1");
+        }
+
+        assertThrows(TooManyRequestsException.class, () -> authAttemptLimiter.acquireForIp("192.168.0.1"));
+    }
+
+    @Test
+    void testAcquire_Disabled_NeverRejects() {
+        authAttemptLimiter.rateLimitingEnabled = false;
+
+        for (int i = 0; i < 10; i++) {
+            authAttemptLimiter.acquireForEmail("user@example.com");
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package com.assessment.speernotes.requests;
 
+import com.assessment.speernotes.model.UserPrincipal;
+import com.assessment.speernotes.service.TokenRevocationService;
 import com.assessment.speernotes.utils.JwtUtil;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -9,6 +13,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -20,6 +25,8 @@ import org.springframework.web.filter.OncePerRequestFilter;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -32,6 +39,9 @@ class JwtAuthenticationTest {
     @Mock
     private UserDetailsService userDetailsService;
 
+    @Mock
+    private TokenRevocationService tokenRevocationService;
+
     @Mock
     private HttpServletRequest request;
 
@@ -49,6 +59,7 @@ class JwtAuthenticationTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        SecurityContextHolder.clearContext();
         mockMvc = MockMvcBuilders.standaloneSetup(jwtAuthentication).addFilters((OncePerRequestFilter) jwtAuthentication).build();
     }
 
@@ -60,8 +71,7 @@ class JwtAuthenticationTest {
         UserDetails userDetails = User.builder().username(email).password("password").authorities("ROLE_USER").build();
 
         when(request.getHeader("Authorization")).thenReturn("Bearer " + token);
-        when(jwtUtil.validateToken(token)).thenReturn(true);
-        when(jwtUtil.extractEmail(token)).thenReturn(email);
+        when(jwtUtil.verifyToken(token)).thenReturn(Optional.of(Jwts.claims().subject(email).build()));
         when(userDetailsService.loadUserByUsername(email)).thenReturn(userDetails);
 
         // Call the method
@@ -75,13 +85,50 @@ class JwtAuthenticationTest {
         verify(filterChain).doFilter(request, response);
     }
 
+    @Test
+    void testDoFilterInternal_ClaimsMode_SkipsUserLookup() throws ServletException, IOException {
+        String token = "valid-jwt-token";
+        String email = "user@example.com";
+        Claims claims = Jwts.claims().subject(email).add(JwtUtil.CLAIM_USER_ID, "1").build();
+
+        when(request.getHeader("Authorization")).thenReturn("Bearer " + token);
+        when(jwtUtil.verifyToken(token)).thenReturn(Optional.of(claims));
+        when(jwtUtil.isClaimsAuthenticationEnabled()).thenReturn(true);
+        when(jwtUtil.toPrincipal(claims)).thenReturn(Optional.of(new UserPrincipal("1", email, null,
+                Collections.singletonList(new SimpleGrantedAuthority("USER")))));
+
+        jwtAuthentication.doFilterInternal(request, response, filterChain);
+
+        UserPrincipal principal = (UserPrincipal) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        assertEquals("1", principal.getId());
+        verifyNoInteractions(userDetailsService);
+        verify(filterChain).doFilter(request, response);
+    }
+
+    @Test
+    void testDoFilterInternal_RevokedToken_DoesNotSetAuthentication() throws ServletException, IOException {
+        String token = "revoked-jwt-token";
+        Claims claims = Jwts.claims().subject("user@example.com").build();
+        SecurityContextHolder.clearContext();
+
+        when(request.getHeader("Authorization")).thenReturn("Bearer " + token);
+        when(jwtUtil.verifyToken(token)).thenReturn(Optional.of(claims));
+        when(tokenRevocationService.isRevoked(claims)).thenReturn(true);
+
+        jwtAuthentication.doFilterInternal(request, response, filterChain);
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        verifyNoInteractions(userDetailsService);
+        verify(filterChain).doFilter(request, response);
+    }
+
     @Test
     void testDoFilterInternal_InvalidToken_DoesNotSetAuthentication() throws ServletException, IOException {
         // Mocking the behavior of JwtUtil
         String token = "invalid-jwt-token";
 
         when(request.getHeader("Authorization")).thenReturn("Bearer " + token);
-        when(jwtUtil.validateToken(token)).thenReturn(false);
+        when(jwtUtil.verifyToken(token)).thenReturn(Optional.empty());
 
         // Call the method
         jwtAuthentication.doFilterInternal(request, response, filterChain);
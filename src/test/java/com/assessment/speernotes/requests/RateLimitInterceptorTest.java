@@ -1,34 +1,58 @@
 package com.assessment.speernotes.requests;
 
-import jakarta.servlet.http.HttpServletResponse;
+import com.assessment.speernotes.exceptions.TooManyRequestsException;
+import com.assessment.speernotes.requests.ratelimit.GcraRateLimiter;
+import com.assessment.speernotes.requests.ratelimit.RateLimitPolicy;
+import com.assessment.speernotes.requests.ratelimit.RateLimitPolicyRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.DispatcherType;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.InjectMocks;
-import org.mockito.Mock;
-import org.mockito.MockitoAnnotations;
+import org.springframework.mock.web.MockAsyncContext;
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
 
-import java.io.ByteArrayOutputStream;
-import java.io.PrintWriter;
+import java.util.List;
 
-import static org.mockito.Mockito.*;
 import static org.junit.jupiter.api.Assertions.*;
 
 class RateLimitInterceptorTest {
 
-    @InjectMocks
     private RateLimitInterceptor rateLimitInterceptor;  // Interceptor to test
 
-    @Mock
-    private MockHttpServletRequest request;  // Mock the HttpServletRequest
+    private MockHttpServletResponse response;
 
-    @Mock
-    private MockHttpServletResponse response; // Mock the HttpServletResponse
+    private RateLimitPolicy readPolicy;
 
     @BeforeEach
     void setUp() {
-        MockitoAnnotations.openMocks(this);  // Initialize mocks
+        RateLimitPolicyRegistry policyRegistry = new RateLimitPolicyRegistry((name, policy) ->
+                new GcraRateLimiter(policy.windowMs(), policy.freeRequests(), policy.maxRequests(), 1000), new SimpleMeterRegistry());
+        policyRegistry.init();
+        readPolicy = policyRegistry.getPolicies().get(RateLimitPolicyRegistry.READ);
+        rateLimitInterceptor = new RateLimitInterceptor(policyRegistry);
+        response = new MockHttpServletResponse();
+    }
+
+    @AfterEach
+    void tearDown() {
+        rateLimitInterceptor.shutdown();
+        SecurityContextHolder.clearContext();
+    }
+
+    private MockHttpServletRequest request() {
+        return request("GET", "/api/notes");
+    }
+
+    private MockHttpServletRequest request(String method, String uri) {
+        // Mock the request to return a specific IP
+        MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+        request.setRemoteAddr("192.168.0.1");
+        request.setAsyncSupported(true);
+        return request;
     }
 
     @Test
@@ -36,79 +60,157 @@ class RateLimitInterceptorTest {
         // Set rate-limiting enabled to true
         rateLimitInterceptor.rateLimitingEnabled = true;
 
-        // Prepare the response to capture output
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        PrintWriter printWriter = new PrintWriter(outputStream);
-        when(response.getWriter()).thenReturn(printWriter); // Mocking the response's writer
-
-        // Mock the request to return a specific IP
-        when(request.getRemoteAddr()).thenReturn("192.168.0.1");
-
         // Simulate 5 requests (should all pass)
         for (int i = 0; i < 5; i++) {
+            MockHttpServletRequest request = request();
             boolean result = rateLimitInterceptor.preHandle(request, response, null);
             assertTrue(result);  // All requests should pass in this case
+            assertFalse(request.isAsyncStarted());
         }
 
         // Ensure no throttling has happened yet
-        verify(response, never()).addHeader(eq("X-RateLimit-Throttled"), eq("true"));
+        assertNull(response.getHeader("X-RateLimit-Throttled"));
     }
 
     @Test
-    void testExcessiveRequestsBlocked() throws Exception {
-        // Set rate-limiting enabled
+    void testThrottledRequestResumedAfterDelay() throws Exception {
         rateLimitInterceptor.rateLimitingEnabled = true;
+        for (int i = 0; i < readPolicy.freeRequests(); i++) {
+            assertTrue(rateLimitInterceptor.preHandle(request(), response, null));
+        }
 
-        // Prepare the response to capture output
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        PrintWriter printWriter = new PrintWriter(outputStream);
-        when(response.getWriter()).thenReturn(printWriter);  // Mocking the response's writer
+        // The 6th request is parked instead of blocking the thread
+        MockHttpServletRequest request = request();
+        long start = System.nanoTime();
+        assertFalse(rateLimitInterceptor.preHandle(request, response, null));
+        assertTrue(System.nanoTime() - start < 200_000_000L, "The throttled request blocked the thread");
+        assertTrue(request.isAsyncStarted());
+
+        // The shared timer dispatches it again after the delay
+        MockAsyncContext asyncContext = (MockAsyncContext) request.getAsyncContext();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (asyncContext.getDispatchedPath() == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertNotNull(asyncContext.getDispatchedPath());
+        assertTrue(System.nanoTime() - start >= readPolicy.throttleDelayMs() * 1_000_000L);
 
-        // Mock the request to return a specific IP
-        when(request.getRemoteAddr()).thenReturn("192.168.0.1");
+        // The async dispatch is let through without being counted again
+        request.setDispatcherType(DispatcherType.ASYNC);
+        assertTrue(rateLimitInterceptor.preHandle(request, response, null));
+        assertEquals("true", response.getHeader("X-RateLimit-Throttled"));
+    }
 
-        // Simulate MAX REQUESTS requests (should all pass)
-        for (int i = 0; i < RateLimitInterceptor.MAX_REQUESTS * 2; i++) {
-            boolean result = rateLimitInterceptor.preHandle(request, response, null);
-            assertTrue(result);  // First 5 requests should pass
+    @Test
+    void testThrottledWithoutAsyncSupport_RejectedWithoutBlocking() throws Exception {
+        rateLimitInterceptor.rateLimitingEnabled = true;
+        for (int i = 0; i < readPolicy.freeRequests(); i++) {
+            assertTrue(rateLimitInterceptor.preHandle(request(), response, null));
         }
 
-        // Simulate 1 more request (should be throttled or blocked)
-        boolean resultAfterLimit = rateLimitInterceptor.preHandle(request, response, null);
-        assertFalse(resultAfterLimit);  // After 5 requests, it should block the 6th request
+        MockHttpServletRequest request = request();
+        request.setAsyncSupported(false);
+        long start = System.nanoTime();
+        TooManyRequestsException exception = assertThrows(TooManyRequestsException.class,
+                () -> rateLimitInterceptor.preHandle(request, response, null));
+
+        assertTrue(System.nanoTime() - start < readPolicy.throttleDelayMs() * 1_000_000L, "The throttled request blocked the thread");
+        assertEquals(1, exception.getRetryAfterSeconds());
+        assertFalse(request.isAsyncStarted());
+    }
 
-        // Check the response status is 416 for blocked requests
-        verify(response).setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+    @Test
+    void testAsyncDispatchOfStreamedResponseNotCounted() throws Exception {
+        rateLimitInterceptor.rateLimitingEnabled = true;
+        MockHttpServletRequest request = request();
+        assertTrue(rateLimitInterceptor.preHandle(request, response, null));
 
-        // Check the response content
-        printWriter.flush();  // Ensure the content is written to the output stream
-        String responseContent = outputStream.toString().trim();
-        assertEquals("Too many requests. Try again later.", responseContent);  // Expecting the error message
+        // A streamed response completes with an async dispatch, which must not use up the budget
+        request.setDispatcherType(DispatcherType.ASYNC);
+        for (int i = 0; i < readPolicy.maxRequests(); i++) {
+            assertTrue(rateLimitInterceptor.preHandle(request, response, null));
+        }
+        assertNull(response.getHeader("X-RateLimit-Throttled"));
+        assertEquals(String.valueOf(readPolicy.freeRequests() - 1), response.getHeader("RateLimit-Remaining"));
     }
 
     @Test
-    void testTimeWindowReset() throws Exception {
-        // Set rate-limiting enabled to true
+    void testExcessiveRequestsBlocked() throws Exception {
+        // Set rate-limiting enabled
         rateLimitInterceptor.rateLimitingEnabled = true;
 
-        // Prepare the response to capture output
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        PrintWriter printWriter = new PrintWriter(outputStream);
-        when(response.getWriter()).thenReturn(printWriter); // Mocking the response's writer
+        // Simulate MAX REQUESTS requests (should all be served, the second half after a delay)
+        for (int i = 0; i < readPolicy.maxRequests(); i++) {
+            MockHttpServletRequest request = request();
+            boolean result = rateLimitInterceptor.preHandle(request, response, null);
+            assertTrue(result || request.isAsyncStarted());
+        }
 
-        // Mock the request to return a specific IP
-        when(request.getRemoteAddr()).thenReturn("192.168.0.1");
+        // Simulate 1 more request (should be blocked with 429 and Retry-After)
+        TooManyRequestsException thrown = assertThrows(TooManyRequestsException.class,
+                () -> rateLimitInterceptor.preHandle(request(), response, null));
+        assertTrue(thrown.getRetryAfterSeconds() >= 1 && thrown.getRetryAfterSeconds() <= 6);
+        assertTrue(thrown.getMessage().startsWith("Too many requests. Try again later."));
+    }
+
+    @Test
+    void testTimeWindowReset() throws Exception {
+        // Set rate-limiting enabled to true
+        rateLimitInterceptor.rateLimitingEnabled = true;
 
         // Simulate 5 requests (all should pass)
         for (int i = 0; i < 5; i++) {
-            boolean result = rateLimitInterceptor.preHandle(request, response, null);
+            boolean result = rateLimitInterceptor.preHandle(request(), response, null);
             assertTrue(result);  // First 5 requests should pass
         }
 
         // Now simulate a request after the time window has reset
         Thread.sleep(60 * 1000); // Wait for 1 minute to reset the window
 
-        boolean resultAfterReset = rateLimitInterceptor.preHandle(request, response, null);
+        boolean resultAfterReset = rateLimitInterceptor.preHandle(request(), response, null);
         assertTrue(resultAfterReset);  // After the time window is reset, the request should pass again
     }
-}
\ No newline at end of file
+
+    @Test
+    void testRateLimitHeadersAdvertiseRemainingBudget() throws Exception {
+        rateLimitInterceptor.rateLimitingEnabled = true;
+
+        assertTrue(rateLimitInterceptor.preHandle(request(), response, null));
+        assertEquals(String.valueOf(readPolicy.freeRequests()), response.getHeader("RateLimit-Limit"));
+        assertEquals(String.valueOf(readPolicy.freeRequests() - 1), response.getHeader("RateLimit-Remaining"));
+        assertEquals(readPolicy.freeRequests() + ";w=60", response.getHeader("RateLimit-Policy"));
+        long reset = Long.parseLong(response.getHeader("RateLimit-Reset"));
+        assertTrue(reset >= 1 && reset <= 60);
+    }
+
+    @Test
+    void testSearchAndWritesHaveSeparateBudgets() throws Exception {
+        rateLimitInterceptor.rateLimitingEnabled = true;
+        for (int i = 0; i < readPolicy.maxRequests(); i++) {
+            MockHttpServletRequest request = request();
+            assertTrue(rateLimitInterceptor.preHandle(request, response, null) || request.isAsyncStarted());
+        }
+        assertThrows(TooManyRequestsException.class, () -> rateLimitInterceptor.preHandle(request(), response, null));
+
+        // The exhausted reads leave the writes and the searches untouched
+        assertTrue(rateLimitInterceptor.preHandle(request("POST", "/api/notes"), response, null));
+        assertTrue(rateLimitInterceptor.preHandle(request("GET", "/api/notes/search"), response, null));
+    }
+
+    @Test
+    void testAuthenticatedUsersLimitedPerUser() throws Exception {
+        rateLimitInterceptor.rateLimitingEnabled = true;
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("first@test.com", null, List.of()));
+        for (int i = 0; i < readPolicy.maxRequests(); i++) {
+            MockHttpServletRequest request = request();
+            assertTrue(rateLimitInterceptor.preHandle(request, response, null) || request.isAsyncStarted());
+        }
+        assertThrows(TooManyRequestsException.class, () -> rateLimitInterceptor.preHandle(request(), response, null));
+
+        // Another user behind the same IP has its own budget
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("second@test.com", null, List.of()));
+        assertTrue(rateLimitInterceptor.preHandle(request(), response, null));
+    }
+}
@@ -0,0 +1,115 @@
+package com.assessment.speernotes.requests.ratelimit;
+
+import com.assessment.speernotes.requests.ratelimit.RateLimiter.Decision;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GcraRateLimiterTest {
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private GcraRateLimiter rateLimiter;
+
+    @BeforeEach
+    void setUp() {
+        rateLimiter = new GcraRateLimiter(60_000, 5, 10, 1000, now::get);
+    }
+
+    @Test
+    void testAcquire_FreeThenThrottledThenRejected() {
+        for (int i = 0; i < 5; i++) {
+            assertEquals(Decision.ALLOWED, rateLimiter.acquire("ip"));
+        }
+        for (int i = 0; i < 5; i++) {
+            assertEquals(Decision.THROTTLED, rateLimiter.acquire("ip"));
+        }
+        assertEquals(Decision.REJECTED, rateLimiter.acquire("ip"));
+        assertEquals(6_000, rateLimiter.retryAfterMillis("ip"));
+
+        // Other keys have their own budget
+        assertEquals(Decision.ALLOWED, rateLimiter.acquire("other"));
+    }
+
+    @Test
+    void testAcquire_BudgetRefillsContinuously() {
+        for (int i = 0; i < 10; i++) {
+            rateLimiter.acquire("ip");
+        }
+        assertEquals(Decision.REJECTED, rateLimiter.acquire("ip"));
+
+        // One emission interval frees one request
+        now.addAndGet(6_000);
+        assertEquals(0, rateLimiter.retryAfterMillis("ip"));
+        assertEquals(Decision.THROTTLED, rateLimiter.acquire("ip"));
+        assertEquals(Decision.REJECTED, rateLimiter.acquire("ip"));
+
+        // A whole window frees the full budget
+        now.addAndGet(60_000);
+        assertEquals(Decision.ALLOWED, rateLimiter.acquire("ip"));
+    }
+
+    @Test
+    void testAcquire_ConcurrentRequests_ExactBudget() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Decision>> decisions = new ArrayList<>();
+            CountDownLatch start = new CountDownLatch(1);
+            for (int i = 0; i < 100; i++) {
+                decisions.add(executor.submit(() -> {
+                    start.await();
+                    return rateLimiter.acquire("ip");
+                }));
+            }
+            start.countDown();
+
+            int allowed = 0, throttled = 0;
+            for (Future<Decision> decision : decisions) {
+                switch (decision.get(5, TimeUnit.SECONDS)) {
+                    case ALLOWED -> allowed++;
+                    case THROTTLED -> throttled++;
+                    case REJECTED -> {}
+                }
+            }
+            assertEquals(5, allowed);
+            assertEquals(5, throttled);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testIdleKeys_ExpireAfterWindow() {
+        rateLimiter.acquire("ip");
+        rateLimiter.acquire("other");
+        assertEquals(2, rateLimiter.trackedKeys());
+
+        now.addAndGet(30_000);
+        rateLimiter.acquire("ip");
+        now.addAndGet(31_000);
+
+        // Only the key idle for the whole window is dropped
+        assertEquals(1, rateLimiter.trackedKeys());
+        assertEquals(Decision.ALLOWED, rateLimiter.acquire("other"));
+    }
+
+    @Test
+    void testTrackedKeys_BoundedWithEvictionMetrics() {
+        GcraRateLimiter bounded = new GcraRateLimiter(60_000, 5, 10, 100, now::get);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        bounded.bindMetrics(meterRegistry, "rate-limit.clients");
+
+        for (int i = 0; i < 1000; i++) {
+            bounded.acquire("10.0.0." + i);
+        }
+
+        assertTrue(bounded.trackedKeys() <= 100);
+        assertTrue(meterRegistry.get("cache.evictions").tag("cache", "rate-limit.clients").functionCounter().count() >= 900);
+        assertTrue(meterRegistry.get("cache.size").tag("cache", "rate-limit.clients").gauge().value() <= 100);
+    }
+}
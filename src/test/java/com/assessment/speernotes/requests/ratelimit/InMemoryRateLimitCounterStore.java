@@ -0,0 +1,29 @@
+package com.assessment.speernotes.requests.ratelimit;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counter store shared by the limiters of a test in place of MongoDB, counting its round trips
+ */
+class InMemoryRateLimitCounterStore implements RateLimitCounterStore {
+    private final ConcurrentMap<String, AtomicLong> counters = new ConcurrentHashMap<>();
+    private final AtomicInteger roundTrips = new AtomicInteger();
+
+    @Override
+    public long add(String key, long windowStart, long windowMs, long delta) {
+        roundTrips.incrementAndGet();
+        return counters.computeIfAbsent(key + "@" + windowStart, k -> new AtomicLong()).addAndGet(delta);
+    }
+
+    long get(String key, long windowStart) {
+        AtomicLong counter = counters.get(key + "@" + windowStart);
+        return counter == null ? 0 : counter.get();
+    }
+
+    int roundTrips() {
+        return roundTrips.get();
+    }
+}
@@ -0,0 +1,181 @@
+package com.assessment.speernotes.requests.ratelimit;
+
+import com.assessment.speernotes.requests.ratelimit.RateLimiter.Decision;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LeasedRateLimiterTest {
+    private static final long WINDOW_START = 60_000_000;
+
+    private final AtomicLong now = new AtomicLong(WINDOW_START);
+    private InMemoryRateLimitCounterStore counterStore;
+
+    @BeforeEach
+    void setUp() {
+        counterStore = new InMemoryRateLimitCounterStore();
+    }
+
+    private LeasedRateLimiter node(int leaseSize) {
+        return new LeasedRateLimiter(counterStore, 60_000, 5, 10, leaseSize, 1_000, 5_000, 1000, now::get);
+    }
+
+    @Test
+    void testAcquire_FreeThenThrottledThenRejected() {
+        LeasedRateLimiter rateLimiter = node(2);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(Decision.ALLOWED, rateLimiter.acquire("ip"));
+        }
+        for (int i = 0; i < 5; i++) {
+            assertEquals(Decision.THROTTLED, rateLimiter.acquire("ip"));
+        }
+        assertEquals(Decision.REJECTED, rateLimiter.acquire("ip"));
+        assertEquals(Decision.REJECTED, rateLimiter.acquire("ip"));
+
+        // One round trip per lease, the rejections after the limit are decided locally
+        assertEquals(6, counterStore.roundTrips());
+        now.addAndGet(15_000);
+        assertEquals(45_000, rateLimiter.retryAfterMillis("ip"));
+
+        now.addAndGet(45_000);
+        assertEquals(0, rateLimiter.retryAfterMillis("ip"));
+        assertEquals(Decision.ALLOWED, rateLimiter.acquire("ip"));
+    }
+
+    @Test
+    void testAcquire_LimitSharedAcrossNodes() {
+        // Single request leases, so no budget is left stranded on either node
+        LeasedRateLimiter first = node(1);
+        LeasedRateLimiter second = node(1);
+
+        int allowed = 0;
+        for (int i = 0; i < 10; i++) {
+            LeasedRateLimiter rateLimiter = i % 2 == 0 ? first : second;
+            if (rateLimiter.acquire("ip") != Decision.REJECTED) {
+                allowed++;
+            }
+        }
+
+        assertEquals(10, allowed);
+        assertEquals(Decision.REJECTED, first.acquire("ip"));
+        assertEquals(Decision.REJECTED, second.acquire("ip"));
+    }
+
+    @Test
+    void testReleaseIdleLeases_ReturnsUnusedBudget() {
+        LeasedRateLimiter first = node(4);
+        LeasedRateLimiter second = node(4);
+
+        assertEquals(Decision.ALLOWED, first.acquire("ip"));
+        assertEquals(4, counterStore.get("ip", WINDOW_START));
+
+        first.releaseIdle();
+        assertEquals(4, counterStore.get("ip", WINDOW_START));  // Not idle yet
+
+        now.addAndGet(1_000);
+        first.releaseIdle();
+        assertEquals(1, counterStore.get("ip", WINDOW_START));
+
+        // The released positions go to the other node, the whole budget stays usable
+        for (int i = 0; i < 9; i++) {
+            assertNotEquals(Decision.REJECTED, second.acquire("ip"));
+        }
+        assertEquals(Decision.REJECTED, second.acquire("ip"));
+    }
+
+    @Test
+    void testAcquire_StoreUnavailable_LimitsLocallyThenRetries() {
+        AtomicLong calls = new AtomicLong();
+        AtomicBoolean available = new AtomicBoolean(false);
+        LeasedRateLimiter rateLimiter = new LeasedRateLimiter((key, windowStart, windowMs, delta) -> {
+            calls.incrementAndGet();
+            if (!available.get()) {
+                throw new IllegalStateException("unavailable");
+            }
+            return counterStore.add(key, windowStart, windowMs, delta);
+        }, 60_000, 5, 10, 2, 1_000, 5_000, 1000, now::get);
+
+        List<Decision> decisions = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            decisions.add(rateLimiter.acquire("ip"));
+        }
+
+        // Only the first lease calls the store, the limits still apply to the requests of this instance
+        assertEquals(1, calls.get());
+        assertEquals(List.of(Decision.ALLOWED, Decision.ALLOWED, Decision.ALLOWED, Decision.ALLOWED, Decision.ALLOWED,
+                Decision.THROTTLED, Decision.THROTTLED, Decision.THROTTLED, Decision.THROTTLED, Decision.THROTTLED,
+                Decision.REJECTED, Decision.REJECTED), decisions);
+        rateLimiter.releaseIdle();
+        assertEquals(1, calls.get());
+
+        available.set(true);
+        now.addAndGet(5_000);
+        assertEquals(Decision.ALLOWED, rateLimiter.acquire("other"));
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void testAcquire_SlowStore_OtherRequestsDecidedWithoutWaiting() throws Exception {
+        CountDownLatch leasing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        LeasedRateLimiter rateLimiter = new LeasedRateLimiter((key, windowStart, windowMs, delta) -> {
+            leasing.countDown();
+            try {
+                assertTrue(release.await(5, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return counterStore.add(key, windowStart, windowMs, delta);
+        }, 60_000, 5, 10, 4, 1_000, 5_000, 1000, now::get);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Decision> leased = executor.submit(() -> rateLimiter.acquire("ip"));
+            assertTrue(leasing.await(5, TimeUnit.SECONDS));
+
+            // Decided while the lease is in flight, on the positions following those of this instance
+            assertEquals(Decision.ALLOWED, rateLimiter.acquire("ip"));
+            assertEquals(Decision.ALLOWED, rateLimiter.acquire("ip"));
+
+            release.countDown();
+            assertEquals(Decision.ALLOWED, leased.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // The positions taken meanwhile came out of the lease, one of its 4 positions is left
+        assertEquals(4, counterStore.get("ip", WINDOW_START));
+        assertEquals(Decision.ALLOWED, rateLimiter.acquire("ip"));
+        assertEquals(Decision.ALLOWED, rateLimiter.acquire("ip"));
+        assertEquals(8, counterStore.get("ip", WINDOW_START));
+    }
+
+    @Test
+    void testAcquire_ConcurrentNodesNeverExceedLimit() throws Exception {
+        List<LeasedRateLimiter> nodes = List.of(node(3), node(3), node(3), node(3));
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Decision>> decisions = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                LeasedRateLimiter rateLimiter = nodes.get(i % nodes.size());
+                decisions.add(executor.submit(() -> rateLimiter.acquire("ip")));
+            }
+
+            int admitted = 0;
+            for (Future<Decision> decision : decisions) {
+                if (decision.get() != Decision.REJECTED) {
+                    admitted++;
+                }
+            }
+            assertTrue(admitted <= 10, "Admitted " + admitted);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
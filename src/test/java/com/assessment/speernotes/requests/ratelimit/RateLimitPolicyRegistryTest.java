@@ -0,0 +1,81 @@
+package com.assessment.speernotes.requests.ratelimit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimitPolicyRegistryTest {
+    @TempDir
+    Path tempDir;
+
+    private Path policiesFile;
+    private SimpleMeterRegistry meterRegistry;
+    private RateLimitPolicyRegistry policyRegistry;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        policiesFile = tempDir.resolve("rate-limit-policies.properties");
+        Files.writeString(policiesFile, "search.free-requests=1\nsearch.max-requests=2\n");
+
+        meterRegistry = new SimpleMeterRegistry();
+        policyRegistry = new RateLimitPolicyRegistry((name, policy) ->
+                new GcraRateLimiter(policy.windowMs(), policy.freeRequests(), policy.maxRequests(), 1000), meterRegistry);
+        policyRegistry.policiesFile = policiesFile.toString();
+        policyRegistry.init();
+    }
+
+    @Test
+    void testInit_FileOverridesDefaults() {
+        assertEquals(new RateLimitPolicy(1, 2, 60_000, 1_000), policyRegistry.getPolicies().get(RateLimitPolicyRegistry.SEARCH));
+        assertEquals(new RateLimitPolicy(5, 10, 60_000, 500), policyRegistry.getPolicies().get(RateLimitPolicyRegistry.READ));
+        assertNotNull(meterRegistry.find("cache.size").tag("cache", "rate-limit.search").gauge());
+    }
+
+    @Test
+    void testResolve_ByEndpointAndMethod() {
+        assertEquals(RateLimitPolicyRegistry.READ, policyRegistry.resolve(new MockHttpServletRequest("GET", "/api/notes/1")).name());
+        assertEquals(RateLimitPolicyRegistry.WRITE, policyRegistry.resolve(new MockHttpServletRequest("PUT", "/api/notes/1")).name());
+        assertEquals(RateLimitPolicyRegistry.WRITE, policyRegistry.resolve(new MockHttpServletRequest("POST", "/api/notes/1/share")).name());
+        assertEquals(RateLimitPolicyRegistry.SEARCH, policyRegistry.resolve(new MockHttpServletRequest("GET", "/api/notes/search")).name());
+        assertEquals(RateLimitPolicyRegistry.SUGGEST, policyRegistry.resolve(new MockHttpServletRequest("GET", "/api/notes/suggest")).name());
+    }
+
+    @Test
+    void testReloadIfModified_ReplacesOnlyChangedPolicies() throws Exception {
+        RateLimiter readLimiter = policyRegistry.resolve(new MockHttpServletRequest("GET", "/api/notes")).rateLimiter();
+        RateLimiter searchLimiter = policyRegistry.resolve(new MockHttpServletRequest("GET", "/api/notes/search")).rateLimiter();
+
+        // Unchanged file, nothing is reloaded
+        policyRegistry.reloadIfModified();
+        assertSame(searchLimiter, policyRegistry.resolve(new MockHttpServletRequest("GET", "/api/notes/search")).rateLimiter());
+
+        Files.writeString(policiesFile, "search.free-requests=3\nsearch.max-requests=6\n");
+        Files.setLastModifiedTime(policiesFile, FileTime.fromMillis(Files.getLastModifiedTime(policiesFile).toMillis() + 1000));
+        policyRegistry.reloadIfModified();
+
+        assertEquals(3, policyRegistry.getPolicies().get(RateLimitPolicyRegistry.SEARCH).freeRequests());
+        assertNotSame(searchLimiter, policyRegistry.resolve(new MockHttpServletRequest("GET", "/api/notes/search")).rateLimiter());
+        assertSame(readLimiter, policyRegistry.resolve(new MockHttpServletRequest("GET", "/api/notes")).rateLimiter());
+        assertEquals(1, meterRegistry.find("cache.size").tag("cache", "rate-limit.search").gauges().size());
+    }
+
+    @Test
+    void testReload_InvalidPoliciesKeepCurrent() throws Exception {
+        Files.writeString(policiesFile, "search.free-requests=5\nsearch.max-requests=2\n");
+
+        assertFalse(policyRegistry.reload());
+        assertEquals(new RateLimitPolicy(1, 2, 60_000, 1_000), policyRegistry.getPolicies().get(RateLimitPolicyRegistry.SEARCH));
+
+        Files.writeString(policiesFile, "search.free-requests=many\n");
+        assertFalse(policyRegistry.reload());
+        assertEquals(1, policyRegistry.getPolicies().get(RateLimitPolicyRegistry.SEARCH).freeRequests());
+    }
+}
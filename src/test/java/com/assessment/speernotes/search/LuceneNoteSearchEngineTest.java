@@ -0,0 +1,233 @@
+package com.assessment.speernotes.search;
+
+import com.assessment.speernotes.model.Note;
+import com.assessment.speernotes.model.NoteSearchCursor;
+import com.assessment.speernotes.repository.NotesRepository;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class LuceneNoteSearchEngineTest {
+    private final Map<String, Note> notes = new HashMap<>();
+    private NotesRepository notesRepository;
+    private LuceneNoteSearchEngine searchEngine;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        notesRepository = mock(NotesRepository.class);
+        // Copies, like the notes read from MongoDB
+        when(notesRepository.findProjectedByIds(any(), any(String[].class))).thenAnswer(invocation -> {
+            Collection<String> ids = invocation.getArgument(0);
+            return ids.stream().filter(notes::containsKey).map(id -> copy(notes.get(id))).toList();
+        });
+        searchEngine = new LuceneNoteSearchEngine(notesRepository, new ByteBuffersDirectory(), 100);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        searchEngine.close();
+    }
+
+    private Note save(String id, String userId, String title, String content) {
+        Note note = new Note();
+        note.setId(id);
+        note.setUserId(userId);
+        note.setTitle(title);
+        note.setContent(content);
+        notes.put(id, note);
+        searchEngine.index(note);
+        return note;
+    }
+
+    private static Note copy(Note note) {
+        Note copy = new Note();
+        copy.setId(note.getId());
+        copy.setUserId(note.getUserId());
+        copy.setTitle(note.getTitle());
+        copy.setContent(note.getContent());
+        return copy;
+    }
+
+    private List<String> search(String keyword, String userId, Set<String> sharedNoteIds) {
+        return searchEngine.searchPage(keyword, userId, sharedNoteIds, null, 10, "id").notes().stream().map(Note::getId).toList();
+    }
+
+    @Test
+    void testSearchPage_OnlyOwnAndSharedNotes() {
+        save("1", "alice", "Team meeting", "Agenda of the meeting");
+        save("2", "bob", "Meeting with the client", "Shared with alice");
+        save("3", "bob", "Meeting notes", "Not shared");
+        searchEngine.refresh();
+
+        assertEquals(Set.of("1", "2"), Set.copyOf(search("meeting", "alice", Set.of("2"))));
+        assertEquals(List.of("1"), search("meeting", "alice", Set.of()));
+    }
+
+    @Test
+    void testSearchPage_PrefixFuzzyAndPhrase() {
+        save("1", "alice", "Quarterly planning", "Budget review for the next quarter");
+        save("2", "alice", "Groceries", "Review the budget of the week");
+        searchEngine.refresh();
+
+        assertEquals(List.of("1"), search("plan*", "alice", Set.of()));
+        assertEquals(List.of("2"), search("groceris~1", "alice", Set.of()));
+        assertEquals(List.of("1"), search("\"budget review\"", "alice", Set.of()));
+        // The notes matching more of the terms rank first
+        assertEquals("2", search("groceries budget", "alice", Set.of()).get(0));
+    }
+
+    @Test
+    void testSearchPage_CursorResumesAfterLastNote() {
+        for (int i = 0; i < 5; i++) {
+            save("note" + i, "alice", "Meeting " + i, "Meeting");
+        }
+        searchEngine.refresh();
+
+        NoteSearchPage first = searchEngine.searchPage("meeting", "alice", Set.of(), null, 3, "id");
+        NoteSearchPage second = searchEngine.searchPage("meeting", "alice", Set.of(), first.next(), 3, "id");
+
+        assertEquals(3, first.notes().size());
+        assertEquals(NoteSearchCursor.of(first.notes().get(2)), first.next());
+        assertEquals(2, second.notes().size());
+        assertNull(second.next());
+        assertTrue(first.notes().stream().noneMatch(second.notes()::contains));
+        try (Stream<Note> all = searchEngine.streamSearch("meeting", "alice", Set.of(), "id")) {
+            assertEquals(5, all.count());
+        }
+    }
+
+    @Test
+    void testSearchPage_DeletedNotesDoNotEndThePages() {
+        for (int i = 0; i < 5; i++) {
+            save("note" + i, "alice", "Meeting " + i, "Meeting");
+        }
+        searchEngine.refresh();
+        NoteSearchPage first = searchEngine.searchPage("meeting", "alice", Set.of(), null, 2, "id");
+        // Deleted from MongoDB, but still in the index until the next refresh
+        notes.remove(first.next().id());
+
+        NoteSearchPage page = searchEngine.searchPage("meeting", "alice", Set.of(), null, 2, "id");
+
+        assertEquals(1, page.notes().size());
+        assertEquals(first.next(), page.next());
+        try (Stream<Note> all = searchEngine.streamSearch("meeting", "alice", Set.of(), "id")) {
+            assertEquals(4, all.count());
+        }
+    }
+
+    @Test
+    void testIndexAndRemove_VisibleAfterRefresh() {
+        save("1", "alice", "Draft", "First version");
+        searchEngine.refresh();
+
+        save("1", "alice", "Final", "Second version");
+        assertEquals(List.of("1"), search("draft", "alice", Set.of()));  // Not refreshed yet
+        searchEngine.refresh();
+        assertEquals(List.of(), search("draft", "alice", Set.of()));
+        assertEquals(List.of("1"), search("final", "alice", Set.of()));
+
+        notes.remove("1");
+        searchEngine.remove("1");
+        searchEngine.refresh();
+        assertEquals(List.of(), search("final", "alice", Set.of()));
+    }
+
+    @Test
+    void testRebuild_ReplacesIndexWithStoredNotes() {
+        save("1", "alice", "Stale", "Removed from MongoDB without the index");
+        notes.clear();
+        Note stored = new Note();
+        stored.setId("2");
+        stored.setUserId("alice");
+        stored.setTitle("Stored");
+        notes.put("2", stored);
+        when(notesRepository.streamAll(any(String[].class))).thenAnswer(invocation -> notes.values().stream().map(LuceneNoteSearchEngineTest::copy));
+
+        assertEquals(1, searchEngine.rebuild());
+
+        assertEquals(List.of(), search("stale", "alice", Set.of()));
+        assertEquals(List.of("2"), search("stored", "alice", Set.of()));
+        assertEquals(1, searchEngine.getStatus().get("notes"));
+    }
+
+    @Test
+    void testRebuild_WritesDuringRebuildNotUndone() {
+        save("1", "alice", "Old title", "Updated during the rebuild");
+        save("2", "alice", "Old draft", "Deleted during the rebuild");
+        // The rebuild has read the stored copies when the notes are written, and indexes the copies after the writes
+        List<Note> read = List.of(copy(notes.get("1")), copy(notes.get("2")));
+        when(notesRepository.streamAll(any(String[].class))).thenAnswer(invocation -> read.stream().peek(note -> {
+            if (note.getId().equals("1")) {
+                save("1", "alice", "New title", "Updated during the rebuild");
+                notes.remove("2");
+                searchEngine.remove("2");
+            }
+        }));
+
+        searchEngine.rebuild();
+
+        assertEquals(List.of("1"), search("new", "alice", Set.of()));
+        assertEquals(List.of(), search("old", "alice", Set.of()));
+    }
+
+    @Test
+    void testRebuild_FailsMidway_PreviousIndexKept() {
+        save("1", "alice", "Meeting", "Indexed before the rebuild");
+        save("2", "alice", "Meeting notes", "Indexed before the rebuild");
+        searchEngine.refresh();
+        when(notesRepository.streamAll(any(String[].class))).thenAnswer(invocation -> Stream.of("1", "2").map(id -> {
+            if (id.equals("2")) {
+                save("3", "alice", "Meeting agenda", "Written during the rebuild");
+                throw new IllegalStateException("cursor lost");
+            }
+            return copy(notes.get(id));
+        }));
+
+        assertThrows(IllegalStateException.class, searchEngine::rebuild);
+        searchEngine.refresh();
+
+        // Neither empty nor partial, and the write made during the failed rebuild is kept
+        assertEquals(Set.of("1", "2", "3"), Set.copyOf(search("meeting", "alice", Set.of())));
+        assertEquals(3, searchEngine.getStatus().get("notes"));
+        assertEquals(false, searchEngine.getStatus().get("rebuilding"));
+
+        // The restored index takes the writes and can be rebuilt again
+        save("4", "alice", "Meeting minutes", "Written after the failed rebuild");
+        when(notesRepository.streamAll(any(String[].class))).thenAnswer(invocation -> notes.values().stream().map(LuceneNoteSearchEngineTest::copy));
+        assertEquals(4, searchEngine.rebuild());
+        assertEquals(4, search("meeting", "alice", Set.of()).size());
+    }
+
+    @Test
+    void testStartRebuild_AlreadyRunning_NotStarted() throws Exception {
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(notesRepository.streamAll(any(String[].class))).thenAnswer(invocation -> {
+            reading.countDown();
+            assertTrue(release.await(5, TimeUnit.SECONDS));
+            return Stream.<Note>empty();
+        });
+
+        assertTrue(searchEngine.startRebuild());
+        assertTrue(reading.await(5, TimeUnit.SECONDS));
+        assertFalse(searchEngine.startRebuild());
+        assertEquals(true, searchEngine.getStatus().get("rebuilding"));
+
+        release.countDown();
+    }
+}
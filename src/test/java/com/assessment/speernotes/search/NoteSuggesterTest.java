@@ -0,0 +1,144 @@
+package com.assessment.speernotes.search;
+
+import com.assessment.speernotes.model.Note;
+import com.assessment.speernotes.repository.NotesRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class NoteSuggesterTest {
+    private NotesRepository notesRepository;
+    private NoteSuggester noteSuggester;
+
+    @BeforeEach
+    void setUp() {
+        notesRepository = mock(NotesRepository.class);
+        when(notesRepository.streamByUserId(eq("alice"), any(String[].class))).thenAnswer(invocation ->
+                Stream.of(note("1", "Meeting notes"), note("2", "Team meeting: agenda"), note("3", "Memo"), note("4", null)));
+        noteSuggester = new NoteSuggester(notesRepository, new SimpleMeterRegistry());
+        noteSuggester.maxTerms = 1000;
+        noteSuggester.ttl = Duration.ofMinutes(1);
+        noteSuggester.maxSuggestions = 20;
+        noteSuggester.init();
+    }
+
+    private static Note note(String id, String title) {
+        Note note = new Note();
+        note.setId(id);
+        note.setTitle(title);
+        return note;
+    }
+
+    @Test
+    void testSuggest_MostFrequentTermsFirst() {
+        assertEquals(List.of("meeting", "memo"), noteSuggester.suggest("alice", " ME", 10));
+        assertEquals(List.of("meeting"), noteSuggester.suggest("alice", "me", 1));
+        assertEquals(List.of(), noteSuggester.suggest("alice", "x", 10));
+        assertEquals(List.of(), noteSuggester.suggest("alice", " ", 10));
+    }
+
+    @Test
+    void testSuggest_LoadedOnceThenServedFromMemory() {
+        noteSuggester.suggest("alice", "me", 10);
+        noteSuggester.suggest("alice", "ag", 10);
+
+        verify(notesRepository, times(1)).streamByUserId("alice", "title");
+    }
+
+    @Test
+    void testUpdate_AppliesTitleChanges() {
+        noteSuggester.suggest("alice", "me", 10);
+
+        noteSuggester.update("alice", "5", "Memory leak");
+        noteSuggester.update("alice", "3", null);
+        noteSuggester.update("alice", "2", "Team sync");
+
+        assertEquals(List.of("meeting", "memory"), noteSuggester.suggest("alice", "me", 10));
+        assertEquals(List.of(), noteSuggester.suggest("alice", "agenda", 10));
+        assertEquals(List.of("sync"), noteSuggester.suggest("alice", "sy", 10));
+    }
+
+    @Test
+    void testUpdate_WriteAlreadyLoaded_NotCountedTwice() {
+        // The terms were loaded after the note was saved, then the write is applied
+        noteSuggester.suggest("alice", "me", 10);
+        noteSuggester.update("alice", "1", "Meeting notes");
+
+        noteSuggester.update("alice", "1", null);
+        noteSuggester.update("alice", "2", null);
+
+        assertEquals(List.of("memo"), noteSuggester.suggest("alice", "me", 10));
+    }
+
+    @Test
+    void testSuggest_ExpiredTerms_Reloaded() {
+        noteSuggester.ttl = Duration.ZERO;
+        noteSuggester.init();
+
+        noteSuggester.suggest("alice", "me", 10);
+        noteSuggester.suggest("alice", "me", 10);
+
+        verify(notesRepository, times(2)).streamByUserId("alice", "title");
+    }
+
+    @Test
+    void testUpdate_DuringLoad_NotWaitedForAndLoadedAgain() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        when(notesRepository.streamByUserId(eq("bob"), any(String[].class))).thenAnswer(invocation -> {
+            if (loads.incrementAndGet() == 1) {
+                // The first load read the note before it was renamed
+                loading.countDown();
+                assertTrue(release.await(5, TimeUnit.SECONDS));
+                return Stream.of(note("1", "Draft"));
+            }
+            return Stream.of(note("1", "Final"));
+        });
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<List<String>> first = executor.submit(() -> noteSuggester.suggest("bob", "d", 10));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+            // Applied without waiting for the load, which holds no lock of the cache
+            CompletableFuture.runAsync(() -> noteSuggester.update("bob", "1", "Final")).get(1, TimeUnit.SECONDS);
+
+            release.countDown();
+            assertEquals(List.of("draft"), first.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(List.of("final"), noteSuggester.suggest("bob", "f", 10));
+        assertEquals(List.of(), noteSuggester.suggest("bob", "d", 10));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void testSuggest_FailedLoad_RetriedOnNextSuggestion() {
+        when(notesRepository.streamByUserId(eq("bob"), any(String[].class)))
+                .thenThrow(new IllegalStateException("unavailable"))
+                .thenAnswer(invocation -> Stream.of(note("1", "Memo")));
+
+        assertThrows(IllegalStateException.class, () -> noteSuggester.suggest("bob", "me", 10));
+        assertEquals(List.of("memo"), noteSuggester.suggest("bob", "me", 10));
+    }
+
+    @Test
+    void testUpdate_NotLoaded_Ignored() {
+        noteSuggester.update("bob", "1", "Meeting");
+
+        verify(notesRepository, never()).streamByUserId(any(), any(String[].class));
+    }
+}
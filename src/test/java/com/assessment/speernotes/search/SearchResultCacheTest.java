@@ -0,0 +1,39 @@
+package com.assessment.speernotes.search;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchResultCacheTest {
+    private SearchResultCache searchResultCache;
+
+    @BeforeEach
+    void setUp() {
+        searchResultCache = new SearchResultCache(new SimpleMeterRegistry());
+        searchResultCache.maxSize = 100;
+        searchResultCache.ttl = Duration.ofMinutes(10);
+        searchResultCache.init();
+    }
+
+    @Test
+    void testNormalize() {
+        assertEquals("team meeting", SearchResultCache.normalize("  Team \t MEETING\n"));
+    }
+
+    @Test
+    void testGet_NewGenerationMisses() {
+        SearchResultCache.Page page = new SearchResultCache.Page(List.of("note1"), null);
+        searchResultCache.put(new SearchResultCache.Key("1", 3, "meeting", null, 50), page);
+
+        assertEquals(page, searchResultCache.get(new SearchResultCache.Key("1", 3, "meeting", null, 50)));
+        // A change of the notes bumps the generation, the page cached before it is not read again
+        assertNull(searchResultCache.get(new SearchResultCache.Key("1", 4, "meeting", null, 50)));
+        assertNull(searchResultCache.get(new SearchResultCache.Key("2", 3, "meeting", null, 50)));
+        assertNull(searchResultCache.get(new SearchResultCache.Key("1", 3, "meeting", "cursor", 50)));
+    }
+}
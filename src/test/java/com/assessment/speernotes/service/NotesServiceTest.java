@@ -1,11 +1,21 @@
 package com.assessment.speernotes.service;
 
+import com.assessment.speernotes.exceptions.NoteConflictException;
 import com.assessment.speernotes.exceptions.NotesException;
 import com.assessment.speernotes.model.Note;
+import com.assessment.speernotes.model.NoteCursor;
+import com.assessment.speernotes.model.NoteFields;
+import com.assessment.speernotes.model.NoteSearchCursor;
 import com.assessment.speernotes.model.User;
+import com.assessment.speernotes.model.UserPrincipal;
 import com.assessment.speernotes.model.dto.NoteDto;
 import com.assessment.speernotes.repository.NotesRepository;
+import com.assessment.speernotes.search.NoteSearchEngine;
+import com.assessment.speernotes.search.NoteSearchPage;
+import com.assessment.speernotes.search.NoteSuggester;
+import com.assessment.speernotes.search.SearchResultCache;
 import com.assessment.speernotes.utils.ConvertorUtil;
+import com.assessment.speernotes.utils.NoteETags;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
@@ -14,6 +24,9 @@ import org.springframework.security.core.userdetails.UserDetails;
 import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -32,19 +45,33 @@ public class NotesServiceTest {
     @Mock
     private ConvertorUtil convertorUtil;
 
+    @Mock
+    private NoteSearchEngine noteSearchEngine;
+
+    @Mock
+    private NoteSuggester noteSuggester;
+
+    @Mock
+    private SearchResultCache searchResultCache;
+
     @Mock
     private UserDetails userDetails;
 
     private User authenticatedUser;
+    private UserPrincipal authenticatedPrincipal;
     private Note note;
     private NoteDto noteDto;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        notesService.defaultPageSize = 50;
+        notesService.maxPageSize = 200;
+        notesService.defaultSuggestions = 10;
         authenticatedUser = new User();
         authenticatedUser.setId("1");
         authenticatedUser.setEmail("testuser@example.com");
+        authenticatedPrincipal = UserPrincipal.from(authenticatedUser);
 
         note = new Note();
         note.setId("note1");
@@ -59,33 +86,115 @@ public class NotesServiceTest {
 
     @Test
     void testGetAllNotes() {
-        when(usersService.getAuthenticatedUser()).thenReturn(authenticatedUser);
-        when(notesRepository.findByUserId(authenticatedUser.getId())).thenReturn(List.of(note));
+        when(usersService.getAuthenticatedPrincipal()).thenReturn(authenticatedPrincipal);
+        when(notesRepository.findPageByUserId(eq(authenticatedUser.getId()), isNull(), eq(51), any(String[].class))).thenReturn(List.of(note));
+
+        var page = notesService.getNotes(null, null, NoteFields.ALL);
+
+        assertEquals(1, page.getNotes().size());
+        assertEquals(note, page.getNotes().get(0));
+        assertNull(page.getNextCursor());
+        verify(usersService).getAuthenticatedPrincipal();
+        verify(usersService, never()).getAuthenticatedUser();
+        verify(notesRepository, never()).findByUserId(any());
+    }
+
+    @Test
+    void testGetNotes_NextCursorResumesAfterLastNote() {
+        Note second = new Note();
+        second.setId("note2");
+        second.setUpdatedAt(note.getUpdatedAt().minusSeconds(1));
+        Note third = new Note();
+        third.setId("note3");
+        third.setUpdatedAt(note.getUpdatedAt().minusSeconds(2));
+        when(usersService.getAuthenticatedPrincipal()).thenReturn(authenticatedPrincipal);
+        when(notesRepository.findPageByUserId(eq(authenticatedUser.getId()), isNull(), eq(3), any(String[].class))).thenReturn(List.of(note, second, third));
+
+        var page = notesService.getNotes(null, 2, NoteFields.ALL);
+
+        assertEquals(List.of(note, second), page.getNotes());
+        assertNotNull(page.getNextCursor());
+
+        when(notesRepository.findPageByUserId(eq(authenticatedUser.getId()), notNull(), eq(3), any(String[].class))).thenReturn(List.of(third));
+        var nextPage = notesService.getNotes(page.getNextCursor(), 2, NoteFields.ALL);
+
+        assertEquals(List.of(third), nextPage.getNotes());
+        assertNull(nextPage.getNextCursor());
+        verify(notesRepository).findPageByUserId(eq(authenticatedUser.getId()),
+                eq(new NoteCursor(Instant.ofEpochMilli(second.getUpdatedAt().toEpochMilli()), "note2")), eq(3), any(String[].class));
+    }
+
+    @Test
+    void testGetNotes_PageSizeCapped() {
+        notesService.maxPageSize = 10;
+        when(usersService.getAuthenticatedPrincipal()).thenReturn(authenticatedPrincipal);
+        when(notesRepository.findPageByUserId(any(), any(), anyInt(), any(String[].class))).thenReturn(List.of());
 
-        var notes = notesService.getAllNotes();
+        notesService.getNotes(null, 1000, NoteFields.SUMMARY);
+        notesService.getNotes(null, 0, NoteFields.SUMMARY);
 
-        assertEquals(1, notes.size());
-        assertEquals(note, notes.get(0));
-        verify(usersService).getAuthenticatedUser();
-        verify(notesRepository).findByUserId(authenticatedUser.getId());
+        verify(notesRepository).findPageByUserId(eq(authenticatedUser.getId()), isNull(), eq(11), any(String[].class));
+        verify(notesRepository).findPageByUserId(eq(authenticatedUser.getId()), isNull(), eq(2), any(String[].class));
+    }
+
+    @Test
+    void testGetNotes_InvalidCursor() {
+        when(usersService.getAuthenticatedPrincipal()).thenReturn(authenticatedPrincipal);
+
+        assertThrows(NotesException.class, () -> notesService.getNotes("not-a-cursor", null, NoteFields.SUMMARY));
+        verify(notesRepository, never()).findPageByUserId(any(), any(), anyInt(), any(String[].class));
     }
 
     @Test
     void testGetNoteById() {
-        when(usersService.getAuthenticatedUser()).thenReturn(authenticatedUser);
-        when(notesRepository.findById("note1")).thenReturn(Optional.of(note));
+        when(usersService.getAuthenticatedPrincipal()).thenReturn(authenticatedPrincipal);
+        when(notesRepository.findProjectedById(eq("note1"), any(String[].class))).thenReturn(Optional.of(note));
 
-        var foundNote = notesService.getNoteById("note1");
+        var foundNote = notesService.getNoteById("note1", NoteFields.ALL);
 
         assertTrue(foundNote.isPresent());
         assertEquals(note, foundNote.get());
-        verify(usersService).getAuthenticatedUser();
-        verify(notesRepository).findById("note1");
+        verify(usersService).getAuthenticatedPrincipal();
+        verify(notesRepository).findProjectedById("note1", "id", "userId", "title", "content", "createdAt", "updatedAt", "version");
+    }
+
+    @Test
+    void testGetNoteById_OnlyRequestedFields() {
+        when(usersService.getAuthenticatedPrincipal()).thenReturn(authenticatedPrincipal);
+        when(notesRepository.findProjectedById(eq("note1"), any(String[].class))).thenReturn(Optional.of(note));
+
+        var foundNote = notesService.getNoteById("note1", NoteFields.parse("title", NoteFields.ALL));
+
+        // The owner is read for the ownership check but not returned
+        verify(notesRepository).findProjectedById("note1", "title", "userId");
+        assertEquals("Test Note", foundNote.get().getTitle());
+        assertNull(foundNote.get().getUserId());
+        assertNull(foundNote.get().getContent());
+        assertNull(foundNote.get().getId());
+    }
+
+    @Test
+    void testGetNotes_SummaryLeavesContentOut() {
+        when(usersService.getAuthenticatedPrincipal()).thenReturn(authenticatedPrincipal);
+        when(notesRepository.findPageByUserId(eq(authenticatedUser.getId()), isNull(), eq(51), any(String[].class))).thenReturn(List.of(note));
+
+        var page = notesService.getNotes(null, null, NoteFields.SUMMARY);
+
+        verify(notesRepository).findPageByUserId(authenticatedUser.getId(), null, 51, "id", "title", "createdAt", "updatedAt");
+        assertNull(page.getNotes().get(0).getContent());
+        assertNull(page.getNotes().get(0).getUserId());
+        assertEquals("Test Note", page.getNotes().get(0).getTitle());
+    }
+
+    @Test
+    void testParseFields_InvalidField() {
+        assertThrows(NotesException.class, () -> NoteFields.parse("title,password", NoteFields.SUMMARY));
+        assertSame(NoteFields.SUMMARY, NoteFields.parse(" ", NoteFields.SUMMARY));
     }
 
     @Test
     void testCreateNote() {
-        when(usersService.getAuthenticatedUser()).thenReturn(authenticatedUser);
+        when(usersService.getAuthenticatedPrincipal()).thenReturn(authenticatedPrincipal);
         when(convertorUtil.convertNoteDtoToNote(noteDto)).thenReturn(note);
         when(notesRepository.save(note)).thenReturn(note);
 
@@ -95,59 +204,171 @@ public class NotesServiceTest {
         assertEquals(note.getTitle(), createdNote.getTitle());
         assertEquals(note.getContent(), createdNote.getContent());
         assertEquals(authenticatedUser.getId(), createdNote.getUserId());
-        verify(usersService).getAuthenticatedUser();
+        verify(usersService).getAuthenticatedPrincipal();
         verify(convertorUtil).convertNoteDtoToNote(noteDto);
         verify(notesRepository).save(note);
+        verify(noteSearchEngine).index(note);
+        verify(noteSuggester).update("1", "note1", "Test Note");
+        verify(usersService).notesChanged("1", "note1");
+    }
+
+    @Test
+    void testCreateNote_VersionInBody_Ignored() {
+        noteDto.setVersion(3L);
+        note.setVersion(3L);
+        when(usersService.getAuthenticatedPrincipal()).thenReturn(authenticatedPrincipal);
+        when(convertorUtil.convertNoteDtoToNote(noteDto)).thenReturn(note);
+        when(notesRepository.save(note)).thenReturn(note);
+
+        notesService.createNote(noteDto);
+
+        // Saved as a new note, not as a versioned update of a note without an id
+        ArgumentCaptor<Note> saved = ArgumentCaptor.forClass(Note.class);
+        verify(notesRepository).save(saved.capture());
+        assertNull(saved.getValue().getVersion());
     }
 
     @Test
     void testUpdateNote() {
+        Note previous = new Note();
+        previous.setId("note1");
+        previous.setUserId(authenticatedUser.getId());
+        previous.setTitle("Old Note");
+        previous.setContent("This is an old note.");
+        previous.setVersion(3L);
+        noteDto.setVersion(3L);
         when(convertorUtil.convertNoteDtoToNote(any())).thenReturn(note);
-        when(usersService.getAuthenticatedUser()).thenReturn(authenticatedUser);
-        when(notesRepository.findById("note1")).thenReturn(Optional.of(note));
-        when(notesRepository.save(note)).thenReturn(note);
+        when(usersService.getAuthenticatedPrincipal()).thenReturn(authenticatedPrincipal);
+        when(notesRepository.updateFields(eq("note1"), eq("1"), eq(3L), eq("Test Note"), eq("This is a test note."), any()))
+                .thenReturn(Optional.of(previous));
 
         var updatedNote = notesService.updateNote("note1", noteDto);
 
         assertTrue(updatedNote.isPresent());
         assertEquals(noteDto.getTitle(), updatedNote.get().getTitle());
         assertEquals(noteDto.getContent(), updatedNote.get().getContent());
-        verify(usersService).getAuthenticatedUser();
-        verify(notesRepository).findById("note1");
-        verify(notesRepository).save(note);
+        assertEquals(4L, updatedNote.get().getVersion());
+        verify(usersService).getAuthenticatedPrincipal();
+        verify(notesRepository, never()).findById(any());
+        verify(notesRepository, never()).save(any());
+        verify(noteSearchEngine).index(updatedNote.get());
+        verify(noteSuggester).update("1", "note1", "Test Note");
+        verify(usersService).notesChanged("1", "note1");
     }
 
     @Test
     void testUpdateNote_NoteNotBelongToUser() {
-        when(usersService.getAuthenticatedUser()).thenReturn(authenticatedUser);
+        when(convertorUtil.convertNoteDtoToNote(any())).thenReturn(note);
+        when(usersService.getAuthenticatedPrincipal()).thenReturn(authenticatedPrincipal);
         Note otherNote = new Note();
         otherNote.setUserId("2");
-        when(notesRepository.findById("note1")).thenReturn(Optional.of(otherNote));
+        when(notesRepository.updateFields(eq("note1"), eq("1"), any(), any(), any(), any())).thenReturn(Optional.empty());
+        when(notesRepository.findProjectedById(eq("note1"), any(String[].class))).thenReturn(Optional.of(otherNote));
 
         NotesException thrown = assertThrows(NotesException.class, () -> {
             notesService.updateNote("note1", noteDto);
         });
 
         assertEquals("Invalid note. Please try again! Reason: The note does not belong to the user!", thrown.getMessage());
-        verify(usersService).getAuthenticatedUser();
-        verify(notesRepository).findById("note1");
+        verify(usersService).getAuthenticatedPrincipal();
+        verify(noteSearchEngine, never()).index(any());
+    }
+
+    @Test
+    void testUpdateNote_StaleVersionConflicts() {
+        noteDto.setVersion(3L);
+        Note current = new Note();
+        current.setUserId(authenticatedUser.getId());
+        current.setVersion(4L);
+        when(convertorUtil.convertNoteDtoToNote(any())).thenReturn(note);
+        when(usersService.getAuthenticatedPrincipal()).thenReturn(authenticatedPrincipal);
+        when(notesRepository.updateFields(eq("note1"), eq("1"), eq(3L), any(), any(), any())).thenReturn(Optional.empty());
+        when(notesRepository.findProjectedById(eq("note1"), any(String[].class))).thenReturn(Optional.of(current));
+
+        assertThrows(NoteConflictException.class, () -> notesService.updateNote("note1", noteDto));
+        verify(noteSearchEngine, never()).index(any());
+        verify(usersService, never()).notesChanged(any(), any());
+    }
+
+    @Test
+    void testUpdateNote_NotFound() {
+        when(convertorUtil.convertNoteDtoToNote(any())).thenReturn(note);
+        when(usersService.getAuthenticatedPrincipal()).thenReturn(authenticatedPrincipal);
+        when(notesRepository.updateFields(any(), any(), any(), any(), any(), any())).thenReturn(Optional.empty());
+        when(notesRepository.findProjectedById(eq("missing"), any(String[].class))).thenReturn(Optional.empty());
+
+        assertTrue(notesService.updateNote("missing", noteDto).isEmpty());
+    }
+
+    @Test
+    void testGetNoteETag_ReadsOnlyTheVersion() {
+        Note version = new Note();
+        version.setVersion(2L);
+        version.setUpdatedAt(note.getUpdatedAt());
+        when(usersService.getAuthenticatedPrincipal()).thenReturn(authenticatedPrincipal);
+        when(notesRepository.findVersionById("note1", "1")).thenReturn(Optional.of(version));
+
+        assertEquals(Optional.of(NoteETags.of(2L, note.getUpdatedAt(), NoteFields.ALL)), notesService.getNoteETag("note1", NoteFields.ALL));
+        assertEquals(Optional.empty(), notesService.getNoteETag("missing", NoteFields.ALL));
+        verify(notesRepository, never()).findProjectedById(any(), any(String[].class));
+        verify(notesRepository, never()).findById(any());
+    }
+
+    @Test
+    void testGetNoteVersion_FromTheIndexLookup() {
+        Note unversioned = new Note();
+        when(usersService.getAuthenticatedPrincipal()).thenReturn(authenticatedPrincipal);
+        when(notesRepository.findVersionById("note1", "1")).thenReturn(Optional.of(unversioned));
+
+        // The notes created before the versioning are at version 0
+        assertEquals(Optional.of(0L), notesService.getNoteVersion("note1"));
+        assertEquals(Optional.empty(), notesService.getNoteVersion("missing"));
+        verify(notesRepository, never()).findById(any());
+    }
+
+    @Test
+    void testGetNotesETag_ChangesWithNotesGeneration() {
+        when(usersService.getAuthenticatedPrincipal()).thenReturn(authenticatedPrincipal);
+        when(usersService.getNotesGeneration("1")).thenReturn(4L, 5L);
+
+        String before = notesService.getNotesETag(null, null, NoteFields.SUMMARY);
+        String after = notesService.getNotesETag(null, null, NoteFields.SUMMARY);
+
+        assertNotEquals(before, after);
+        verify(notesRepository, never()).findPageByUserId(any(), any(), anyInt(), any(String[].class));
+    }
+
+    @Test
+    void testDeleteNote_StaleVersionConflicts() {
+        note.setVersion(2L);
+        when(usersService.getAuthenticatedPrincipal()).thenReturn(authenticatedPrincipal);
+        when(notesRepository.findById("note1")).thenReturn(Optional.of(note));
+
+        assertThrows(NoteConflictException.class, () -> notesService.deleteNote("note1", 1L));
+        verify(notesRepository, never()).delete(any());
+
+        assertTrue(notesService.deleteNote("note1", 2L));
+        verify(notesRepository).delete(note);
     }
 
     @Test
     void testDeleteNote() {
-        when(usersService.getAuthenticatedUser()).thenReturn(authenticatedUser);
+        when(usersService.getAuthenticatedPrincipal()).thenReturn(authenticatedPrincipal);
         when(notesRepository.findById("note1")).thenReturn(Optional.of(note));
 
         notesService.deleteNote("note1");
 
         verify(notesRepository).delete(note);
-        verify(usersService).getAuthenticatedUser();
+        verify(noteSearchEngine).remove("note1");
+        verify(noteSuggester).update("1", "note1", null);
+        verify(usersService).notesChanged("1", "note1");
+        verify(usersService).getAuthenticatedPrincipal();
         verify(notesRepository).findById("note1");
     }
 
     @Test
     void testDeleteNote_NoteNotBelongToUser() {
-        when(usersService.getAuthenticatedUser()).thenReturn(authenticatedUser);
+        when(usersService.getAuthenticatedPrincipal()).thenReturn(authenticatedPrincipal);
         Note otherNote = new Note();
         otherNote.setUserId("2");
         when(notesRepository.findById("note1")).thenReturn(Optional.of(otherNote));
@@ -157,7 +378,7 @@ public class NotesServiceTest {
         });
 
         assertEquals("Invalid note. Please try again! Reason: The note does not belong to the user!", thrown.getMessage());
-        verify(usersService).getAuthenticatedUser();
+        verify(usersService).getAuthenticatedPrincipal();
         verify(notesRepository).findById("note1");
     }
 
@@ -165,14 +386,16 @@ public class NotesServiceTest {
     void testShareNoteToAnotherUser() {
         String email = "shareduser@example.com";
         when(usersService.findUserByEmail(email)).thenReturn(authenticatedUser);
-        when(usersService.getAuthenticatedUser()).thenReturn(authenticatedUser);
+        when(usersService.getAuthenticatedPrincipal()).thenReturn(authenticatedPrincipal);
         when(notesRepository.findById("note1")).thenReturn(Optional.of(note));
+        when(usersService.shareNoteWithUser(authenticatedUser, "note1")).thenReturn(true);
 
         boolean status = notesService.shareNoteToAnotherUser("note1", email);
 
         assertTrue(status);
+        verify(usersService).shareNoteWithUser(authenticatedUser, "note1");
         verify(usersService).findUserByEmail(email);
-        verify(usersService).getAuthenticatedUser();
+        verify(usersService).getAuthenticatedPrincipal();
         verify(notesRepository).findById("note1");
     }
 
@@ -180,7 +403,7 @@ public class NotesServiceTest {
     void testShareNoteToAnotherUser_NoteNotBelongToUser() {
         String email = "shareduser@example.com";
         when(usersService.findUserByEmail(email)).thenReturn(authenticatedUser);
-        when(usersService.getAuthenticatedUser()).thenReturn(authenticatedUser);
+        when(usersService.getAuthenticatedPrincipal()).thenReturn(authenticatedPrincipal);
         Note otherNote = new Note();
         otherNote.setUserId("2");
         when(notesRepository.findById("note1")).thenReturn(Optional.of(otherNote));
@@ -189,20 +412,128 @@ public class NotesServiceTest {
 
         assertFalse(status);
         verify(usersService).findUserByEmail(email);
-        verify(usersService).getAuthenticatedUser();
+        verify(usersService).getAuthenticatedPrincipal();
         verify(notesRepository).findById("note1");
     }
 
     @Test
     void testSearchNoteForQuery() {
-        when(usersService.getAuthenticatedUser()).thenReturn(authenticatedUser);
-        when(notesRepository.searchNotes("test")).thenReturn(List.of(note));
+        Note sharedNote = new Note();
+        sharedNote.setId("note2");
+        sharedNote.setUserId("2");
+        when(usersService.getAuthenticatedPrincipal()).thenReturn(authenticatedPrincipal);
+        when(usersService.getNotesScope("1")).thenReturn(notesScope(7, "note2"));
+        when(noteSearchEngine.searchPage(eq("test query"), eq("1"), eq(Set.of("note2")), isNull(), eq(50), any(String[].class)))
+                .thenReturn(new NoteSearchPage(List.of(note, sharedNote), null));
+        when(noteSearchEngine.isCurrent()).thenReturn(true);
+
+        var result = notesService.searchNoteForQuery("  Test   QUERY ", null, null, NoteFields.ALL);
+
+        // The access filter is left to the search engine
+        assertEquals(List.of(note, sharedNote), result.getNotes());
+        assertNull(result.getNextCursor());
+        verify(usersService, never()).getAuthenticatedUser();
+        verify(searchResultCache).put(new SearchResultCache.Key("1", 7, "test query", null, 50),
+                new SearchResultCache.Page(List.of("note1", "note2"), null));
+    }
+
+    @Test
+    void testSearchNoteForQuery_CachedPageReadById() {
+        Note sharedNote = new Note();
+        sharedNote.setId("note2");
+        when(usersService.getAuthenticatedPrincipal()).thenReturn(authenticatedPrincipal);
+        when(usersService.getNotesScope("1")).thenReturn(notesScope(7, "note2"));
+        when(searchResultCache.get(new SearchResultCache.Key("1", 7, "test", null, 50)))
+                .thenReturn(new SearchResultCache.Page(List.of("note2", "note1"), "next"));
+        when(notesRepository.findProjectedByIds(eq(List.of("note2", "note1")), any(String[].class))).thenReturn(List.of(note, sharedNote));
+
+        var result = notesService.searchNoteForQuery("test", null, null, NoteFields.ALL);
+
+        // In the cached order, without searching again
+        assertEquals(List.of(sharedNote, note), result.getNotes());
+        assertEquals("next", result.getNextCursor());
+        verifyNoInteractions(noteSearchEngine);
+    }
+
+    @Test
+    void testSearchNoteForQuery_LaggingEngineNotCached() {
+        when(usersService.getAuthenticatedPrincipal()).thenReturn(authenticatedPrincipal);
+        when(usersService.getNotesScope("1")).thenReturn(notesScope(7));
+        when(noteSearchEngine.searchPage(any(), any(), any(), any(), anyInt(), any(String[].class)))
+                .thenReturn(new NoteSearchPage(List.of(note), null));
+        when(noteSearchEngine.isCurrent()).thenReturn(false);
+
+        notesService.searchNoteForQuery("test", null, null, NoteFields.ALL);
 
-        var result = notesService.searchNoteForQuery("test");
+        verify(searchResultCache, never()).put(any(), any());
+    }
+
+    private static User notesScope(long notesGeneration, String... sharedNoteIds) {
+        User user = new User();
+        user.setNotesGeneration(notesGeneration);
+        user.setSharedNotes(Set.of(sharedNoteIds));
+        return user;
+    }
+
+    @Test
+    void testSearchNoteForQuery_NextCursorResumesAfterLastHit() {
+        when(usersService.getAuthenticatedPrincipal()).thenReturn(authenticatedPrincipal);
+        when(usersService.getNotesScope("1")).thenReturn(notesScope(0));
+        // The last hit of the page was deleted from MongoDB, the next page still follows it
+        when(noteSearchEngine.searchPage(eq("test"), eq("1"), eq(Set.of()), any(), eq(2), any(String[].class)))
+                .thenReturn(new NoteSearchPage(List.of(note), new NoteSearchCursor(1.25, "deleted")));
+
+        var page = notesService.searchNoteForQuery("test", null, 2, NoteFields.SUMMARY);
+
+        assertEquals(List.of(note), page.getNotes());
+        assertEquals(new NoteSearchCursor(1.25, "deleted"), NoteSearchCursor.decode(page.getNextCursor()));
+
+        notesService.searchNoteForQuery("test", page.getNextCursor(), 2, NoteFields.SUMMARY);
+        verify(noteSearchEngine).searchPage("test", "1", Set.of(), new NoteSearchCursor(1.25, "deleted"), 2,
+                "id", "title", "createdAt", "updatedAt");
+    }
+
+    @Test
+    void testSearchNoteForQuery_InvalidCursor() {
+        when(usersService.getAuthenticatedPrincipal()).thenReturn(authenticatedPrincipal);
+
+        assertThrows(NotesException.class, () -> notesService.searchNoteForQuery("test", "not-a-cursor", null, NoteFields.ALL));
+    }
+
+    @Test
+    void testStreamNotes() {
+        when(usersService.getAuthenticatedPrincipal()).thenReturn(authenticatedPrincipal);
+        when(notesRepository.streamByUserId(eq("1"), any(String[].class))).thenReturn(Stream.of(note));
+
+        try (Stream<Note> result = notesService.streamNotes(NoteFields.SUMMARY)) {
+            List<Note> notes = result.toList();
+            assertEquals(1, notes.size());
+            assertNull(notes.get(0).getContent());
+        }
+        verify(notesRepository).streamByUserId("1", "id", "title", "createdAt", "updatedAt");
+    }
+
+    @Test
+    void testStreamSearchNotes() {
+        AtomicBoolean closed = new AtomicBoolean();
+        when(usersService.getAuthenticatedPrincipal()).thenReturn(authenticatedPrincipal);
+        when(usersService.getSharedNoteIds("1")).thenReturn(Set.of("note2"));
+        when(noteSearchEngine.streamSearch(eq("test"), eq("1"), eq(Set.of("note2")), any(String[].class)))
+                .thenReturn(Stream.of(note).onClose(() -> closed.set(true)));
+
+        try (Stream<Note> result = notesService.streamSearchNotes("test", NoteFields.ALL)) {
+            assertEquals(List.of(note), result.toList());
+        }
+        // Closing the returned stream closes the database cursor
+        assertTrue(closed.get());
+    }
+
+    @Test
+    void testSuggest() {
+        when(usersService.getAuthenticatedPrincipal()).thenReturn(authenticatedPrincipal);
+        when(noteSuggester.suggest("1", "te", 10)).thenReturn(List.of("test"));
 
-        assertFalse(result.isEmpty());
-        assertEquals(note, result.get(0));
-        verify(usersService).getAuthenticatedUser();
-        verify(notesRepository).searchNotes("test");
+        assertEquals(List.of("test"), notesService.suggest("te", null));
+        verifyNoInteractions(notesRepository);
     }
-}
\ No newline at end of file
+}
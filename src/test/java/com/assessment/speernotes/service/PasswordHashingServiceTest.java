@@ -0,0 +1,158 @@
+package com.assessment.speernotes.service;
+
+import com.assessment.speernotes.exceptions.TooManyRequestsException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class PasswordHashingServiceTest {
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final ExecutorService callers = Executors.newFixedThreadPool(2);
+    private PasswordHashingService passwordHashingService;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        callers.shutdownNow();
+        passwordHashingService.shutdown();
+    }
+
+    private PasswordHashingService createService(PasswordEncoder passwordEncoder) {
+        PasswordHashingService service = new PasswordHashingService(passwordEncoder, 1, 1, 8);
+        service.timeoutMs = 5000;
+        service.bulkTimeoutMs = 5000;
+        service.retryAfterSeconds = 2;
+        return service;
+    }
+
+    @Test
+    void testEncodeAndMatches_DelegateToEncoder() {
+        PasswordEncoder passwordEncoder = mock(PasswordEncoder.class);
+        when(passwordEncoder.encode("password")).thenReturn("hash");
+        when(passwordEncoder.matches("password", "hash")).thenReturn(true);
+        passwordHashingService = createService(passwordEncoder);
+
+        assertEquals("hash", passwordHashingService.encode("password"));
+        assertTrue(passwordHashingService.matches("password", "hash"));
+    }
+
+    @Test
+    void testEncodeAll_KeepsOrderWithBoundedParallelism() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        PasswordEncoder passwordEncoder = mock(PasswordEncoder.class);
+        when(passwordEncoder.encode(anyString())).thenAnswer(invocation -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(5);
+            running.decrementAndGet();
+            return "hash-" + invocation.getArgument(0);
+        });
+        passwordHashingService = new PasswordHashingService(passwordEncoder, 4, 1, 8);
+        passwordHashingService.bulkTimeoutMs = 5000;
+
+        List<String> hashes = passwordHashingService.encodeAll(List.of("a", "b", "c", "d", "e", "f"));
+
+        assertEquals(List.of("hash-a", "hash-b", "hash-c", "hash-d", "hash-e", "hash-f"), hashes);
+        assertTrue(maxRunning.get() <= 2, "Bulk hashing used more than half of the pool");
+    }
+
+    @Test
+    void testEncode_QueueFull_RejectsFast() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch queued = new CountDownLatch(1);
+        PasswordEncoder passwordEncoder = mock(PasswordEncoder.class);
+        when(passwordEncoder.encode(anyString())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return "hash";
+        });
+        BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(1) {
+            @Override
+            public boolean offer(Runnable task) {
+                boolean offered = super.offer(task);
+                if (offered) {
+                    queued.countDown();
+                }
+                return offered;
+            }
+        };
+        passwordHashingService = new PasswordHashingService(passwordEncoder, 1, queue, new ArrayBlockingQueue<>(8));
+        passwordHashingService.timeoutMs = 5000;
+        passwordHashingService.retryAfterSeconds = 2;
+
+        // One task occupies the only thread and one waits in the queue
+        callers.submit(() -> passwordHashingService.encode("first"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        callers.submit(() -> passwordHashingService.encode("second"));
+        assertTrue(queued.await(5, TimeUnit.SECONDS));
+
+        TooManyRequestsException thrown = assertThrows(TooManyRequestsException.class,
+                () -> passwordHashingService.encode("third"));
+        assertEquals(2, thrown.getRetryAfterSeconds());
+    }
+
+    @Test
+    void testEncodeAll_LoginQueueFull_BulkStillServed() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        PasswordEncoder passwordEncoder = mock(PasswordEncoder.class);
+        when(passwordEncoder.encode(anyString())).thenAnswer(invocation -> "hash-" + invocation.getArgument(0));
+        when(passwordEncoder.matches(anyString(), anyString())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return true;
+        });
+        passwordHashingService = createService(passwordEncoder);
+
+        // The only login thread is busy, the bulk hashing runs on its own threads and queue
+        callers.submit(() -> passwordHashingService.matches("login", "hash"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        assertEquals(List.of("hash-a", "hash-b", "hash-c"), passwordHashingService.encodeAll(List.of("a", "b", "c")));
+    }
+
+    @Test
+    void testEncodeAll_MoreThanBulkQueue_RejectedUpFront() {
+        PasswordEncoder passwordEncoder = mock(PasswordEncoder.class);
+        passwordHashingService = new PasswordHashingService(passwordEncoder, 2, new ArrayBlockingQueue<>(1), new ArrayBlockingQueue<>(2));
+
+        assertThrows(TooManyRequestsException.class, () -> passwordHashingService.encodeAll(List.of("a", "b", "c")));
+        verify(passwordEncoder, never()).encode(anyString());
+    }
+
+    @Test
+    void testEncodeAll_BulkTimeout_Rejected() {
+        PasswordEncoder passwordEncoder = mock(PasswordEncoder.class);
+        when(passwordEncoder.encode(anyString())).thenAnswer(invocation -> {
+            release.await(10, TimeUnit.SECONDS);
+            return "hash";
+        });
+        passwordHashingService = createService(passwordEncoder);
+        passwordHashingService.bulkTimeoutMs = 50;
+
+        assertThrows(TooManyRequestsException.class, () -> passwordHashingService.encodeAll(List.of("a", "b")));
+    }
+
+    @Test
+    void testGetMaxBulkSize_BoundedByTimeoutAndQueue() {
+        passwordHashingService = new PasswordHashingService(mock(PasswordEncoder.class), 4, 1, 100);
+        passwordHashingService.bulkTimeoutMs = 1000;
+        passwordHashingService.targetLatencyMs = 250;
+
+        // Two bulk threads hash four passwords each within the timeout
+        assertEquals(8, passwordHashingService.getMaxBulkSize());
+        passwordHashingService.bulkTimeoutMs = 60000;
+        assertEquals(100, passwordHashingService.getMaxBulkSize());
+    }
+}
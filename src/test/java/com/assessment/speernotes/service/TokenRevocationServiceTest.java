@@ -0,0 +1,137 @@
+package com.assessment.speernotes.service;
+
+import com.assessment.speernotes.model.RevokedToken;
+import com.assessment.speernotes.model.User;
+import com.assessment.speernotes.repository.RevokedTokensRepository;
+import com.assessment.speernotes.repository.UsersRepository;
+import com.assessment.speernotes.utils.JwtUtil;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Date;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class TokenRevocationServiceTest {
+    @Mock
+    private UsersRepository userRepository;
+
+    @Mock
+    private RevokedTokensRepository revokedTokensRepository;
+
+    @InjectMocks
+    private TokenRevocationService tokenRevocationService;
+
+    private User user;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+
+        user = new User("testuser", "test@example.com", "password");
+        user.setId("1");
+        user.setTokenVersion(2);
+
+        tokenRevocationService.expectedRevocations = 100;
+        tokenRevocationService.falsePositiveRate = 0.0001;
+    }
+
+    private Claims claimsWithId(String tokenId) {
+        return Jwts.claims().subject(user.getEmail())
+                .id(tokenId)
+                .add(JwtUtil.CLAIM_USER_ID, user.getId())
+                .expiration(new Date(System.currentTimeMillis() + 60000))
+                .build();
+    }
+
+    private Claims claimsWithVersion(long version) {
+        return Jwts.claims().subject(user.getEmail())
+                .add(JwtUtil.CLAIM_USER_ID, user.getId())
+                .add(JwtUtil.CLAIM_TOKEN_VERSION, version)
+                .build();
+    }
+
+    @Test
+    public void testIsRevoked_CurrentVersion_NotRevoked() {
+        when(userRepository.findTokenVersionById("1")).thenReturn(Optional.of(user));
+
+        assertFalse(tokenRevocationService.isRevoked(claimsWithVersion(2)));
+    }
+
+    @Test
+    public void testIsRevoked_OutdatedVersion_Revoked() {
+        when(userRepository.findTokenVersionById("1")).thenReturn(Optional.of(user));
+
+        assertTrue(tokenRevocationService.isRevoked(claimsWithVersion(1)));
+        // Not the cached lookup, which would keep the token working on the other nodes until it expires
+        verify(userRepository, never()).findById(any());
+    }
+
+    @Test
+    public void testIsRevoked_DeletedUser_Revoked() {
+        when(userRepository.findTokenVersionById("1")).thenReturn(Optional.empty());
+
+        assertTrue(tokenRevocationService.isRevoked(claimsWithVersion(2)));
+    }
+
+    @Test
+    public void testIsRevoked_LegacyToken_NotChecked() {
+        assertFalse(tokenRevocationService.isRevoked(Jwts.claims().subject(user.getEmail()).build()));
+        verifyNoInteractions(userRepository, revokedTokensRepository);
+    }
+
+    @Test
+    public void testIsRevoked_TokenIdNotInFilter_NoLookup() {
+        when(revokedTokensRepository.streamActiveTokenIds(any())).thenReturn(Stream.of(new RevokedToken("other", "1", new Date())));
+        tokenRevocationService.rebuildFilter();
+
+        assertFalse(tokenRevocationService.isRevoked(claimsWithId("token-1")));
+        verify(revokedTokensRepository, never()).existsById(any());
+    }
+
+    @Test
+    public void testIsRevoked_BeforeFirstRebuild_LooksUpStore() {
+        when(revokedTokensRepository.existsById("token-1")).thenReturn(true);
+
+        assertTrue(tokenRevocationService.isRevoked(claimsWithId("token-1")));
+    }
+
+    @Test
+    public void testRevoke_StoresTokenAndRejectsIt() {
+        when(revokedTokensRepository.streamActiveTokenIds(any())).thenReturn(Stream.empty());
+        tokenRevocationService.rebuildFilter();
+        Claims claims = claimsWithId("token-1");
+
+        assertTrue(tokenRevocationService.revoke(claims));
+        when(revokedTokensRepository.existsById("token-1")).thenReturn(true);
+
+        assertTrue(tokenRevocationService.isRevoked(claims));
+        verify(revokedTokensRepository).save(argThat(revoked -> revoked.getId().equals("token-1")
+                && revoked.getExpiresAt().equals(claims.getExpiration())));
+    }
+
+    @Test
+    public void testRebuildFilter_KeepsRevocationsMissedByTheQuery() {
+        tokenRevocationService.revoke(claimsWithId("token-1"));
+        when(revokedTokensRepository.streamActiveTokenIds(any())).thenReturn(Stream.empty());
+        when(revokedTokensRepository.existsById("token-1")).thenReturn(true);
+
+        tokenRevocationService.rebuildFilter();
+
+        assertTrue(tokenRevocationService.isRevoked(claimsWithId("token-1")));
+    }
+
+    @Test
+    public void testRevoke_TokenWithoutId_NotRevoked() {
+        assertFalse(tokenRevocationService.revoke(claimsWithVersion(2)));
+        verifyNoInteractions(revokedTokensRepository);
+    }
+}
@@ -3,22 +3,25 @@ package com.assessment.speernotes.service;
 import static org.mockito.Mockito.*;
 import static org.junit.jupiter.api.Assertions.*;
 
+import com.assessment.speernotes.exceptions.TooManyRequestsException;
 import com.assessment.speernotes.exceptions.UserException;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.dao.DuplicateKeyException;
 import org.mockito.*;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.crypto.password.PasswordEncoder;
 
 import com.assessment.speernotes.repository.*;
 import com.assessment.speernotes.utils.*;
 import com.assessment.speernotes.model.*;
 import com.assessment.speernotes.model.dto.*;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.Collections;
 
 @ExtendWith(MockitoExtension.class)
@@ -34,7 +37,7 @@ public class UsersServiceTest {
     private ConvertorUtil convertorUtil;
 
     @Mock
-    private PasswordEncoder passwordEncoder;
+    private PasswordHashingService passwordHashingService;
 
     @InjectMocks
     private UsersService usersService;
@@ -74,6 +77,38 @@ public class UsersServiceTest {
         assertThrows(UserException.class, () -> usersService.getAuthenticatedUser());
     }
 
+    // Test for getAuthenticatedPrincipal()
+    @Test
+    void testGetAuthenticatedPrincipal_FromFilter_NoLookup() {
+        User user = new User("testuser", "testuser@example.com", "password");
+        user.setId("1");
+
+        Authentication authentication = mock(Authentication.class);
+        when(authentication.getPrincipal()).thenReturn(UserPrincipal.from(user));
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+
+        UserPrincipal principal = usersService.getAuthenticatedPrincipal();
+        assertEquals("1", principal.getId());
+        assertEquals("testuser@example.com", principal.getUsername());
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void testGetAuthenticatedPrincipal_PlainUserDetails_ResolvesUser() {
+        String email = "testuser@example.com";
+        User user = new User("testuser", email, "password");
+        user.setId("1");
+        when(userRepository.findByEmail(email)).thenReturn(Optional.of(user));
+
+        Authentication authentication = mock(Authentication.class);
+        UserDetails userDetails = new org.springframework.security.core.userdetails.User(email, "password",
+                Collections.singletonList(new SimpleGrantedAuthority("USER")));
+        when(authentication.getPrincipal()).thenReturn(userDetails);
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+
+        assertEquals("1", usersService.getAuthenticatedPrincipal().getId());
+    }
+
     // Test for findUserByEmail()
     @Test
     void testFindUserByEmail_Success() {
@@ -124,7 +159,7 @@ public class UsersServiceTest {
         User user = new User();
         user.setPassword(encodedPassword);
 
-        when(passwordEncoder.matches(any(), any())).thenReturn(true);
+        when(passwordHashingService.matches(any(), any())).thenReturn(true);
 
         boolean result = usersService.isPasswordMatching(user, user);
         assertTrue(result);
@@ -137,18 +172,52 @@ public class UsersServiceTest {
         User user = new User();
         user.setPassword(encodedPassword);
 
-        when(passwordEncoder.matches(any(), any())).thenReturn(false);
+        when(passwordHashingService.matches(any(), any())).thenReturn(false);
 
         boolean result = usersService.isPasswordMatching(user, user);
         assertFalse(result);
     }
 
-    // Test for saveUser()
+    // Test for shareNoteWithUser()
     @Test
-    void testSaveUser() {
+    void testShareNoteWithUser() {
         User user = new User();
-        usersService.saveUser(user);
-        verify(userRepository, times(1)).save(user);
+        user.setId("1");
+        when(userRepository.addSharedNote(user, "note1")).thenReturn(true);
+
+        assertTrue(usersService.shareNoteWithUser(user, "note1"));
+        verify(userRepository, never()).save(any());
+    }
+
+    @Test
+    void testGetSharedNoteIds() {
+        User user = new User();
+        user.setSharedNotes(Set.of("note1"));
+        when(userRepository.findSharedNotesById("1")).thenReturn(Optional.of(user));
+        when(userRepository.findSharedNotesById("2")).thenReturn(Optional.empty());
+
+        assertEquals(Set.of("note1"), usersService.getSharedNoteIds("1"));
+        assertTrue(usersService.getSharedNoteIds("2").isEmpty());
+    }
+
+    @Test
+    void testGetNotesScope() {
+        User user = new User();
+        user.setSharedNotes(Set.of("note1"));
+        user.setNotesGeneration(4);
+        when(userRepository.findSharedNotesById("1")).thenReturn(Optional.of(user));
+        when(userRepository.findSharedNotesById("2")).thenReturn(Optional.empty());
+
+        assertEquals(4, usersService.getNotesScope("1").getNotesGeneration());
+        assertEquals(0, usersService.getNotesScope("2").getNotesGeneration());
+        assertTrue(usersService.getNotesScope("2").getSharedNotes().isEmpty());
+    }
+
+    @Test
+    void testNotesChanged() {
+        usersService.notesChanged("1", "note1");
+
+        verify(userRepository).incrementNotesGeneration("1", "note1");
     }
 
     // Test for createUser()
@@ -158,12 +227,80 @@ public class UsersServiceTest {
         User user = new User();
         user.setEmail(userAuthDto.getEmail());
         when(convertorUtil.convertUserAuthDtoToUser(userAuthDto)).thenReturn(user);
-        when(passwordEncoder.encode(userAuthDto.getPassword())).thenReturn("encodedPassword");
+        when(passwordHashingService.encode(userAuthDto.getPassword())).thenReturn("encodedPassword");
+
+        assertTrue(usersService.createUser(userAuthDto));
+
+        verify(passwordHashingService, times(1)).encode(userAuthDto.getPassword());
+        verify(userRepository, times(1)).insert(user);
+        verify(userRepository, never()).findByEmail(any());
+    }
+
+    @Test
+    void testCreateUser_DuplicateEmail_ReturnsFalse() {
+        UserAuthDto userAuthDto = new UserAuthDto("testuser", "testuser@example.com", "password");
+        User user = new User();
+        user.setEmail(userAuthDto.getEmail());
+        when(convertorUtil.convertUserAuthDtoToUser(userAuthDto)).thenReturn(user);
+        when(passwordHashingService.encode(userAuthDto.getPassword())).thenReturn("encodedPassword");
+        when(userRepository.insert(user)).thenThrow(new DuplicateKeyException("E11000 duplicate key error"));
+
+        assertFalse(usersService.createUser(userAuthDto));
+    }
 
-        usersService.createUser(userAuthDto);
+    // Test for provisionUsers()
+    @Test
+    void testProvisionUsers_BatchesAndReportsExisting() {
+        usersService.provisioningBatchSize = 2;
+        usersService.provisioningMaxUsers = 10;
+        when(passwordHashingService.getMaxBulkSize()).thenReturn(100);
+        List<UserAuthDto> userAuthDtos = List.of(
+                new UserAuthDto("a", "a@example.com", "pa"),
+                new UserAuthDto("b", "b@example.com", "pb"),
+                new UserAuthDto("a2", "a@example.com", "pa2"),
+                new UserAuthDto("c", "c@example.com", "pc")
+        );
+        when(convertorUtil.convertUserAuthDtoToUser(any())).thenAnswer(invocation -> {
+            UserAuthDto dto = invocation.getArgument(0);
+            return new User(dto.getUsername(), dto.getEmail(), dto.getPassword());
+        });
+        when(passwordHashingService.encodeAll(List.of("pa", "pb", "pc"))).thenReturn(List.of("ha", "hb", "hc"));
+        when(userRepository.insertAll(anyList())).thenReturn(Set.of("b@example.com")).thenReturn(Set.of());
+
+        UserProvisioningResultDto result = usersService.provisionUsers(userAuthDtos);
+
+        assertEquals(2, result.getCreated());
+        assertEquals(Set.of("a@example.com", "b@example.com"), Set.copyOf(result.getExistingEmails()));
+        verify(userRepository, times(2)).insertAll(anyList());
+        verify(userRepository).insertAll(argThat(batch -> batch.size() == 1 && batch.get(0).getPassword().equals("hc")));
+    }
+
+    @Test
+    void testProvisionUsers_TooManyUsers_Rejected() {
+        usersService.provisioningBatchSize = 2;
+        usersService.provisioningMaxUsers = 1;
+        when(passwordHashingService.getMaxBulkSize()).thenReturn(100);
+        List<UserAuthDto> userAuthDtos = List.of(
+                new UserAuthDto("a", "a@example.com", "pa"),
+                new UserAuthDto("b", "b@example.com", "pb")
+        );
+
+        assertThrows(UserException.class, () -> usersService.provisionUsers(userAuthDtos));
+        verify(passwordHashingService, never()).encodeAll(anyList());
+    }
 
-        verify(passwordEncoder, times(1)).encode(userAuthDto.getPassword());
-        verify(userRepository, times(1)).save(user);
+    @Test
+    void testProvisionUsers_MoreThanHashedWithinTimeout_Rejected() {
+        usersService.provisioningMaxUsers = 10;
+        when(passwordHashingService.getMaxBulkSize()).thenReturn(1);
+        List<UserAuthDto> userAuthDtos = List.of(
+                new UserAuthDto("a", "a@example.com", "pa"),
+                new UserAuthDto("b", "b@example.com", "pb")
+        );
+
+        UserException thrown = assertThrows(UserException.class, () -> usersService.provisionUsers(userAuthDtos));
+        assertTrue(thrown.getMessage().contains("At most 1 users"));
+        verify(passwordHashingService, never()).encodeAll(anyList());
     }
 
     // Test for getUserJWT()
@@ -179,13 +316,57 @@ public class UsersServiceTest {
         existingUser.setPassword("encodedPassword");
 
         when(userRepository.findByEmail("testuser@example.com")).thenReturn(Optional.of(existingUser));
-        when(passwordEncoder.matches(any(), any())).thenReturn(true);
-        when(jwtUtil.generateToken("testuser@example.com")).thenReturn("generatedJwt");
+        when(passwordHashingService.matches(any(), any())).thenReturn(true);
+        when(jwtUtil.generateToken(existingUser)).thenReturn("generatedJwt");
 
         String jwtToken = usersService.getUserJWT(userAuthDto);
         assertEquals("generatedJwt", jwtToken);
     }
 
+    @Test
+    void testGetUserJWT_OutdatedHash_Rehashed() {
+        UserAuthDto userAuthDto = new UserAuthDto("testuser", "testuser@example.com", "password");
+        User user = new User();
+        user.setEmail("testuser@example.com");
+        user.setPassword("password");
+        when(convertorUtil.convertUserAuthDtoToUser(userAuthDto)).thenReturn(user);
+
+        User existingUser = new User();
+        existingUser.setEmail("testuser@example.com");
+        existingUser.setPassword("legacyHash");
+
+        when(userRepository.findByEmail("testuser@example.com")).thenReturn(Optional.of(existingUser));
+        when(passwordHashingService.matches("password", "legacyHash")).thenReturn(true);
+        when(passwordHashingService.upgradeEncoding("legacyHash")).thenReturn(true);
+        when(passwordHashingService.encode("password")).thenReturn("{bcrypt}newHash");
+        when(jwtUtil.generateToken(existingUser)).thenReturn("generatedJwt");
+
+        assertEquals("generatedJwt", usersService.getUserJWT(userAuthDto));
+        verify(userRepository).updatePassword(existingUser, "{bcrypt}newHash");
+    }
+
+    @Test
+    void testGetUserJWT_RehashBusy_LoginSucceeds() {
+        UserAuthDto userAuthDto = new UserAuthDto("testuser", "testuser@example.com", "password");
+        User user = new User();
+        user.setEmail("testuser@example.com");
+        user.setPassword("password");
+        when(convertorUtil.convertUserAuthDtoToUser(userAuthDto)).thenReturn(user);
+
+        User existingUser = new User();
+        existingUser.setEmail("testuser@example.com");
+        existingUser.setPassword("legacyHash");
+
+        when(userRepository.findByEmail("testuser@example.com")).thenReturn(Optional.of(existingUser));
+        when(passwordHashingService.matches("password", "legacyHash")).thenReturn(true);
+        when(passwordHashingService.upgradeEncoding("legacyHash")).thenReturn(true);
+        when(passwordHashingService.encode("password")).thenThrow(new TooManyRequestsException("busy", 1));
+        when(jwtUtil.generateToken(existingUser)).thenReturn("generatedJwt");
+
+        assertEquals("generatedJwt", usersService.getUserJWT(userAuthDto));
+        verify(userRepository, never()).updatePassword(any(), any());
+    }
+
     @Test
     void testGetUserJWT_InvalidPassword() {
         UserAuthDto userAuthDto = new UserAuthDto("testuser", "testuser@example.com", "password");
@@ -198,7 +379,7 @@ public class UsersServiceTest {
 
         when(convertorUtil.convertUserAuthDtoToUser(any())).thenReturn(user);
         when(userRepository.findByEmail("testuser@example.com")).thenReturn(Optional.of(existingUser));
-        when(passwordEncoder.matches(any(), any())).thenReturn(false);
+        when(passwordHashingService.matches(any(), any())).thenReturn(false);
 
         String jwtToken = usersService.getUserJWT(userAuthDto);
         assertEquals("", jwtToken);
@@ -0,0 +1,24 @@
+package com.assessment.speernotes.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BCryptStrengthCalibratorTest {
+
+    @Test
+    void testCalibrate_TinyTarget_UsesMinimum() {
+        assertEquals(4, BCryptStrengthCalibrator.calibrate(0, 4, 8));
+    }
+
+    @Test
+    void testCalibrate_HugeTarget_CappedAtMaximum() {
+        assertEquals(6, BCryptStrengthCalibrator.calibrate(Long.MAX_VALUE / 1024, 4, 6));
+    }
+
+    @Test
+    void testCalibrate_WithinBounds() {
+        int strength = BCryptStrengthCalibrator.calibrate(50, 4, 12);
+        assertTrue(strength >= 4 && strength <= 12);
+    }
+}
@@ -0,0 +1,153 @@
+package com.assessment.speernotes.utils;
+
+import com.assessment.speernotes.model.User;
+import com.assessment.speernotes.model.UserPrincipal;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Base64;
+import java.util.Date;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtUtilTest {
+    private static final String SECRET = Base64.getEncoder().encodeToString("0123456789abcdef0123456789abcdef".getBytes());
+    private static final String NEXT_SECRET = Base64.getEncoder().encodeToString("fedcba9876543210fedcba9876543210fedcba9876543210".getBytes());
+
+    private SimpleMeterRegistry meterRegistry;
+    private JwtUtil jwtUtil;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        jwtUtil = new JwtUtil(meterRegistry);
+        ReflectionTestUtils.setField(jwtUtil, "secretKey", SECRET);
+        ReflectionTestUtils.setField(jwtUtil, "activeKid", JwtKeyRing.DEFAULT_KID);
+        ReflectionTestUtils.setField(jwtUtil, "verifiedCacheMaxSize", 100L);
+        jwtUtil.init();
+    }
+
+    private double cacheGets(String result) {
+        return meterRegistry.get("cache.gets").tag("cache", "jwt.verified").tag("result", result).functionCounter().count();
+    }
+
+    @Test
+    void testVerifyToken_ValidToken_ReturnsClaims() {
+        String token = jwtUtil.generateToken("user@example.com");
+
+        Optional<Claims> claims = jwtUtil.verifyToken(token);
+
+        assertTrue(claims.isPresent());
+        assertEquals("user@example.com", claims.get().getSubject());
+        assertEquals("user@example.com", jwtUtil.extractEmail(token));
+    }
+
+    @Test
+    void testVerifyToken_RepeatedToken_ServedFromCache() {
+        String token = jwtUtil.generateToken("user@example.com");
+
+        jwtUtil.verifyToken(token);
+        jwtUtil.verifyToken(token);
+        jwtUtil.verifyToken(token);
+
+        assertEquals(1, cacheGets("miss"));
+        assertEquals(2, cacheGets("hit"));
+    }
+
+    @Test
+    void testGenerateToken_User_EmbedsPrincipalClaims() {
+        User user = new User("user", "user@example.com", "password");
+        user.setId("1");
+        user.setTokenVersion(3);
+
+        Claims claims = jwtUtil.verifyToken(jwtUtil.generateToken(user)).orElseThrow();
+        UserPrincipal principal = jwtUtil.toPrincipal(claims).orElseThrow();
+
+        assertEquals("1", principal.getId());
+        assertEquals("user@example.com", principal.getUsername());
+        assertEquals("USER", principal.getAuthorities().iterator().next().getAuthority());
+        assertEquals(3, claims.get(JwtUtil.CLAIM_TOKEN_VERSION, Number.class).intValue());
+    }
+
+    @Test
+    void testToPrincipal_TokenWithoutUserId_ReturnsEmpty() {
+        Claims claims = jwtUtil.verifyToken(jwtUtil.generateToken("user@example.com")).orElseThrow();
+
+        assertTrue(jwtUtil.toPrincipal(claims).isEmpty());
+    }
+
+    @Test
+    void testVerifyToken_TamperedToken_ReturnsEmpty() {
+        String token = jwtUtil.generateToken("user@example.com");
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+
+        assertTrue(jwtUtil.verifyToken(tampered).isEmpty());
+        assertFalse(jwtUtil.validateToken("not-a-jwt"));
+    }
+
+    @Test
+    void testVerifyToken_LegacyTokenWithoutKid_VerifiedWithDefaultKey() {
+        String legacy = Jwts.builder()
+                .subject("user@example.com")
+                .expiration(new Date(System.currentTimeMillis() + 60000))
+                .signWith(Keys.hmacShaKeyFor(Base64.getDecoder().decode(SECRET)))
+                .compact();
+
+        assertEquals("user@example.com", jwtUtil.verifyToken(legacy).orElseThrow().getSubject());
+    }
+
+    @Test
+    void testVerifyToken_KeyRotation_OldTokensStayValid() {
+        String oldToken = jwtUtil.generateToken("user@example.com");
+
+        JwtUtil rotated = new JwtUtil(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(rotated, "secretKey", SECRET);
+        ReflectionTestUtils.setField(rotated, "keyRingKeys", "next:" + NEXT_SECRET);
+        ReflectionTestUtils.setField(rotated, "activeKid", "next");
+        ReflectionTestUtils.setField(rotated, "verifiedCacheMaxSize", 100L);
+        rotated.init();
+        String newToken = rotated.generateToken("user@example.com");
+
+        String header = new String(Base64.getUrlDecoder().decode(newToken.substring(0, newToken.indexOf('.'))));
+        assertTrue(header.contains("\"kid\":\"next\""));
+        assertTrue(rotated.validateToken(oldToken));
+        assertTrue(rotated.validateToken(newToken));
+        // a node which does not know the new key yet rejects its tokens
+        assertFalse(jwtUtil.validateToken(newToken));
+    }
+
+    @Test
+    void testVerifyToken_SignedByStandardAlgorithm_Verified() {
+        String token = Jwts.builder()
+                .header().keyId(JwtKeyRing.DEFAULT_KID).and()
+                .subject("user@example.com")
+                .signWith(Keys.hmacShaKeyFor(Base64.getDecoder().decode(SECRET)), Jwts.SIG.HS256)
+                .compact();
+
+        assertTrue(jwtUtil.validateToken(token));
+    }
+
+    @Test
+    void testGenerateToken_VerifiedByStandardAlgorithm() {
+        String token = jwtUtil.generateToken("user@example.com");
+
+        Claims claims = Jwts.parser()
+                .verifyWith(Keys.hmacShaKeyFor(Base64.getDecoder().decode(SECRET)))
+                .build()
+                .parseSignedClaims(token)
+                .getPayload();
+        assertEquals("user@example.com", claims.getSubject());
+    }
+
+    @Test
+    void testKeyRing_UnknownActiveKid_Rejected() {
+        assertThrows(IllegalArgumentException.class, () -> JwtKeyRing.of(SECRET, "", "missing"));
+        assertThrows(IllegalArgumentException.class, () -> JwtKeyRing.of(SECRET, "no-secret", JwtKeyRing.DEFAULT_KID));
+    }
+}
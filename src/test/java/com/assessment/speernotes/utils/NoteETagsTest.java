@@ -0,0 +1,70 @@
+package com.assessment.speernotes.utils;
+
+import com.assessment.speernotes.exceptions.PreconditionFailedException;
+import com.assessment.speernotes.model.Note;
+import com.assessment.speernotes.model.NoteFields;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NoteETagsTest {
+
+    @Test
+    void testOf_ChangesWithVersionUpdateTimeAndFields() {
+        Note note = new Note();
+        note.setVersion(3L);
+        note.setUpdatedAt(Instant.ofEpochMilli(1000));
+        String eTag = NoteETags.of(note, NoteFields.ALL);
+
+        assertEquals(eTag, NoteETags.of(3L, Instant.ofEpochMilli(1000), NoteFields.ALL));
+        assertNotEquals(eTag, NoteETags.of(4L, Instant.ofEpochMilli(1000), NoteFields.ALL));
+        assertNotEquals(eTag, NoteETags.of(3L, Instant.ofEpochMilli(2000), NoteFields.ALL));
+        assertNotEquals(eTag, NoteETags.of(note, NoteFields.parse("title", NoteFields.ALL)));
+        assertEquals(NoteETags.of(note, NoteFields.parse("title,id", NoteFields.ALL)),
+                NoteETags.of(note, NoteFields.parse("id,title", NoteFields.ALL)));
+    }
+
+    @Test
+    void testOfPage_ChangesWithNotesGenerationAndPage() {
+        String eTag = NoteETags.ofPage("1", 5, null, 20, NoteFields.SUMMARY);
+
+        assertEquals(eTag, NoteETags.ofPage("1", 5, null, 20, NoteFields.SUMMARY));
+        assertNotEquals(eTag, NoteETags.ofPage("1", 6, null, 20, NoteFields.SUMMARY));
+        assertNotEquals(eTag, NoteETags.ofPage("1", 5, "cursor", 20, NoteFields.SUMMARY));
+        assertNotEquals(eTag, NoteETags.ofPage("1", 5, null, 20, NoteFields.ALL));
+    }
+
+    @Test
+    void testOfPage_TruncatedDigest() {
+        String eTag = NoteETags.ofPage("1", 5, "cursor", 20, NoteFields.SUMMARY);
+
+        assertTrue(eTag.matches("\"g5-[0-9a-f]{24}-" + NoteFields.SUMMARY.key() + "\""), eTag);
+        // The parts of the page are kept apart, moving a character from one to the other changes the tag
+        assertNotEquals(NoteETags.ofPage("12", 5, "3", 20, NoteFields.SUMMARY), NoteETags.ofPage("1", 5, "23", 20, NoteFields.SUMMARY));
+    }
+
+    @Test
+    void testParseVersions() {
+        assertEquals(Set.of(3L), NoteETags.parseVersions(NoteETags.of(3L, Instant.now(), NoteFields.ALL)));
+        // The notes created before the versioning are at version 0
+        assertEquals(Set.of(0L), NoteETags.parseVersions(" " + NoteETags.of(null, Instant.now(), NoteFields.ALL) + " "));
+        assertNull(NoteETags.parseVersions(" * "));
+        assertThrows(PreconditionFailedException.class, () -> NoteETags.parseVersions("W/\"3-1000-7f\""));
+        assertThrows(PreconditionFailedException.class, () -> NoteETags.parseVersions(NoteETags.ofPage("1", 5, null, 20, NoteFields.ALL)));
+    }
+
+    @Test
+    void testParseVersions_ListOfTags() {
+        String first = NoteETags.of(3L, Instant.now(), NoteFields.ALL);
+        String second = NoteETags.of(5L, Instant.now(), NoteFields.ALL);
+
+        assertEquals(Set.of(3L, 5L), NoteETags.parseVersions(first + ",  " + second));
+        // The weak tags and the tags of the pages in the list are skipped, the strong tags of the note still match
+        assertEquals(Set.of(5L), NoteETags.parseVersions("W/\"3-1000-7f\" , " + second + ","
+                + NoteETags.ofPage("1", 5, null, 20, NoteFields.ALL)));
+        assertThrows(PreconditionFailedException.class, () -> NoteETags.parseVersions("W/\"3-1000-7f\", \"other\""));
+    }
+}
@@ -0,0 +1,102 @@
+package com.assessment.speernotes.utils;
+
+import com.assessment.speernotes.model.Note;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NoteStreamWriterTest {
+    private NoteStreamWriter noteStreamWriter;
+
+    @BeforeEach
+    void setUp() {
+        // Flushing after every value, as the mapper of the application is configured
+        noteStreamWriter = new NoteStreamWriter(new ObjectMapper().registerModule(new JavaTimeModule())
+                .enable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE));
+    }
+
+    private static Note note(String id) {
+        Note note = new Note();
+        note.setId(id);
+        note.setTitle("Title " + id);
+        return note;
+    }
+
+    @Test
+    void testWrite_JsonArray() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        noteStreamWriter.write(Stream.of(note("1"), note("2")), false).writeTo(output);
+
+        assertEquals("[{\"id\":\"1\",\"title\":\"Title 1\"},{\"id\":\"2\",\"title\":\"Title 2\"}]",
+                output.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testWrite_EmptyJsonArray() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        noteStreamWriter.write(Stream.empty(), false).writeTo(output);
+
+        assertEquals("[]", output.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testWrite_Ndjson() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        noteStreamWriter.write(Stream.of(note("1"), note("2")), true).writeTo(output);
+
+        assertEquals("{\"id\":\"1\",\"title\":\"Title 1\"}\n{\"id\":\"2\",\"title\":\"Title 2\"}\n",
+                output.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testWrite_FlushedEveryHundredNotes() throws Exception {
+        AtomicInteger flushes = new AtomicInteger();
+        OutputStream output = new ByteArrayOutputStream() {
+            @Override
+            public void flush() {
+                flushes.incrementAndGet();
+            }
+        };
+
+        noteStreamWriter.write(IntStream.range(0, 250).mapToObj(i -> note(String.valueOf(i))), true).writeTo(output);
+
+        // After the 1st, 101st and 201st notes, the rest is written out when the generator closes the stream
+        assertEquals(3, flushes.get());
+    }
+
+    @Test
+    void testWrite_ClientGone_StreamClosed() {
+        AtomicBoolean closed = new AtomicBoolean();
+        Stream<Note> notes = IntStream.range(0, 1000).mapToObj(i -> note(String.valueOf(i))).onClose(() -> closed.set(true));
+        OutputStream broken = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+
+        assertThrows(IOException.class, () -> noteStreamWriter.write(notes, false).writeTo(broken));
+        assertTrue(closed.get());
+    }
+
+    @Test
+    void testAcceptsNdjson() {
+        assertTrue(NoteStreamWriter.acceptsNdjson("application/x-ndjson"));
+        assertFalse(NoteStreamWriter.acceptsNdjson("application/json"));
+        assertFalse(NoteStreamWriter.acceptsNdjson("*/*"));
+        assertFalse(NoteStreamWriter.acceptsNdjson(null));
+    }
+}